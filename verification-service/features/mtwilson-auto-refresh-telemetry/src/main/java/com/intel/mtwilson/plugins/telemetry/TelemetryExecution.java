@@ -6,9 +6,6 @@ package com.intel.mtwilson.plugins.telemetry;
 
 import com.intel.dcsg.cpg.crypto.RandomUtil;
 import com.intel.mtwilson.My;
-import com.intel.mtwilson.flavor.rest.v2.model.HostCollection;
-import com.intel.mtwilson.flavor.rest.v2.model.HostFilterCriteria;
-import com.intel.mtwilson.flavor.rest.v2.repository.HostRepository;
 import com.intel.mtwilson.telemetry.rest.v2.repository.*;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -119,12 +116,9 @@ public class TelemetryExecution implements Runnable {
             
                 try {
                     // retrieve number of hosts from db
-                    HostRepository repository = new HostRepository();
-                    HostFilterCriteria criteria = new HostFilterCriteria();
-                    criteria.filter = false;
-                    HostCollection hCollection = repository.search(criteria);
+                    int hostCount = My.jpa().mwHost().getMwHostCount();
                     // update telmetry db
-                    updateDb(hCollection.getHosts().size());
+                    updateDb(hostCount);
                 } catch (Exception e) {
                     log.warn("Error while calling ESXi auto update operation: {}", e.getMessage(), e);
                 }  finally {
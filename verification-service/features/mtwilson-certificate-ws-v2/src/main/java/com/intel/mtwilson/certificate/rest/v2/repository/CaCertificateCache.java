@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.certificate.rest.v2.repository;
+
+import com.intel.dcsg.cpg.x509.X509Util;
+import com.intel.mtwilson.ExpiringCache;
+import com.intel.mtwilson.My;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Caches the CA certificate files served by the ca-certificates resource,
+ * decoded to DER, so that polling clients are answered without reading and
+ * parsing the files on every request.
+ *
+ * The directories of the cached files are watched and an entry is discarded
+ * as soon as its file changes. File systems that do not report changes, such
+ * as some network file systems, are covered by expiring the entries after
+ * mtwilson.ca.certificate.cache.expiry.seconds; 0 disables the cache.
+ */
+public class CaCertificateCache {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CaCertificateCache.class);
+    private static final long DEFAULT_CA_CERTIFICATE_CACHE_EXPIRY_SECONDS = 3600;
+    // keyed by the absolute path of the file
+    private static final ExpiringCache<String, Entry> entries = new ExpiringCache<>("CA certificate cache");
+    private static final ConcurrentHashMap<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+    private static WatchService watchService = null;
+    private static boolean watchServiceUnavailable = false;
+
+    private CaCertificateCache() {
+    }
+
+    /**
+     * Discards all cached certificates.
+     */
+    public static void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * @param path the certificate file, relative to the configuration directory
+     * unless absolute; must be a .pem file or a .crt file in DER format
+     * @return the certificates in the file
+     */
+    public static Entry get(String path) throws IOException, CertificateException {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(My.configuration().getDirectoryPath() + File.separator + path);
+        }
+        String key = file.getAbsolutePath();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            long loadedGeneration = entries.getGeneration();
+            // watch before reading so a change made while reading is not missed
+            watch(file);
+            entry = load(file);
+            long expirySeconds = My.configuration().getConfiguration().getLong("mtwilson.ca.certificate.cache.expiry.seconds", DEFAULT_CA_CERTIFICATE_CACHE_EXPIRY_SECONDS);
+            entries.put(key, entry, loadedGeneration, expirySeconds);
+        }
+        return entry;
+    }
+
+    private static Entry load(File file) throws IOException, CertificateException {
+        log.debug("CA file: {}", file.getAbsolutePath());
+        long lastModified = file.lastModified();
+        List<byte[]> certificates = new ArrayList<>();
+        if (file.getName().endsWith(".pem")) {
+            try (FileInputStream in = new FileInputStream(file)) {
+                String pem = IOUtils.toString(in);
+                for (X509Certificate certificate : X509Util.decodePemCertificates(pem)) {
+                    certificates.add(certificate.getEncoded());
+                }
+            }
+        } else if (file.getName().endsWith(".crt")) {
+            try (FileInputStream in = new FileInputStream(file)) {
+                certificates.add(IOUtils.toByteArray(in));
+            }
+        } else {
+            throw new FileNotFoundException("Certificate file is not in .pem or .crt format");
+        }
+        return new Entry(certificates, lastModified);
+    }
+
+    private static synchronized void watch(File file) {
+        Path directory = file.getAbsoluteFile().toPath().getParent();
+        if (directory == null || watchServiceUnavailable || watchedDirectories.containsKey(directory)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                startWatching(watchService);
+            }
+            WatchKey watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(directory, watchKey);
+        } catch (IOException | UnsupportedOperationException e) {
+            // entries still expire, so changes are picked up eventually
+            log.warn("Cannot watch {} for CA certificate changes: {}", directory, e.getMessage());
+            if (watchService == null) {
+                watchServiceUnavailable = true;
+            }
+        }
+    }
+
+    private static void startWatching(final WatchService watchService) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey watchKey;
+                    try {
+                        watchKey = watchService.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    Path directory = (Path) watchKey.watchable();
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            invalidateDirectory(directory);
+                        } else {
+                            invalidateFile(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!watchKey.reset()) {
+                        // the directory is gone, watch it again when it is next read
+                        watchedDirectories.remove(directory, watchKey);
+                        invalidateDirectory(directory);
+                    }
+                }
+            }
+        }, "ca-certificate-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void invalidateFile(Path path) {
+        entries.invalidate(path.toAbsolutePath().toString());
+    }
+
+    private static void invalidateDirectory(Path directory) {
+        List<String> keys = new ArrayList<>();
+        for (String key : entries.keys()) {
+            if (directory.equals(new File(key).toPath().getParent())) {
+                keys.add(key);
+            }
+        }
+        entries.invalidate(keys);
+    }
+
+    /**
+     * The certificates of a file with a strong entity tag for them.
+     */
+    public static class Entry {
+        private final List<byte[]> certificates;
+        private final Date lastModified;
+        private final String entityTag;
+
+        private Entry(List<byte[]> certificates, long lastModified) {
+            this.certificates = Collections.unmodifiableList(certificates);
+            this.lastModified = new Date(lastModified);
+            this.entityTag = digest(certificates);
+        }
+
+        private static String digest(List<byte[]> certificates) {
+            try {
+                MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+                for (byte[] certificate : certificates) {
+                    sha256.update(certificate);
+                }
+                return Hex.encodeHexString(sha256.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        /**
+         * @return the DER encoded certificates in the order of the file;
+         * the arrays are shared and must not be modified
+         */
+        public List<byte[]> getCertificates() {
+            return certificates;
+        }
+
+        public Date getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the hex SHA-256 of the certificates, which changes whenever
+         * any of them changes
+         */
+        public String getEntityTag() {
+            return entityTag;
+        }
+    }
+}
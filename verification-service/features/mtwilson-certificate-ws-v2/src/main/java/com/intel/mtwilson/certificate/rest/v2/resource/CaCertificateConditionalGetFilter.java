@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.certificate.rest.v2.resource;
+
+import com.intel.mtwilson.certificate.rest.v2.repository.CaCertificateCache;
+import com.intel.mtwilson.certificate.rest.v2.repository.CaCertificateRepository;
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Conditional GET for the ca-certificates resource. Responses carry a strong
+ * ETag and a Last-Modified date taken from {@link CaCertificateCache}, and
+ * requests with a matching If-None-Match or If-Modified-Since header are
+ * answered with 304 Not Modified before they reach the resource.
+ *
+ * The same certificates are served as DER, PEM or JSON depending on the
+ * Accept header and the path extension, so the ETag combines the digest of
+ * the certificates with the requested representation.
+ *
+ * Mapped after the Shiro filter in web.xml so that 304 responses are only
+ * given to authorized clients.
+ */
+public class CaCertificateConditionalGetFilter implements Filter {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CaCertificateConditionalGetFilter.class);
+    private static final String PATH = "/ca-certificates";
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        CaCertificateCache.Entry entry = null;
+        if ("GET".equals(httpRequest.getMethod())) {
+            entry = getEntry(httpRequest);
+        }
+        if (entry == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String entityTag = String.format("\"%s-%s\"", entry.getEntityTag(), getRepresentation(httpRequest));
+        httpResponse.setHeader("ETag", entityTag);
+        httpResponse.setDateHeader("Last-Modified", entry.getLastModified().getTime());
+        httpResponse.setHeader("Vary", "Accept");
+        // certificates are public, clients may keep them as long as they revalidate
+        httpResponse.setHeader("Cache-Control", "no-cache");
+        if (isNotModified(httpRequest, entityTag, entry.getLastModified().getTime())) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * @return the cached certificates the request is for, or null if it is
+     * not a request for CA certificates
+     */
+    private CaCertificateCache.Entry getEntry(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null || !pathInfo.startsWith(PATH)) {
+            return null;
+        }
+        String id;
+        if (pathInfo.equals(PATH) || pathInfo.equals(PATH + "/")) {
+            // only the endorsement certificates can be searched, see CaCertificateRepository.search
+            id = request.getParameter("domain");
+            if (!"ek".equals(id) && !"endorsement".equals(id)) {
+                return null;
+            }
+        } else if (pathInfo.charAt(PATH.length()) == '/') {
+            id = pathInfo.substring(PATH.length() + 1);
+            // /ca-certificates/root.pem selects the representation like the Accept header
+            int extension = id.indexOf('.');
+            if (extension >= 0) {
+                id = id.substring(0, extension);
+            }
+        } else {
+            return null;
+        }
+        String certFile = CaCertificateRepository.getCaCertificateFile(id);
+        if (certFile == null) {
+            return null;
+        }
+        try {
+            return CaCertificateCache.get(certFile);
+        } catch (IOException | CertificateException e) {
+            // the resource reports the error
+            log.debug("Cannot read CA certificate file {}", certFile, e);
+            return null;
+        }
+    }
+
+    private String getRepresentation(HttpServletRequest request) {
+        String representation = request.getPathInfo() + ";" + request.getHeader("Accept");
+        return Integer.toHexString(representation.hashCode());
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String entityTag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored when If-None-Match is present
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(entityTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            // HTTP dates have a resolution of one second
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            log.debug("Invalid If-Modified-Since header: {}", request.getHeader("If-Modified-Since"));
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.client.jaxrs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls of the asynchronous client methods, such as
+ * {@link Reports#searchAsync}, in the background.
+ * <pre>
+ * All clients share one executor, so an integration that starts calls for thousands of hosts at once
+ * sends at most a fixed number of requests to the server concurrently (16 by default) and the other
+ * calls wait their turn. Each call uses the connection of the client it was started from; connections
+ * are kept alive and reused by the JDK as long as the JVM allows enough idle connections per server,
+ * which is set with the http.maxConnections system property (5 by default).
+ *
+ * To choose the concurrency, or to run the calls on an executor of the integration:
+ * AsyncClientCalls.setExecutor(Executors.newFixedThreadPool(32));
+ * </pre>
+ */
+public class AsyncClientCalls {
+
+    private static final int DEFAULT_MAX_CONCURRENT_CALLS = 16;
+    private static ExecutorService executor = null;
+
+    private AsyncClientCalls() {
+    }
+
+    /**
+     * Replaces the executor running the calls. Calls already started keep
+     * running on the previous executor, which is not shut down.
+     * @param executorService the executor to run the following calls
+     */
+    public static synchronized void setExecutor(ExecutorService executorService) {
+        executor = executorService;
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(DEFAULT_MAX_CONCURRENT_CALLS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    // calls in progress must not keep the integration from exiting
+                    Thread thread = new Thread(runnable, "mtwilson-client-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    static <T> Future<T> submit(Callable<T> call) {
+        return getExecutor().submit(call);
+    }
+}
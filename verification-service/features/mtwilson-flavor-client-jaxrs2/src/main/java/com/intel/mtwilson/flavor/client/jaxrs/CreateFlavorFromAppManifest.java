@@ -157,6 +157,7 @@ public class CreateFlavorFromAppManifest extends MtWilsonClient {
         if (flavorgroupName != null && !flavorgroupName.isEmpty())
             map.put("flavorgroupName", flavorgroupName);
         Response obj = getTarget().path("/flavor-from-app-manifest").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(map));
+        obj.close();
         if (!obj.getStatusInfo().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
             throw new WebApplicationException("Create flavor from app manifest failed");
         }
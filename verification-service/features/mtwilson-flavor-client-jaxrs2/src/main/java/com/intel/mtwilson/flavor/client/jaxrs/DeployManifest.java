@@ -87,6 +87,7 @@ public class DeployManifest extends MtWilsonClient {
         map.put("flavor_id", flavorId);
         map.put("host_id", hostId);
         Response obj = getTarget().path("rpc/deploy-software-manifest").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(map));
+        obj.close();
         if( !obj.getStatusInfo().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
             throw new WebApplicationException("Deploy flavor on host failed");
         }
@@ -92,6 +92,7 @@ public class DeployTagCertificate extends MtWilsonClient {
     public void deployTagCertificate(UUID certificateId) {
         log.debug("target: {}", getTarget().getUri().toString());
         Response obj = getTarget().path("rpc/deploy-tag-certificate").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(certificateId));
+        obj.close();
         if( !obj.getStatusInfo().getFamily().equals(Family.SUCCESSFUL)) {
             throw new WebApplicationException("Deploy tag certificate failed");
         }
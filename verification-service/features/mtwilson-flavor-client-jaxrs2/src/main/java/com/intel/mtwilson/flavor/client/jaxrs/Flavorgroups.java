@@ -12,6 +12,8 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupLocator;
 import com.intel.mtwilson.jaxrs2.client.MtWilsonClient;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -309,6 +311,20 @@ public class Flavorgroups extends MtWilsonClient {
         return obj;
     }
 
+    /**
+     * Same as {@link #retrieve(FlavorgroupLocator)}, run in the background by {@link AsyncClientCalls}.
+     * @param locator see {@link #retrieve(FlavorgroupLocator)}
+     * @return the result of the call when it completes
+     */
+    public Future<Flavorgroup> retrieveAsync(final FlavorgroupLocator locator) {
+        return AsyncClientCalls.submit(new Callable<Flavorgroup>() {
+            @Override
+            public Flavorgroup call() {
+                return retrieve(locator);
+            }
+        });
+    }
+
      /**
      * Searches for flavor groups.
      * @param filterCriteria The content models of the FlavorgroupFilterCriteria java model object can be used as query parameters.
@@ -316,6 +332,10 @@ public class Flavorgroups extends MtWilsonClient {
      *          filter                    Boolean value to indicate whether the response should be filtered to return no 
      *                                    results instead of listing all flavor groups. Default value is true.
      * 
+     *          continuationToken         Only used with filter=false. Flavor groups are returned in pages of up to limit
+     *                                    flavor groups ordered by ID; when a page is full the collection includes a
+     *                                    continuation_token that is passed back here to get the next page.
+     * 
      *          id                        Flavor group ID.
      * 
      *          nameEqualTo               Flavor group name.
@@ -408,6 +428,20 @@ public class Flavorgroups extends MtWilsonClient {
         return newObj;
     }
 
+    /**
+     * Same as {@link #search(FlavorgroupFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #search(FlavorgroupFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<FlavorgroupCollection> searchAsync(final FlavorgroupFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<FlavorgroupCollection>() {
+            @Override
+            public FlavorgroupCollection call() {
+                return search(filterCriteria);
+            }
+        });
+    }
+
     /**
      * Deletes a flavor group. If the flavor group is still associated with any hosts, an error will be thrown. 
      * @param locator The content models of the FlavorgroupLocator java model object can be used as path parameter.
@@ -440,5 +474,6 @@ public class Flavorgroups extends MtWilsonClient {
         map.put("id", locator.pathId);
         Response obj = getTarget().path("flavorgroups/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete();
         log.debug(obj.toString());
+        obj.close();
     }
 }
\ No newline at end of file
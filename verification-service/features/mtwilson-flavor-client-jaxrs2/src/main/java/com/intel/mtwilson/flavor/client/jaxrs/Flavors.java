@@ -12,6 +12,8 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorLocator;
 import com.intel.mtwilson.jaxrs2.client.MtWilsonClient;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -643,6 +645,20 @@ public class Flavors extends MtWilsonClient {
         Flavor obj = getTarget().path("flavors/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).get(Flavor.class);
         return obj;
     }
+
+    /**
+     * Same as {@link #retrieve(FlavorLocator)}, run in the background by {@link AsyncClientCalls}.
+     * @param locator see {@link #retrieve(FlavorLocator)}
+     * @return the result of the call when it completes
+     */
+    public Future<Flavor> retrieveAsync(final FlavorLocator locator) {
+        return AsyncClientCalls.submit(new Callable<Flavor>() {
+            @Override
+            public Flavor call() {
+                return retrieve(locator);
+            }
+        });
+    }
     
     /**
      * Searches for flavors.
@@ -651,6 +667,10 @@ public class Flavors extends MtWilsonClient {
      *          filter                  Boolean value to indicate whether the response should be filtered to return no 
      *                                  results instead of listing all flavors. Default value is true.
      * 
+     *          continuationToken       Only used with filter=false. Flavors are returned in pages of up to limit flavors ordered
+     *                                  by ID; when a page is full the collection includes a continuation_token that is passed
+     *                                  back here to get the next page.
+     * 
      *          id                      Flavor ID.
      * 
      *          key and value           The key can be any “key” field from the meta description section of a flavor. The
@@ -842,6 +862,20 @@ public class Flavors extends MtWilsonClient {
         FlavorCollection newObj = getTargetPathWithQueryParams("flavors", filterCriteria).request(MediaType.APPLICATION_JSON).get(FlavorCollection.class);
         return newObj;        
     }
+
+    /**
+     * Same as {@link #search(FlavorFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #search(FlavorFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<FlavorCollection> searchAsync(final FlavorFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<FlavorCollection>() {
+            @Override
+            public FlavorCollection call() {
+                return search(filterCriteria);
+            }
+        });
+    }
          
     /**
      * Deletes a flavor.
@@ -883,6 +917,7 @@ public class Flavors extends MtWilsonClient {
         map.put("id", locator.pathId.toString());
         Response obj = getTarget().path("flavors/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete();
         log.debug(obj.toString());
+        obj.close();
     }
 
     /**
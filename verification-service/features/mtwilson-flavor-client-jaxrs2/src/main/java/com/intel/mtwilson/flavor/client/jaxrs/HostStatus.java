@@ -5,12 +5,16 @@
 
 package com.intel.mtwilson.flavor.client.jaxrs;
 
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusLocator;
 import com.intel.mtwilson.jaxrs2.client.MtWilsonClient;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 
 import org.slf4j.Logger;
@@ -274,6 +278,20 @@ public class HostStatus extends MtWilsonClient {
         com.intel.mtwilson.flavor.rest.v2.model.HostStatus obj = getTarget().path("host-status/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).get(com.intel.mtwilson.flavor.rest.v2.model.HostStatus.class);
         return obj;      
     }
+
+    /**
+     * Same as {@link #retrieve(HostStatusLocator)}, run in the background by {@link AsyncClientCalls}.
+     * @param locator see {@link #retrieve(HostStatusLocator)}
+     * @return the result of the call when it completes
+     */
+    public Future<com.intel.mtwilson.flavor.rest.v2.model.HostStatus> retrieveAsync(final HostStatusLocator locator) {
+        return AsyncClientCalls.submit(new Callable<com.intel.mtwilson.flavor.rest.v2.model.HostStatus>() {
+            @Override
+            public com.intel.mtwilson.flavor.rest.v2.model.HostStatus call() {
+                return retrieve(locator);
+            }
+        });
+    }
     
     /**
      * Searches for host status records.
@@ -324,6 +342,10 @@ public class HostStatus extends MtWilsonClient {
      * 
      *          limit               This limits the overall number of results (all hosts included); default value is set 
      *                              to 10,000.
+     * 
+     *          continuationToken   Only used for the latest host status, without a date filter. Host status entries are
+     *                              returned in pages of up to limit entries ordered by ID; when a page is full the collection
+     *                              includes a continuation_token that is passed back here to get the next page.
      * </pre>
      * @return <pre>The serialized HostStatusCollection java model object that was searched with collection of host status objects each 
      * containing:
@@ -370,4 +392,98 @@ public class HostStatus extends MtWilsonClient {
         HostStatusCollection objCollection = getTargetPathWithQueryParams("host-status", filterCriteria).request(MediaType.APPLICATION_JSON).get(HostStatusCollection.class);
         return objCollection;              
     }
+
+    /**
+     * Same as {@link #search(HostStatusFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #search(HostStatusFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<HostStatusCollection> searchAsync(final HostStatusFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<HostStatusCollection>() {
+            @Override
+            public HostStatusCollection call() {
+                return search(filterCriteria);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the current status of many hosts at once.
+     * <pre>
+     * The hosts are looked up with a single query on the server, so refreshing the status of many hosts
+     * takes one call instead of one search per host. Hosts that do not exist or have no status yet
+     * are left out of the result.
+     * </pre>
+     * @param lookupCriteria The serialized HostBatchLookupCriteria java model object represents the content of the request body.
+     * <pre>
+     *          host_ids                      List of host IDs.
+     *
+     *          host_names                    List of host names.
+     *
+     *          hardware_uuids                List of hardware UUIDs.
+     *
+     *          A host is included if it matches any of the values. At most 10000 values can be given
+     *          in total, which can be changed with mtwilson.batch.lookup.max.hosts on the server.
+     * </pre>
+     * @return <pre>The serialized HostStatusCollection java model object with the current status of each host found,
+     * in the same format as returned by {@link #search(HostStatusFilterCriteria)}.</pre>
+     * @since ISecL 1.0
+     * @mtwRequiresPermissions host_status:search
+     * @mtwContentTypeReturned JSON/XML/YAML
+     * @mtwMethodType POST
+     * @mtwSampleRestCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * https://server.com:8443/mtwilson/v2/host-status/batch
+     * Input:
+     * {
+     *     "host_ids": ["7af05d65-4275-48fb-bd0b-ee1204fc0789"],
+     *     "host_names": ["RHEL-Host-1", "RHEL-Host-2"],
+     *     "hardware_uuids": ["00964993-89c1-e711-906e-00163566263e"]
+     * }
+     *
+     * Output:
+     * {
+     *     "host_status": [{
+     *         "id": "5f6bf2bb-0aab-4273-973c-4354371fc19d",
+     *         "host_id": "7af05d65-4275-48fb-bd0b-ee1204fc0789",
+     *         "status": {
+     *             "host_state": "CONNECTED",
+     *             "last_time_connected": "2018-03-01T12:52:12-0800"
+     *         },
+     *         "created": "2018-03-01T12:52:12-0800",
+     *         "host_manifest": {...}
+     *     }]
+     * }
+     * </pre></div>
+     * @mtwSampleApiCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * // Create the lookup criteria and add the hosts
+     * HostBatchLookupCriteria lookupCriteria = new HostBatchLookupCriteria();
+     * lookupCriteria.getHostNames().add("RHEL-Host-1");
+     * lookupCriteria.getHostNames().add("RHEL-Host-2");
+     *
+     * // Create the client and call the batch lookup API
+     * HostStatus client = new HostStatus(properties);
+     * HostStatusCollection obj = client.searchByHosts(lookupCriteria);
+     * </pre></div>
+     */
+    public HostStatusCollection searchByHosts(HostBatchLookupCriteria lookupCriteria) {
+        log.debug("target: {}", getTarget().getUri().toString());
+        HostStatusCollection objCollection = getTarget().path("host-status/batch").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(lookupCriteria), HostStatusCollection.class);
+        return objCollection;
+    }
+
+    /**
+     * Same as {@link #searchByHosts(HostBatchLookupCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param lookupCriteria see {@link #searchByHosts(HostBatchLookupCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<HostStatusCollection> searchByHostsAsync(final HostBatchLookupCriteria lookupCriteria) {
+        return AsyncClientCalls.submit(new Callable<HostStatusCollection>() {
+            @Override
+            public HostStatusCollection call() {
+                return searchByHosts(lookupCriteria);
+            }
+        });
+    }
 }
@@ -10,11 +10,15 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupHostLinkLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
 import com.intel.mtwilson.flavor.rest.v2.model.HostCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostCreateCriteria;
+import com.intel.mtwilson.flavor.rest.v2.model.HostCreateCriteriaCollection;
+import com.intel.mtwilson.flavor.rest.v2.model.HostCreateResultCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostLocator;
 import com.intel.mtwilson.jaxrs2.client.MtWilsonClient;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -158,6 +162,78 @@ public class Hosts extends MtWilsonClient {
         return newObj;
     }
 
+    /**
+     * Creates many hosts at once.
+     * <pre>
+     * The hosts are connected to in parallel and created in batches, then added to the backend queue together.
+     * A host that cannot be created does not stop the others, the result of each host reports either the
+     * created host or the error.
+     * </pre>
+     * @param createCriteriaCollection The serialized HostCreateCriteriaCollection java model object represents the content of the request body.
+     * <pre> 
+     *          hosts                         List of hosts to create, each with the same fields as for creating a single host.
+     *</pre>
+     * @return <pre>The serialized HostCreateResultCollection java model object with one result per requested host, in request order:
+     *          host_name
+     *          host                          The created host, if it was created.
+     *          error                         Why the host was not created, if it was not.</pre>
+     * @since ISecL 1.0
+     * @mtwRequiresPermissions hosts:create
+     * @mtwContentTypeReturned JSON/XML/YAML
+     * @mtwMethodType POST
+     * @mtwPreRequisite None
+     * @mtwSampleRestCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * https://server.com:8443/mtwilson/v2/hosts/bulk
+     * Input :
+     *  {
+     *     "hosts" : [{
+     *         "host_name" : "RHEL-Host-1",
+     *         "connection_string" : "intel:https://trustagent1.server.com:1443;u=trustagentUsername;p=trustagentPassword"
+     *     }, {
+     *         "host_name" : "RHEL-Host-1",
+     *         "connection_string" : "intel:https://trustagent2.server.com:1443;u=trustagentUsername;p=trustagentPassword"
+     *     }]
+     *  }
+     * 
+     * Output:
+     * {
+     *     "results": [{
+     *         "host_name": "RHEL-Host-1",
+     *         "host": {
+     *             "id": "feda6821-c41e-4a28-a8b8-df081d7784f9",
+     *             "host_name": "RHEL-Host-1",
+     *             "connection_string": "intel:https://trustagent1.server.com:1443",
+     *             "hardware_uuid": "Hardware.uuid",
+     *             "tls_policy_id": "TRUST_FIRST_CERTIFICATE",
+     *             "flavorgroup_names": ["automatic", "platform_software"]
+     *         }
+     *     }, {
+     *         "host_name": "RHEL-Host-1",
+     *         "error": "Host name is specified more than once in the request"
+     *     }]
+     * }
+     * </pre></div>
+     * @mtwSampleApiCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * // Create the host create criteria collection and add the hosts to create
+     * HostCreateCriteriaCollection createCriteriaCollection = new HostCreateCriteriaCollection();
+     * HostCreateCriteria createCriteria = new HostCreateCriteria();
+     * createCriteria.setHostName("RHEL-Host-1");
+     * createCriteria.setConnectionString("intel:https://trustagent1.server.com:1443;u=trustagentUsername;p=trustagentPassword");
+     * createCriteriaCollection.getHosts().add(createCriteria);
+     * 
+     * // Create the client and call the bulk create API
+     * Hosts client = new Hosts(properties);
+     * HostCreateResultCollection results = client.create(createCriteriaCollection);
+     * </pre></div>
+     * */
+    public HostCreateResultCollection create(HostCreateCriteriaCollection createCriteriaCollection) {
+        log.debug("target: {}", getTarget().getUri().toString());
+        HostCreateResultCollection results = getTarget().path("hosts/bulk").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(createCriteriaCollection), HostCreateResultCollection.class);
+        return results;
+    }
+
     /**
      * Updates a host.
      * @param host The serialized Host java model object represents the content of the request body or path parameter.
@@ -293,6 +369,20 @@ public class Hosts extends MtWilsonClient {
         return obj;
     }
 
+    /**
+     * Same as {@link #retrieve(HostLocator)}, run in the background by {@link AsyncClientCalls}.
+     * @param locator see {@link #retrieve(HostLocator)}
+     * @return the result of the call when it completes
+     */
+    public Future<Host> retrieveAsync(final HostLocator locator) {
+        return AsyncClientCalls.submit(new Callable<Host>() {
+            @Override
+            public Host call() {
+                return retrieve(locator);
+            }
+        });
+    }
+
     /**
      * Searches for hosts.
      * @param filterCriteria The content models of the HostFilterCriteria java model object can be used as query parameters.
@@ -302,6 +392,10 @@ public class Hosts extends MtWilsonClient {
      * 
      *          limit               By default this is set to 10. So, only the top 10 results would be returned back.
      * 
+     *          continuationToken   Results are returned in pages of up to limit hosts ordered by ID, with or without
+     *                              filter parameters; when a page is full the collection includes a continuation_token
+     *                              that is passed back here, with the same parameters, to get the next page.
+     * 
      *          id                  Host ID.
      * 
      *          nameEqualTo         Host name. Note that this is the name with which the host is registered.
@@ -315,7 +409,11 @@ public class Hosts extends MtWilsonClient {
      *                              The host_name here refers to the actual name of the host
      *                              that is configured on the system, not the one that is used to register the host.
      * 
-     * Only one identifying parameter can be specified. The parameters listed here are in the order of priority that will be evaluated.
+     *          flavorgroupName     Name of a flavorgroup the host is linked to.
+     * 
+     *          tlsPolicyId         ID of the TLS policy of the host.
+     * 
+     * Any combination of the parameters can be specified, a host is returned only if it matches all of them.
      * </pre>
      * @return <pre>The serialized HostCollection java model object that was searched with list of hosts each containing:
      *          id
@@ -353,6 +451,16 @@ public class Hosts extends MtWilsonClient {
      * // Create the client and call the search API
      * Hosts client = new Hosts(properties);
      * HostCollection obj = client.search(filterCriteria);
+     * 
+     * // To list all hosts, request them one page at a time
+     * HostFilterCriteria allHosts = new HostFilterCriteria();
+     * allHosts.filter = false;
+     * allHosts.limit = 1000;
+     * do {
+     *     HostCollection page = client.search(allHosts);
+     *     // process page.getHosts()
+     *     allHosts.continuationToken = page.getContinuationToken();
+     * } while (allHosts.continuationToken != null);
      * </pre></div>
      * */
     public HostCollection search(HostFilterCriteria filterCriteria) {
@@ -361,6 +469,20 @@ public class Hosts extends MtWilsonClient {
         return objCollection;
     }
 
+    /**
+     * Same as {@link #search(HostFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #search(HostFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<HostCollection> searchAsync(final HostFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<HostCollection>() {
+            @Override
+            public HostCollection call() {
+                return search(filterCriteria);
+            }
+        });
+    }
+
     /**
      * Deletes a host.
      * @param id ID of host
@@ -389,6 +511,7 @@ public class Hosts extends MtWilsonClient {
         map.put("id", id);
         Response obj = getTarget().path("hosts/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete();
         log.debug(obj.toString());
+        obj.close();
     }
 
     /**
@@ -426,7 +549,7 @@ public class Hosts extends MtWilsonClient {
         log.debug("target: {}", getTarget().getUri().toString());
         HashMap<String,Object> map = new HashMap<>();
         map.put("hostId", hostId);
-        getTarget().path("hosts/{hostId}/flavorgroups").resolveTemplates(map).request().accept(MediaType.APPLICATION_JSON).post(Entity.json(createCriteria));
+        getTarget().path("hosts/{hostId}/flavorgroups").resolveTemplates(map).request().accept(MediaType.APPLICATION_JSON).post(Entity.json(createCriteria)).close();
     }
 
     /**
@@ -457,6 +580,6 @@ public class Hosts extends MtWilsonClient {
         HashMap<String,Object> map = new HashMap<>();
         map.put("hostId", hostId);
         map.put("flavorgroupId", flavorgroupId);
-        getTarget().path("hosts/{hostId}/flavorgroups/{flavorgroupId}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete();
+        getTarget().path("hosts/{hostId}/flavorgroups/{flavorgroupId}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete().close();
     }
 }
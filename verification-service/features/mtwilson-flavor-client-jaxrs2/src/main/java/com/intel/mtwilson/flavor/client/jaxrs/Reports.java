@@ -5,8 +5,8 @@
 
 package com.intel.mtwilson.flavor.client.jaxrs;
 
-import com.intel.dcsg.cpg.crypto.SimpleKeystore;
 import com.intel.dcsg.cpg.crypto.key.password.Password;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.Report;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportCreateCriteria;
@@ -21,9 +21,10 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.CertificateEncodingException;
-import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -54,6 +55,7 @@ import org.slf4j.LoggerFactory;
 public class Reports extends MtWilsonClient {
 
     Logger log = LoggerFactory.getLogger(getClass().getName());
+    private SamlTrustAnchors samlTrustAnchors = null;
 
     /**
      * Constructor.
@@ -66,6 +68,11 @@ public class Reports extends MtWilsonClient {
      * mtwilson.api.username - Username for API basic authentication with the HVS
      * mtwilson.api.password - Password for API basic authentication with the HVS
      * 
+     * // SAML verification, see verifyTrustAssertion
+     * mtwilson.api.keystore - Keystore with the trusted SAML certificates
+     * mtwilson.api.keystore.password - Password of the keystore
+     * mtwilson.api.saml.cache.max.entries - Number of verified SAML assertions to remember, 0 (default) to verify every assertion
+     * 
      * <b>Example:</b>
      * Properties properties = new Properties();
      * properties.put(“mtwilson.api.url”, “https://server.com:port/mtwilson/v2”);
@@ -186,6 +193,20 @@ public class Reports extends MtWilsonClient {
         Report result = getTarget().path("reports").request(MediaType.APPLICATION_JSON).post(Entity.json(createCriteria), Report.class);
         return result;
     }
+
+    /**
+     * Same as {@link #create(ReportCreateCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param createCriteria see {@link #create(ReportCreateCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<Report> createAsync(final ReportCreateCriteria createCriteria) {
+        return AsyncClientCalls.submit(new Callable<Report>() {
+            @Override
+            public Report call() {
+                return create(createCriteria);
+            }
+        });
+    }
     
     /**
      * Creates a new SAML report for the specified host by forcing a complete attestation cycle.
@@ -397,6 +418,20 @@ public class Reports extends MtWilsonClient {
         return samlAssertion;
     }
 
+    /**
+     * Same as {@link #createSamlReport(ReportCreateCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param createCriteria see {@link #createSamlReport(ReportCreateCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<String> createSamlReportAsync(final ReportCreateCriteria createCriteria) {
+        return AsyncClientCalls.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return createSamlReport(createCriteria);
+            }
+        });
+    }
+
     /**
      * Retrieves a report for an active host.
      * @param locator The content models of the ReportLocator java model object can be used as path parameter.
@@ -492,6 +527,20 @@ public class Reports extends MtWilsonClient {
         return obj;      
     }
 
+    /**
+     * Same as {@link #retrieve(ReportLocator)}, run in the background by {@link AsyncClientCalls}.
+     * @param locator see {@link #retrieve(ReportLocator)}
+     * @return the result of the call when it completes
+     */
+    public Future<Report> retrieveAsync(final ReportLocator locator) {
+        return AsyncClientCalls.submit(new Callable<Report>() {
+            @Override
+            public Report call() {
+                return retrieve(locator);
+            }
+        });
+    }
+
     /**
      * Searches attestation reports for hosts.
      * @param filterCriteria The content models of the ReportFilterCriteria java model object can be used as query parameters.
@@ -541,6 +590,10 @@ public class Reports extends MtWilsonClient {
      *          
      *          limit               This limits the overall number of results (all hosts included); default value is set
      *                              to 10,000.
+     * 
+     *          continuationToken   Only used for the latest reports, without a date filter. Reports are returned in pages of
+     *                              up to limit reports ordered by ID; when a page is full the collection includes a
+     *                              continuation_token that is passed back here to get the next page.
      *</pre>
      *@return The serialized ReportCollection java model object that was searched with collection of reports each containing:
      * <pre>
@@ -629,6 +682,97 @@ public class Reports extends MtWilsonClient {
         ReportCollection objCollection = getTargetPathWithQueryParams("reports", filterCriteria).request(MediaType.APPLICATION_JSON).get(ReportCollection.class);
         return objCollection;              
     }
+
+    /**
+     * Same as {@link #search(ReportFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #search(ReportFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<ReportCollection> searchAsync(final ReportFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<ReportCollection>() {
+            @Override
+            public ReportCollection call() {
+                return search(filterCriteria);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the current attestation report of many hosts at once.
+     * <pre>
+     * The hosts are looked up with a single query on the server, so refreshing the trust state of many hosts
+     * takes one call instead of one search per host. Hosts that do not exist or have not been attested yet
+     * are left out of the result.
+     * </pre>
+     * @param lookupCriteria The serialized HostBatchLookupCriteria java model object represents the content of the request body.
+     * <pre>
+     *          host_ids                      List of host IDs.
+     *
+     *          host_names                    List of host names.
+     *
+     *          hardware_uuids                List of hardware UUIDs.
+     *
+     *          A host is included if it matches any of the values. At most 10000 values can be given
+     *          in total, which can be changed with mtwilson.batch.lookup.max.hosts on the server.
+     * </pre>
+     * @return <pre>The serialized ReportCollection java model object with the current report of each host found,
+     * in the same format as returned by {@link #search(ReportFilterCriteria)}.</pre>
+     * @since ISecL 1.0
+     * @mtwRequiresPermissions reports:search
+     * @mtwContentTypeReturned JSON/XML/YAML
+     * @mtwMethodType POST
+     * @mtwSampleRestCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * https://server.com:8443/mtwilson/v2/reports/batch
+     * Input:
+     * {
+     *     "host_ids": ["7af05d65-4275-48fb-bd0b-ee1204fc0789"],
+     *     "host_names": ["RHEL-Host-1", "RHEL-Host-2"],
+     *     "hardware_uuids": ["00964993-89c1-e711-906e-00163566263e"]
+     * }
+     *
+     * Output:
+     * {
+     *     "reports": [{
+     *         "id": "aa9a7f6a-2a1c-4c3d-a2d3-1d0f12c6b1b0",
+     *         "host_id": "7af05d65-4275-48fb-bd0b-ee1204fc0789",
+     *         "trust_information": {...},
+     *         "created": "2018-07-23T16:39:52-0700",
+     *         "expiration": "2018-07-23T17:39:52-0700"
+     *     }]
+     * }
+     * </pre></div>
+     * @mtwSampleApiCall
+     * <div style="word-wrap: break-word; width: 1024px"><pre>
+     * // Create the lookup criteria and add the hosts
+     * HostBatchLookupCriteria lookupCriteria = new HostBatchLookupCriteria();
+     * lookupCriteria.getHostNames().add("RHEL-Host-1");
+     * lookupCriteria.getHostNames().add("RHEL-Host-2");
+     *
+     * // Create the client and call the batch lookup API
+     * Reports client = new Reports(properties);
+     * ReportCollection obj = client.searchByHosts(lookupCriteria);
+     * </pre></div>
+     */
+    public ReportCollection searchByHosts(HostBatchLookupCriteria lookupCriteria) {
+        log.debug("target: {}", getTarget().getUri().toString());
+        ReportCollection objCollection = getTarget().path("reports/batch").request().accept(MediaType.APPLICATION_JSON).post(Entity.json(lookupCriteria), ReportCollection.class);
+        return objCollection;
+    }
+
+    /**
+     * Same as {@link #searchByHosts(HostBatchLookupCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param lookupCriteria see {@link #searchByHosts(HostBatchLookupCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<ReportCollection> searchByHostsAsync(final HostBatchLookupCriteria lookupCriteria) {
+        return AsyncClientCalls.submit(new Callable<ReportCollection>() {
+            @Override
+            public ReportCollection call() {
+                return searchByHosts(lookupCriteria);
+            }
+        });
+    }
     
     /**
      * Searches for the SAML attestation reports for the hosts.
@@ -875,6 +1019,20 @@ public class Reports extends MtWilsonClient {
         return hostSaml;            
     }
 
+    /**
+     * Same as {@link #searchSamlReports(ReportFilterCriteria)}, run in the background by {@link AsyncClientCalls}.
+     * @param filterCriteria see {@link #searchSamlReports(ReportFilterCriteria)}
+     * @return the result of the call when it completes
+     */
+    public Future<String> searchSamlReportsAsync(final ReportFilterCriteria filterCriteria) {
+        return AsyncClientCalls.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return searchSamlReports(filterCriteria);
+            }
+        });
+    }
+
     
     /**
      * Deletes a report.
@@ -907,12 +1065,18 @@ public class Reports extends MtWilsonClient {
         map.put("id", locator.pathId.toString());
         Response obj = getTarget().path("reports/{id}").resolveTemplates(map).request(MediaType.APPLICATION_JSON).delete();
         log.debug(obj.toString());
+        obj.close();
     }
         
     /**
      * Verifies the signature of the retrieved SAML assertion using the SAML 
      * certificate stored in the user keystore created during user registration.
      * This functionality is available for the API library users only.
+     * <pre>
+     * The keystore is loaded on the first call and again only when the keystore file changes. When
+     * mtwilson.api.saml.cache.max.entries is set, valid assertions are remembered until they expire and
+     * the same assertion is not verified again.
+     * </pre>
      * @param saml SAML assertion.
      * @return TrustAssertion object having the status of verification.
      * @throws java.security.KeyManagementException
@@ -937,20 +1101,42 @@ public class Reports extends MtWilsonClient {
      */        
     public TrustAssertion verifyTrustAssertion(String saml) throws KeyManagementException, KeyStoreException, 
             NoSuchAlgorithmException, UnrecoverableEntryException, CertificateEncodingException {
-        String keystorePath = getConfiguration().get("mtwilson.api.keystore");
-        Password keystorePassword = getPassword("mtwilson.api.keystore.password");
-        if( keystorePath != null && !keystorePath.isEmpty() && keystorePassword != null ) {
-            SimpleKeystore keystore = new SimpleKeystore(new File(keystorePath), keystorePassword);
-            X509Certificate[] trustedSamlCertificates;
-            try {
-                trustedSamlCertificates = keystore.getTrustedCertificates(SimpleKeystore.SAML);
-            }
-            catch(KeyStoreException | NoSuchAlgorithmException | UnrecoverableEntryException | CertificateEncodingException e) {
-                throw e;
-            }
-            TrustAssertion trustAssertion = new TrustAssertion(trustedSamlCertificates, saml);
-            return trustAssertion;            
+        SamlTrustAnchors trustAnchors = getSamlTrustAnchors();
+        if (trustAnchors != null) {
+            return trustAnchors.verify(saml);
         }
         return null;
     }
+
+    /**
+     * Reloads the trusted SAML certificates from the keystore and forgets the
+     * assertions verified so far. The keystore is also reloaded automatically
+     * when the file changes.
+     * @throws java.security.KeyManagementException
+     * @throws java.security.KeyStoreException
+     * @throws java.security.NoSuchAlgorithmException
+     * @throws java.security.UnrecoverableEntryException
+     * @throws java.security.cert.CertificateEncodingException
+     */
+    public void reloadTrustedSamlCertificates() throws KeyManagementException, KeyStoreException,
+            NoSuchAlgorithmException, UnrecoverableEntryException, CertificateEncodingException {
+        SamlTrustAnchors trustAnchors = getSamlTrustAnchors();
+        if (trustAnchors != null) {
+            trustAnchors.reload();
+        }
+    }
+
+    private synchronized SamlTrustAnchors getSamlTrustAnchors() {
+        if (samlTrustAnchors == null) {
+            String keystorePath = getConfiguration().get("mtwilson.api.keystore");
+            Password keystorePassword = getPassword("mtwilson.api.keystore.password");
+            if (keystorePath == null || keystorePath.isEmpty() || keystorePassword == null) {
+                return null;
+            }
+            String maxEntries = getConfiguration().get("mtwilson.api.saml.cache.max.entries");
+            samlTrustAnchors = new SamlTrustAnchors(new File(keystorePath), keystorePassword,
+                    maxEntries == null || maxEntries.isEmpty() ? 0 : Integer.parseInt(maxEntries));
+        }
+        return samlTrustAnchors;
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.client.jaxrs;
+
+import com.intel.dcsg.cpg.crypto.Sha256Digest;
+import com.intel.dcsg.cpg.crypto.SimpleKeystore;
+import com.intel.dcsg.cpg.crypto.key.password.Password;
+import com.intel.mtwilson.supplemental.saml.TrustAssertion;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableEntryException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SAML certificates trusted by a {@link Reports} client, loaded once
+ * from the client keystore and reloaded when the keystore file changes, with
+ * an optional cache of the assertions verified with them.
+ *
+ * Verified assertions are cached by the SHA-256 of their XML until the
+ * assertion expires, so polling the same report again does not validate its
+ * signature again. Only valid assertions are cached, and the cache is
+ * cleared whenever the trusted certificates are reloaded.
+ */
+class SamlTrustAnchors {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SamlTrustAnchors.class);
+
+    private final File keystoreFile;
+    private final Password keystorePassword;
+    private final int maxCachedAssertions;
+    private final ConcurrentHashMap<String, VerifiedAssertion> verifiedAssertions = new ConcurrentHashMap<>();
+    private X509Certificate[] certificates = null;
+    private long keystoreLastModified;
+    private long keystoreLength;
+
+    /**
+     * @param maxCachedAssertions the maximum number of verified assertions to
+     * keep, 0 to verify every assertion
+     */
+    SamlTrustAnchors(File keystoreFile, Password keystorePassword, int maxCachedAssertions) {
+        this.keystoreFile = keystoreFile;
+        this.keystorePassword = keystorePassword;
+        this.maxCachedAssertions = maxCachedAssertions;
+    }
+
+    /**
+     * @return the trusted SAML certificates, reloaded from the keystore if it
+     * changed since they were loaded
+     */
+    synchronized X509Certificate[] getCertificates() throws KeyManagementException, KeyStoreException,
+            NoSuchAlgorithmException, UnrecoverableEntryException, CertificateEncodingException {
+        if (certificates == null || keystoreFile.lastModified() != keystoreLastModified || keystoreFile.length() != keystoreLength) {
+            reload();
+        }
+        return certificates;
+    }
+
+    /**
+     * Loads the trusted SAML certificates from the keystore and forgets the
+     * assertions verified with the previous ones.
+     */
+    synchronized void reload() throws KeyManagementException, KeyStoreException,
+            NoSuchAlgorithmException, UnrecoverableEntryException, CertificateEncodingException {
+        long lastModified = keystoreFile.lastModified();
+        long length = keystoreFile.length();
+        SimpleKeystore keystore = new SimpleKeystore(keystoreFile, keystorePassword);
+        certificates = keystore.getTrustedCertificates(SimpleKeystore.SAML);
+        keystoreLastModified = lastModified;
+        keystoreLength = length;
+        verifiedAssertions.clear();
+        log.debug("Loaded {} trusted SAML certificates from {}", certificates.length, keystoreFile.getAbsolutePath());
+    }
+
+    TrustAssertion verify(String saml) throws KeyManagementException, KeyStoreException,
+            NoSuchAlgorithmException, UnrecoverableEntryException, CertificateEncodingException {
+        X509Certificate[] trustedSamlCertificates = getCertificates();
+        if (maxCachedAssertions <= 0) {
+            return new TrustAssertion(trustedSamlCertificates, saml);
+        }
+        String key = Sha256Digest.digestOf(saml.getBytes(StandardCharsets.UTF_8)).toHexString();
+        long now = System.currentTimeMillis();
+        VerifiedAssertion verifiedAssertion = verifiedAssertions.get(key);
+        if (verifiedAssertion != null) {
+            if (verifiedAssertion.expires > now) {
+                return verifiedAssertion.trustAssertion;
+            }
+            verifiedAssertions.remove(key, verifiedAssertion);
+        }
+        TrustAssertion trustAssertion = new TrustAssertion(trustedSamlCertificates, saml);
+        Date notAfter = trustAssertion.isValid() ? trustAssertion.getNotAfter() : null;
+        if (notAfter != null && notAfter.getTime() > now) {
+            if (verifiedAssertions.size() >= maxCachedAssertions) {
+                removeExpired(now);
+            }
+            if (verifiedAssertions.size() < maxCachedAssertions) {
+                verifiedAssertions.put(key, new VerifiedAssertion(trustAssertion, notAfter.getTime()));
+                // the certificates may have been reloaded while the assertion was verified
+                if (trustedSamlCertificates != certificates()) {
+                    verifiedAssertions.remove(key);
+                }
+            }
+        }
+        return trustAssertion;
+    }
+
+    private synchronized X509Certificate[] certificates() {
+        return certificates;
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Map.Entry<String, VerifiedAssertion>> iterator = verifiedAssertions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expires <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class VerifiedAssertion {
+        private final TrustAssertion trustAssertion;
+        private final long expires;
+
+        private VerifiedAssertion(TrustAssertion trustAssertion, long expires) {
+            this.trustAssertion = trustAssertion;
+            this.expires = expires;
+        }
+    }
+}
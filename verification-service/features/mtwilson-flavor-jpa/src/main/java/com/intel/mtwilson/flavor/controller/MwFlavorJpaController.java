@@ -22,6 +22,7 @@ import static com.intel.mtwilson.core.flavor.common.FlavorPart.*;
 import static java.util.Optional.ofNullable;
 
 import javax.persistence.*;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
@@ -42,7 +43,7 @@ public class MwFlavorJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwFlavor mwFlavor) throws PreexistingEntityException, Exception {
@@ -133,6 +134,33 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
 
+    /**
+     * Returns up to maxResults flavors ordered by ID, starting after the given
+     * ID, so the whole table can be read in pages of bounded size without the
+     * cost of an offset.
+     * @param afterId the ID of the last entry of the previous page, or null for the first page
+     * @param maxResults the page size
+     * @return the page of flavors
+     */
+    public List<MwFlavor> findMwFlavorEntitiesAfter(String afterId, int maxResults) {
+        EntityManager em = getEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<MwFlavor> cq = cb.createQuery(MwFlavor.class);
+            Root<MwFlavor> rt = cq.from(MwFlavor.class);
+            cq.select(rt);
+            if (afterId != null) {
+                cq.where(cb.greaterThan(rt.<String>get("id"), afterId));
+            }
+            cq.orderBy(cb.asc(rt.get("id")));
+            TypedQuery<MwFlavor> q = em.createQuery(cq);
+            q.setMaxResults(maxResults);
+            return q.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
     public MwFlavor findMwFlavor(String id) {
         EntityManager em = getEntityManager();
         try {
@@ -203,18 +231,18 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
-    private String buildFlavorPartQueryStringWithFlavorParts(String flavorType, String flavorgroupId) {
+    private static String buildFlavorPartQueryStringWithFlavorParts(String flavorType, String flavorgroupId) {
         return String.format("%s AND f.content -> 'meta' -> 'description' ->> 'flavor_part'='%s'", buildFlavorPartQueryStringWithFlavorgroup(flavorgroupId), flavorType);
     }
 
-    private String buildFlavorPartQueryStringWithFlavorgroup(String flavorgroupId) {
+    private static String buildFlavorPartQueryStringWithFlavorgroup(String flavorgroupId) {
         return String.format("SELECT f.id FROM mw_flavor AS f\n"
                 + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id \n"
                 + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id \n"
                 + "WHERE fg.id = '%s'\n", flavorgroupId);
     }
     
-    private String buildMultipleFlavorPartQueryString(String flavorgroupId,HostManifest hostManifest, HashMap<String, Boolean> flavorTypesWithLatestStatus) {        
+    private static String buildMultipleFlavorPartQueryString(String flavorgroupId,HostManifest hostManifest, HashMap<String, Boolean> flavorTypesWithLatestStatus) {        
 
         String jsonDescriptionQueryTemplate = "f.content -> 'meta' -> 'description' ->>";
         String jsonBiosQueryTemplate = "f.content -> 'bios' ->>";
@@ -400,9 +428,7 @@ public class MwFlavorJpaController implements Serializable {
             flavorgroupIdString = flavorgroupId.toString();
         }
         try {
-            String queryString = String.format("SELECT f.id, f.content FROM mw_flavor AS f %s",
-                    ofNullable(buildMultipleFlavorPartQueryString(flavorgroupIdString, hostManifest, 
-                            flavorTypeswithLatestStatus)).orElse(""));
+            String queryString = buildFlavorSearchQueryString(flavorgroupIdString, hostManifest, flavorTypeswithLatestStatus);
             log.debug("The Flavor search query string is:\n{}", queryString);
             Query query = em.createNativeQuery(queryString, MwFlavor.class);
 
@@ -415,20 +441,19 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
-    private String buildFlavorPartQueryString(String flavorType) {
+    static String buildFlavorSearchQueryString(String flavorgroupId, HostManifest hostManifest, HashMap<String, Boolean> flavorTypesWithLatestStatus) {
+        return String.format("SELECT f.id, f.content FROM mw_flavor AS f %s",
+                ofNullable(buildMultipleFlavorPartQueryString(flavorgroupId, hostManifest, flavorTypesWithLatestStatus)).orElse(""));
+    }
+
+    private static String buildFlavorPartQueryString(String flavorType) {
         return String.format("f.content -> 'meta' -> 'description' ->> 'flavor_part' = '%s'", flavorType);
     }
     
     public boolean hostHasUniqueFlavor(String hardwareUuid, String flavorType) {
         EntityManager em = getEntityManager();
         try {
-            Query query = em.createNativeQuery("SELECT COUNT(*) " +
-                    "FROM mw_flavor as f " +
-                    "INNER JOIN mw_link_flavor_flavorgroup as l ON f.id = l.flavor_id " +
-                    "INNER JOIN mw_flavorgroup as fg ON l.flavorgroup_id = fg.id " +
-                    "WHERE fg.name = 'host_unique' " +
-                    "AND (" + buildFlavorPartQueryString(flavorType) + " " +
-                    "AND LOWER(f.content -> 'meta' -> 'description' ->> 'hardware_uuid') = ?)");
+            Query query = em.createNativeQuery(buildHostHasUniqueFlavorQueryString(flavorType));
             query.setParameter(1, hardwareUuid.toLowerCase());
             Long uniqueFlavorsForHostCount = (Long) query.getResultList().get(0);
             if (uniqueFlavorsForHostCount > 0) {
@@ -440,6 +465,16 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
+    static String buildHostHasUniqueFlavorQueryString(String flavorType) {
+        return "SELECT COUNT(*) " +
+                "FROM mw_flavor as f " +
+                "INNER JOIN mw_link_flavor_flavorgroup as l ON f.id = l.flavor_id " +
+                "INNER JOIN mw_flavorgroup as fg ON l.flavorgroup_id = fg.id " +
+                "WHERE fg.name = 'host_unique' " +
+                "AND (" + buildFlavorPartQueryString(flavorType) + " " +
+                "AND LOWER(f.content -> 'meta' -> 'description' ->> 'hardware_uuid') = ?)";
+    }
+
     public boolean flavorgroupContainsFlavorType(UUID flavorgroupId, String flavorType) {
         EntityManager em = getEntityManager();
         try {
@@ -460,7 +495,7 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
-    private HardwareFeatureDetails getHardwareFeatureDetails(HostManifest hostManifest, HardwareFeature feature) {
+    private static HardwareFeatureDetails getHardwareFeatureDetails(HostManifest hostManifest, HardwareFeature feature) {
         HardwareFeatureDetails featureDetails = null;
         if(hostManifest.getHostInfo().getHardwareFeatures() != null && hostManifest.getHostInfo().getHardwareFeatures().size() != 0) {
             featureDetails = hostManifest.getHostInfo().getHardwareFeatures().get(feature);
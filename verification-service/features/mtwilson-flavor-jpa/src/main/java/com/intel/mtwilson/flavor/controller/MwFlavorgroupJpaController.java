@@ -13,8 +13,10 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
@@ -31,7 +33,7 @@ public class MwFlavorgroupJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwFlavorgroup mwFlavorgroup) throws PreexistingEntityException, Exception {
@@ -121,6 +123,33 @@ public class MwFlavorgroupJpaController implements Serializable {
         }
     }
 
+    /**
+     * Returns up to maxResults flavorgroups ordered by ID, starting after the given
+     * ID, so the whole table can be read in pages of bounded size without the
+     * cost of an offset.
+     * @param afterId the ID of the last entry of the previous page, or null for the first page
+     * @param maxResults the page size
+     * @return the page of flavorgroups
+     */
+    public List<MwFlavorgroup> findMwFlavorgroupEntitiesAfter(String afterId, int maxResults) {
+        EntityManager em = getEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<MwFlavorgroup> cq = cb.createQuery(MwFlavorgroup.class);
+            Root<MwFlavorgroup> rt = cq.from(MwFlavorgroup.class);
+            cq.select(rt);
+            if (afterId != null) {
+                cq.where(cb.greaterThan(rt.<String>get("id"), afterId));
+            }
+            cq.orderBy(cb.asc(rt.get("id")));
+            TypedQuery<MwFlavorgroup> q = em.createQuery(cq);
+            q.setMaxResults(maxResults);
+            return q.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
     public MwFlavorgroup findMwFlavorgroup(String id) {
         EntityManager em = getEntityManager();
         try {
@@ -28,7 +28,7 @@ public class MwHostCredentialJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwHostCredential mwHostPreRegistrationDetails) throws PreexistingEntityException, Exception {
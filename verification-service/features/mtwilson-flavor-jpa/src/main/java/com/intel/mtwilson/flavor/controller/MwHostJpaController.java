@@ -9,14 +9,17 @@ import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityExceptio
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
 import com.intel.mtwilson.flavor.data.MwHost;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
@@ -34,7 +37,7 @@ public class MwHostJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwHost mwHost) throws PreexistingEntityException, Exception {
@@ -124,6 +127,129 @@ public class MwHostJpaController implements Serializable {
         }
     }
 
+    /**
+     * Returns up to maxResults hosts ordered by ID, starting after the given
+     * ID, so the whole table can be read in pages of bounded size without the
+     * cost of an offset.
+     * @param afterId the ID of the last entry of the previous page, or null for the first page
+     * @param maxResults the page size
+     * @return the page of hosts
+     */
+    public List<MwHost> findMwHostEntitiesAfter(String afterId, int maxResults) {
+        EntityManager em = getEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<MwHost> cq = cb.createQuery(MwHost.class);
+            Root<MwHost> rt = cq.from(MwHost.class);
+            cq.select(rt);
+            if (afterId != null) {
+                cq.where(cb.greaterThan(rt.<String>get("id"), afterId));
+            }
+            cq.orderBy(cb.asc(rt.get("id")));
+            TypedQuery<MwHost> q = em.createQuery(cq);
+            q.setMaxResults(maxResults);
+            return q.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Finds the hosts matching all of the given criteria in one query,
+     * ordered by ID and starting after the given ID so the results can be
+     * read in pages. Null or empty criteria are ignored.
+     * @param id the host ID
+     * @param name the exact host name
+     * @param nameContains part of the host name
+     * @param hardwareUuid the hardware UUID, compared case insensitively
+     * @param tlsPolicyId the TLS policy ID
+     * @param key the host info field to match, used only together with value
+     * @param value the host info value to match, used only together with key
+     * @param flavorgroupName the name of a flavorgroup the host is linked to
+     * @param afterId the ID of the last host of the previous page, or null for the first page
+     * @param limit the page size, or 0 for no limit
+     * @return the matching hosts
+     */
+    public List<MwHost> findMwHosts(String id, String name, String nameContains, String hardwareUuid, String tlsPolicyId,
+            String key, String value, String flavorgroupName, String afterId, int limit) {
+        List<String> parameters = new ArrayList<>();
+        String formattedQuery = buildHostSearchQueryString(id, name, nameContains, hardwareUuid, tlsPolicyId,
+                key, value, flavorgroupName, afterId, parameters);
+        EntityManager em = getEntityManager();
+        try {
+            Query query = em.createNativeQuery(formattedQuery, MwHost.class);
+            for (int i = 0; i < parameters.size(); i++) {
+                query.setParameter(i + 1, parameters.get(i));
+            }
+            if (limit > 0) {
+                query.setMaxResults(limit);
+            }
+            return query.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Builds the query of {@link #findMwHosts}.
+     * @param parameters receives the values of the query parameters in order
+     */
+    static String buildHostSearchQueryString(String id, String name, String nameContains, String hardwareUuid,
+            String tlsPolicyId, String key, String value, String flavorgroupName, String afterId, List<String> parameters) {
+        List<String> conditions = new ArrayList<>();
+        if (id != null && !id.isEmpty()) {
+            conditions.add("h.id = ?");
+            parameters.add(id);
+        }
+        if (name != null && !name.isEmpty()) {
+            conditions.add("h.name = ?");
+            parameters.add(name);
+        }
+        if (nameContains != null && !nameContains.isEmpty()) {
+            conditions.add("h.name LIKE ?");
+            parameters.add("%" + nameContains + "%");
+        }
+        if (hardwareUuid != null && !hardwareUuid.isEmpty()) {
+            // matches the expression of idx_host_hardware_uuid
+            conditions.add("LOWER(h.hardware_uuid) = LOWER(?)");
+            parameters.add(hardwareUuid);
+        }
+        if (tlsPolicyId != null && !tlsPolicyId.isEmpty()) {
+            conditions.add("h.tls_policy_id = ?");
+            parameters.add(tlsPolicyId);
+        }
+        if (key != null && !key.isEmpty() && value != null && !value.isEmpty()) {
+            // same conditions as MwHostStatusJpaController.findMwHostListByKeyValue
+            if (MwHostStatusJpaController.HARDWARE_UUID_KEY.equalsIgnoreCase(key)) {
+                conditions.add("EXISTS (SELECT 1 FROM mw_host_status AS hs WHERE hs.host_id = h.id AND hs.hardware_uuid = LOWER(?))");
+                parameters.add(value);
+            } else {
+                conditions.add("EXISTS (SELECT 1 FROM mw_host_status AS hs WHERE hs.host_id = h.id "
+                        + "AND hs.host_report -> 'host_info' ->> ? = ?)");
+                parameters.add(key);
+                parameters.add(value);
+            }
+        }
+        if (flavorgroupName != null && !flavorgroupName.isEmpty()) {
+            conditions.add("EXISTS (SELECT 1 FROM mw_link_flavorgroup_host AS l "
+                    + "INNER JOIN mw_flavorgroup AS fg ON fg.id = l.flavorgroup_id "
+                    + "WHERE l.host_id = h.id AND fg.name = ?)");
+            parameters.add(flavorgroupName);
+        }
+        if (afterId != null && !afterId.isEmpty()) {
+            conditions.add("h.id > ?");
+            parameters.add(afterId);
+        }
+
+        StringBuilder formattedQuery = new StringBuilder("SELECT h.* FROM mw_host AS h");
+        for (int i = 0; i < conditions.size(); i++) {
+            formattedQuery.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+        // a stable order is needed for the pages to follow on from each other
+        formattedQuery.append(" ORDER BY h.id");
+        return formattedQuery.toString();
+    }
+
     public MwHost findMwHost(String id) {
         EntityManager em = getEntityManager();
         try {
@@ -39,6 +39,14 @@ import javax.persistence.criteria.Root;
 public class MwHostStatusJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwHostStatusJpaController.class);
+    static final String HARDWARE_UUID_KEY = "hardware_uuid";
+    // the indexed digest narrows the search, the certificate itself is compared to rule out collisions
+    static final String HOST_STATUS_BY_AIK_CERTIFICATE_QUERY = "SELECT * FROM mw_host_status WHERE aik_certificate_digest = MD5(?) "
+            + "AND host_report ->> 'aik_certificate' = ?";
+    static final String HOST_IDS_BY_HARDWARE_UUID_QUERY = "SELECT host_id FROM mw_host_status WHERE hardware_uuid = LOWER(?)";
+    // compared as text so boolean and numeric host info fields match their string value
+    static final String HOST_IDS_BY_HOST_INFO_QUERY = "SELECT host_id FROM mw_host_status "
+            + "WHERE host_report -> 'host_info' ->> ? = ?";
 
     public MwHostStatusJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -46,7 +54,7 @@ public class MwHostStatusJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwHostStatus mwHostStatus) throws PreexistingEntityException, Exception {
@@ -249,12 +257,11 @@ public class MwHostStatusJpaController implements Serializable {
     }
 
     public MwHostStatus findMwHostStatusByAikCertificate(String aikCertificate) {
-        String jsonQueryText = String.format("host_report ->> 'aik_certificate' = '%s'", aikCertificate);
         EntityManager em = getEntityManager();
         try {
-            Query query = em.createNativeQuery(
-                    "SELECT * FROM mw_host_status WHERE "
-                    + jsonQueryText, MwHostStatus.class);
+            Query query = em.createNativeQuery(HOST_STATUS_BY_AIK_CERTIFICATE_QUERY, MwHostStatus.class);
+            query.setParameter(1, aikCertificate);
+            query.setParameter(2, aikCertificate);
             MwHostStatus mwHostStatus = (MwHostStatus) query.getSingleResult();
             return mwHostStatus;
         } catch (NoResultException e) {
@@ -269,9 +276,15 @@ public class MwHostStatusJpaController implements Serializable {
         List<String> hostList = null;
         EntityManager em = getEntityManager();
         try {
-            Query query = em.createNativeQuery("SELECT host_id FROM mw_host_status WHERE host_report::text != 'null' AND host_report -> 'host_info' ->> ? = ?");
-            query.setParameter(1, key);
-            query.setParameter(2, value);
+            Query query;
+            if (HARDWARE_UUID_KEY.equalsIgnoreCase(key)) {
+                query = em.createNativeQuery(HOST_IDS_BY_HARDWARE_UUID_QUERY);
+                query.setParameter(1, value);
+            } else {
+                query = em.createNativeQuery(HOST_IDS_BY_HOST_INFO_QUERY);
+                query.setParameter(1, key);
+                query.setParameter(2, value);
+            }
 
             if (query.getResultList() != null && !query.getResultList().isEmpty()) {
                 hostList = query.getResultList();
@@ -284,6 +297,16 @@ public class MwHostStatusJpaController implements Serializable {
 
     public List<MwHostStatus> findLatestMwHostStatus(String hostStatusId, String hostId, String hostName, String hardwareUuid,
             String aikCertificate, String hostState, int limit) {
+        return findLatestMwHostStatus(hostStatusId, hostId, hostName, hardwareUuid, aikCertificate, hostState, null, limit);
+    }
+
+    /**
+     * Finds the current status of the matching hosts ordered by host status
+     * ID, starting after the given ID so the results can be read in pages.
+     * @param afterId the ID of the last host status of the previous page, or null for the first page
+     */
+    public List<MwHostStatus> findLatestMwHostStatus(String hostStatusId, String hostId, String hostName, String hardwareUuid,
+            String aikCertificate, String hostState, String afterId, int limit) {
         List<MwHostStatus> hostStatusList = null;
         EntityManager em = getEntityManager();
         try {
@@ -334,7 +357,9 @@ public class MwHostStatusJpaController implements Serializable {
 
             //Build aik certificate query string and add it to the additional options query string
             if (aikCertificate != null && !aikCertificate.isEmpty()) {
-                String aikCertificateQueryString = String.format("hs.host_report ->> aik_certificate = '%s'", aikCertificate);
+                // the certificate is bound rather than formatted into the query, it is compared
+                // through the digest index and then in full in case of a digest collision
+                String aikCertificateQueryString = "hs.aik_certificate_digest = MD5(?) AND hs.host_report ->> 'aik_certificate' = ?";
                 if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
                     additionalOptionsQueryString = String.format("%s", aikCertificateQueryString);
                 } else {
@@ -342,6 +367,16 @@ public class MwHostStatusJpaController implements Serializable {
                 }
             }
 
+            //Build keyset partial query string and add it to the additional options query string
+            if (afterId != null && !afterId.isEmpty()) {
+                String afterIdQueryString = String.format("hs.id > '%s'", afterId);
+                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
+                    additionalOptionsQueryString = String.format("%s", afterIdQueryString);
+                } else {
+                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, afterIdQueryString);
+                }
+            }
+
             // build final formatted string with additional options string and the table join string
             String formattedQuery = "SELECT hs.* FROM mw_host_status hs";
             if (tableJoinString != null && !tableJoinString.isEmpty()) {
@@ -350,8 +385,14 @@ public class MwHostStatusJpaController implements Serializable {
             if (additionalOptionsQueryString != null && !additionalOptionsQueryString.isEmpty()) {
                 formattedQuery = String.format("%s WHERE %s", formattedQuery, additionalOptionsQueryString);
             }
+            // a stable order is needed for the pages to follow on from each other
+            formattedQuery = String.format("%s ORDER BY hs.id", formattedQuery);
 
             Query query = em.createNativeQuery(formattedQuery, MwHostStatus.class);
+            if (aikCertificate != null && !aikCertificate.isEmpty()) {
+                query.setParameter(1, aikCertificate);
+                query.setParameter(2, aikCertificate);
+            }
             query.setMaxResults(limit);
             if (query.getResultList() != null && !query.getResultList().isEmpty()) {
                 hostStatusList = query.getResultList();
@@ -362,6 +403,57 @@ public class MwHostStatusJpaController implements Serializable {
         }
     }
 
+    /**
+     * Finds the current status of all the hosts matching any of the given
+     * IDs, names or hardware UUIDs with a single query, ordered by host status ID.
+     * Hosts without a status are left out.
+     * @param hostIds host IDs, may be empty
+     * @param hostNames host names, may be empty
+     * @param hardwareUuids hardware UUIDs, matched without regard to case, may be empty
+     */
+    public List<MwHostStatus> findLatestMwHostStatusByHosts(List<String> hostIds, List<String> hostNames, List<String> hardwareUuids) {
+        List<String> parameters = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (!hostIds.isEmpty()) {
+            // cast to the column type so the host_id index can be used with the string parameters
+            conditions.add(String.format("hs.host_id IN (%s)", getParamBuffer(hostIds.size(), "CAST(? AS CHAR(36))")));
+            parameters.addAll(hostIds);
+        }
+        if (!hostNames.isEmpty()) {
+            conditions.add(String.format("h.name IN (%s)", getParamBuffer(hostNames.size(), "?")));
+            parameters.addAll(hostNames);
+        }
+        if (!hardwareUuids.isEmpty()) {
+            // matches the LOWER(hardware_uuid) index of mw_host
+            conditions.add(String.format("LOWER(h.hardware_uuid) IN (%s)", getParamBuffer(hardwareUuids.size(), "?")));
+            for (String hardwareUuid : hardwareUuids) {
+                parameters.add(hardwareUuid.toLowerCase());
+            }
+        }
+        if (conditions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder whereString = new StringBuilder();
+        for (String condition : conditions) {
+            if (whereString.length() > 0) {
+                whereString.append(" OR ");
+            }
+            whereString.append(condition);
+        }
+        EntityManager em = getEntityManager();
+        try {
+            String formattedQuery = String.format("SELECT hs.* FROM mw_host_status hs INNER JOIN mw_host h on h.id = hs.host_id WHERE %s ORDER BY hs.id", whereString);
+            Query query = em.createNativeQuery(formattedQuery, MwHostStatus.class);
+            for (int i = 0; i < parameters.size(); i++) {
+                query.setParameter(i + 1, parameters.get(i));
+            }
+            List<MwHostStatus> results = query.getResultList();
+            return results;
+        } finally {
+            em.close();
+        }
+    }
+
     public List<MwHostStatus> findMwHostStatus(String hostStatusId, String hostId, String hostName, String hardwareUuid,
             String aikCertificate, String hostState, Date fromDate, Date toDate, boolean latestPerHost, int limit) {
 
@@ -573,4 +665,13 @@ public class MwHostStatusJpaController implements Serializable {
 
         return hostIdentifierQueryString;
     }
+
+    private String getParamBuffer(int size, String param) {
+        StringBuffer params = new StringBuffer();
+        params.append(param);
+        for (int i = 1; i < size; i++) {
+            params.append(", ").append(param);
+        }
+        return params.toString();
+    }
 }
@@ -32,7 +32,7 @@ public class MwLinkFlavorFlavorgroupJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwLinkFlavorFlavorgroup mwLinkFlavorFlavorgroup) throws PreexistingEntityException, Exception {
@@ -5,11 +5,15 @@
 
 package com.intel.mtwilson.flavor.controller;
 
+import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.data.MwLinkFlavorHost;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
@@ -17,8 +21,6 @@ import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
-import org.apache.commons.lang.exception.ExceptionUtils;
-import org.postgresql.util.PSQLException;
 
 /**
  *
@@ -26,6 +28,8 @@ import org.postgresql.util.PSQLException;
  */
 public class MwLinkFlavorHostJpaController implements Serializable {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwLinkFlavorHostJpaController.class);
+    // each inserted link takes 3 bind parameters, the driver allows 32767 per statement
+    private static final int MAX_LINKS_PER_STATEMENT = 10000;
 
     public MwLinkFlavorHostJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -33,23 +37,33 @@ public class MwLinkFlavorHostJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
+    /**
+     * Creates the link unless the flavor is already linked to the host. The
+     * existing link is kept, without a unique violation that would abort an
+     * enclosing {@link UnitOfWork}.
+     */
     public void create(MwLinkFlavorHost mwLinkFlavorHost) {
         EntityManager em = null;
         try {
             em = getEntityManager();
             em.getTransaction().begin();
-            em.persist(mwLinkFlavorHost);
+            Query query = em.createNativeQuery("INSERT INTO mw_link_flavor_host (id, flavor_id, host_id) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (flavor_id, host_id) DO NOTHING");
+            query.setParameter(1, mwLinkFlavorHost.getId());
+            query.setParameter(2, mwLinkFlavorHost.getFlavorId());
+            query.setParameter(3, mwLinkFlavorHost.getHostId());
+            if (query.executeUpdate() == 0) {
+                log.debug("The link between flavor {} and host {} already exists", mwLinkFlavorHost.getFlavorId(), mwLinkFlavorHost.getHostId());
+            }
             em.getTransaction().commit();
         } catch (RuntimeException e) {
-            Throwable rootCause = ExceptionUtils.getRootCause(e);
-            if (PSQLException.class.equals(rootCause.getClass()) && "23505".equals(((PSQLException) rootCause).getSQLState())) {
-                log.error("The link between flavor and host with id {} already exists", mwLinkFlavorHost.getId());
-            } else {
-                throw e;
+            if (em != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
             }
+            throw e;
         } finally {
             if (em != null) {
                 em.close();
@@ -229,4 +243,131 @@ public class MwLinkFlavorHostJpaController implements Serializable {
             em.close();
         }
     }
+
+    /**
+     * Replaces the set of flavor host links (trust cache records) for the
+     * given host with the specified flavors. Links that do not exist yet are
+     * inserted and links to flavors not in the set are removed, using one
+     * INSERT and one DELETE statement in a single transaction.
+     * @param hostId the host whose links are replaced
+     * @param flavorIds the complete set of flavors that should be linked to the host
+     */
+    public void replaceMwLinkFlavorHosts(String hostId, Collection<String> flavorIds) {
+        replaceMwLinkFlavorHosts(Collections.singletonMap(hostId, flavorIds));
+    }
+
+    /**
+     * Replaces the set of flavor host links for each host in the map in a
+     * single transaction. New links are inserted with INSERT ... ON CONFLICT
+     * DO NOTHING and stale links removed with DELETE ... WHERE NOT IN, each
+     * statement covering up to MAX_LINKS_PER_STATEMENT links so that the
+     * number of bind parameters stays below the limit of the JDBC driver.
+     * @param flavorIdsByHostId the complete set of linked flavors for each host
+     */
+    public void replaceMwLinkFlavorHosts(Map<String, ? extends Collection<String>> flavorIdsByHostId) {
+        if (flavorIdsByHostId == null || flavorIdsByHostId.isEmpty()) {
+            return;
+        }
+        List<String[]> links = new ArrayList<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : flavorIdsByHostId.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            for (String flavorId : entry.getValue()) {
+                links.add(new String[]{flavorId, entry.getKey()});
+            }
+        }
+        EntityManager em = null;
+        try {
+            em = getEntityManager();
+            em.getTransaction().begin();
+            int inserted = 0;
+            for (int from = 0; from < links.size(); from += MAX_LINKS_PER_STATEMENT) {
+                List<String[]> batch = links.subList(from, Math.min(from + MAX_LINKS_PER_STATEMENT, links.size()));
+                inserted += buildInsertLinksQuery(em, batch).executeUpdate();
+            }
+            log.debug("Inserted {} new flavor host links for {} hosts", inserted, flavorIdsByHostId.size());
+
+            // the hosts are deleted for in batches, each with all of its links so the NOT IN is complete
+            int deleted = 0;
+            List<String> hostBatch = new ArrayList<>();
+            List<String[]> linkBatch = new ArrayList<>();
+            int position = 0;
+            for (Map.Entry<String, ? extends Collection<String>> entry : flavorIdsByHostId.entrySet()) {
+                int hostLinkCount = entry.getValue() == null ? 0 : entry.getValue().size();
+                if (!hostBatch.isEmpty() && hostBatch.size() + linkBatch.size() + hostLinkCount > MAX_LINKS_PER_STATEMENT) {
+                    deleted += buildDeleteLinksNotInQuery(em, hostBatch, linkBatch).executeUpdate();
+                    hostBatch.clear();
+                    linkBatch.clear();
+                }
+                hostBatch.add(entry.getKey());
+                linkBatch.addAll(links.subList(position, position + hostLinkCount));
+                position += hostLinkCount;
+            }
+            deleted += buildDeleteLinksNotInQuery(em, hostBatch, linkBatch).executeUpdate();
+            log.debug("Deleted {} stale flavor host links for {} hosts", deleted, flavorIdsByHostId.size());
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            if (em != null) {
+                em.close();
+            }
+        }
+    }
+
+    private Query buildInsertLinksQuery(EntityManager em, List<String[]> links) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < links.size(); i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(?, ?, ?)");
+        }
+        Query query = em.createNativeQuery("INSERT INTO mw_link_flavor_host (id, flavor_id, host_id) VALUES "
+                + values.toString() + " ON CONFLICT (flavor_id, host_id) DO NOTHING");
+        int position = 1;
+        for (String[] link : links) {
+            query.setParameter(position++, new UUID().toString());
+            query.setParameter(position++, link[0]);
+            query.setParameter(position++, link[1]);
+        }
+        return query;
+    }
+
+    private Query buildDeleteLinksNotInQuery(EntityManager em, Collection<String> hostIds, List<String[]> links) {
+        StringBuilder queryString = new StringBuilder("DELETE FROM mw_link_flavor_host WHERE host_id IN (");
+        for (int i = 0; i < hostIds.size(); i++) {
+            queryString.append(i > 0 ? ", ?" : "?");
+        }
+        queryString.append(")");
+        // a single host only needs the flavor IDs, which allows twice as many links
+        boolean singleHost = hostIds.size() == 1;
+        if (!links.isEmpty()) {
+            queryString.append(singleHost ? " AND flavor_id NOT IN (" : " AND (flavor_id, host_id) NOT IN (");
+            for (int i = 0; i < links.size(); i++) {
+                if (singleHost) {
+                    queryString.append(i > 0 ? ", ?" : "?");
+                } else {
+                    queryString.append(i > 0 ? ", (?, ?)" : "(?, ?)");
+                }
+            }
+            queryString.append(")");
+        }
+        Query query = em.createNativeQuery(queryString.toString());
+        int position = 1;
+        for (String hostId : hostIds) {
+            query.setParameter(position++, hostId);
+        }
+        for (String[] link : links) {
+            query.setParameter(position++, link[0]);
+            if (!singleHost) {
+                query.setParameter(position++, link[1]);
+            }
+        }
+        return query;
+    }
 }
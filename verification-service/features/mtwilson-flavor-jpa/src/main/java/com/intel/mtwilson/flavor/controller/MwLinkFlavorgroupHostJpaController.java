@@ -32,7 +32,7 @@ public class MwLinkFlavorgroupHostJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwLinkFlavorgroupHost mwLinkFlavorgroupHost) throws PreexistingEntityException, Exception {
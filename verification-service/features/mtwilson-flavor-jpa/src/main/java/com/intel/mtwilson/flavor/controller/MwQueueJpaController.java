@@ -27,6 +27,13 @@ import javax.persistence.criteria.Root;
 public class MwQueueJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwQueueJpaController.class);
+    private static final String HOST_ID_PARAMETER = "host_id";
+    // the host ID is promoted to its own indexed column
+    static final String QUEUE_BY_HOST_ID_QUERY = "SELECT * FROM mw_queue WHERE queue_action = ? AND host_id = ?";
+    // containment is used instead of ->> so the lookup can use the GIN index on action_parameters,
+    // the parameters are always stored as strings so it matches the same entries
+    static final String QUEUE_BY_ACTION_PARAMETER_QUERY = "SELECT * FROM mw_queue WHERE queue_action = ? "
+            + "AND action_parameters @> jsonb_build_object(CAST(? AS text), CAST(? AS text))";
     
     public MwQueueJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -34,7 +41,7 @@ public class MwQueueJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwQueue mwQueue) throws PreexistingEntityException {
@@ -183,10 +190,17 @@ public class MwQueueJpaController implements Serializable {
         List<MwQueue> mwQueueList = null;
         EntityManager em = getEntityManager();
         try {
-            Query query = em.createNativeQuery("SELECT * FROM mw_queue WHERE queue_action = ? AND action_parameters ->> ? = ?", MwQueue.class);
-            query.setParameter(1, action);
-            query.setParameter(2, actionParameter);
-            query.setParameter(3, value);
+            Query query;
+            if (HOST_ID_PARAMETER.equals(actionParameter)) {
+                query = em.createNativeQuery(QUEUE_BY_HOST_ID_QUERY, MwQueue.class);
+                query.setParameter(1, action);
+                query.setParameter(2, value);
+            } else {
+                query = em.createNativeQuery(QUEUE_BY_ACTION_PARAMETER_QUERY, MwQueue.class);
+                query.setParameter(1, action);
+                query.setParameter(2, actionParameter);
+                query.setParameter(3, value);
+            }
             if (query.getResultList() != null && !query.getResultList().isEmpty()) {
                 mwQueueList = query.getResultList();
             }
@@ -12,10 +12,17 @@ import com.intel.mtwilson.audit.data.AuditLogEntry;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
 import com.intel.mtwilson.flavor.data.MwReport;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -35,6 +42,9 @@ import javax.persistence.criteria.Root;
 public class MwReportJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwReportJpaController.class);
+    // each host has at most one report, so no need to rank the reports of a host
+    static final String HOSTS_WITH_EXPIRED_CACHE_QUERY = "SELECT h.id FROM mw_host AS h WHERE NOT EXISTS "
+            + "(SELECT 1 FROM mw_report AS r WHERE r.host_id = h.id AND r.expiration > CAST(? AS TIMESTAMP))";
 
     public MwReportJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -42,7 +52,7 @@ public class MwReportJpaController implements Serializable {
     private EntityManagerFactory emf = null;
 
     public EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        return UnitOfWork.getEntityManager(emf);
     }
 
     public void create(MwReport mwReport) throws PreexistingEntityException, Exception {
@@ -67,6 +77,63 @@ public class MwReportJpaController implements Serializable {
         }
     }
 
+    /**
+     * Creates the report of a host, or updates the existing one, since each
+     * host has one report. The host row is locked first so that concurrent
+     * verifications of the same host wait for each other instead of both
+     * inserting a report. The report is still written through the
+     * EntityManager so the change is recorded in the audit log.
+     * @param mwReport the report to store, its null fields are left unchanged on an existing report
+     * @return the report as stored
+     */
+    public MwReport storeMwReportByHostId(MwReport mwReport) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            // held until the transaction ends, NO KEY UPDATE does not block other writers referencing the host
+            Query lockQuery = em.createNativeQuery("SELECT id FROM mw_host WHERE id = ? FOR NO KEY UPDATE");
+            lockQuery.setParameter(1, mwReport.getHostId());
+            lockQuery.getResultList();
+
+            Query query = em.createNamedQuery("MwReport.findByHostId");
+            query.setParameter("hostId", mwReport.getHostId());
+            List<MwReport> existing = query.getResultList();
+            MwReport stored;
+            if (existing.isEmpty()) {
+                if (mwReport.getCreated() == null) {
+                    mwReport.setCreated(Calendar.getInstance().getTime());
+                }
+                em.persist(mwReport);
+                stored = mwReport;
+            } else {
+                stored = existing.get(0);
+                log.debug("Updating the existing report {} of host {}", stored.getId(), mwReport.getHostId());
+                if (mwReport.getCreated() != null) {
+                    stored.setCreated(mwReport.getCreated());
+                }
+                if (mwReport.getExpiration() != null) {
+                    stored.setExpiration(mwReport.getExpiration());
+                }
+                if (mwReport.getTrustReport() != null) {
+                    stored.setTrustReport(mwReport.getTrustReport());
+                }
+                if (mwReport.getSaml() != null) {
+                    stored.setSaml(mwReport.getSaml());
+                }
+                stored = em.merge(stored);
+            }
+            em.getTransaction().commit();
+            return stored;
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
     public void edit(MwReport mwReport) throws NonexistentEntityException, Exception {
         EntityManager em = null;
         try {
@@ -178,190 +245,403 @@ public class MwReportJpaController implements Serializable {
 
     public List<MwReport> findLatestMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
             String hostState, int limit) {
+        return findLatestMwReport(reportId, hostId, hostName, hardwareUuid, hostState, null, limit);
+    }
+
+    /**
+     * Finds the current reports of the matching hosts ordered by report ID,
+     * starting after the given ID so the results can be read in pages.
+     * @param afterId the ID of the last report of the previous page, or null for the first page
+     */
+    public List<MwReport> findLatestMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, String afterId, int limit) {
         List<MwReport> reportsList = null;
         EntityManager em = getEntityManager();
         try {
-
-            //Build table join string for host table if host identifier is set
-            String tableJoinString = null;
-            if ((hostName != null && !hostName.isEmpty())
-                    || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
-                tableJoinString = String.format("INNER JOIN mw_host h on h.id = r.host_id");
+            String formattedQuery = buildLatestMwReportQueryString("r.*", reportId, hostId, hostName, hardwareUuid, hostState, afterId);
+            Query query = em.createNativeQuery(formattedQuery, MwReport.class);
+            query.setMaxResults(limit);
+            List<MwReport> results = query.getResultList();
+            if (results != null && !results.isEmpty()) {
+                reportsList = results;
             }
+            return reportsList;
+        } finally {
+            em.close();
+        }
+    }
 
-            //Build table join string for host status statble if host state is set 
-            if (hostState != null && !hostState.isEmpty()) {
-                if (tableJoinString == null || tableJoinString.isEmpty()) {
-                    tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = r.host_id");
-                } else {
-                    tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = r.host_id", tableJoinString);
-                }
+    /**
+     * Finds the current reports of all the hosts matching any of the given
+     * IDs, names or hardware UUIDs with a single query, ordered by report ID.
+     * Hosts without a report are left out.
+     * @param hostIds host IDs, may be empty
+     * @param hostNames host names, may be empty
+     * @param hardwareUuids hardware UUIDs, matched without regard to case, may be empty
+     */
+    public List<MwReport> findLatestMwReportByHosts(List<String> hostIds, List<String> hostNames, List<String> hardwareUuids) {
+        List<String> parameters = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (!hostIds.isEmpty()) {
+            // cast to the column type so the host_id index can be used with the string parameters
+            conditions.add(String.format("r.host_id IN (%s)", getParamBuffer(hostIds.size(), "CAST(? AS CHAR(36))")));
+            parameters.addAll(hostIds);
+        }
+        if (!hostNames.isEmpty()) {
+            conditions.add(String.format("h.name IN (%s)", getParamBuffer(hostNames.size(), "?")));
+            parameters.addAll(hostNames);
+        }
+        if (!hardwareUuids.isEmpty()) {
+            // matches the LOWER(hardware_uuid) index of mw_host
+            conditions.add(String.format("LOWER(h.hardware_uuid) IN (%s)", getParamBuffer(hardwareUuids.size(), "?")));
+            for (String hardwareUuid : hardwareUuids) {
+                parameters.add(hardwareUuid.toLowerCase());
             }
+        }
+        if (conditions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder whereString = new StringBuilder();
+        for (String condition : conditions) {
+            if (whereString.length() > 0) {
+                whereString.append(" OR ");
+            }
+            whereString.append(condition);
+        }
+        EntityManager em = getEntityManager();
+        try {
+            String formattedQuery = String.format("SELECT r.* FROM mw_report r INNER JOIN mw_host h on h.id = r.host_id WHERE %s ORDER BY r.id", whereString);
+            Query query = em.createNativeQuery(formattedQuery, MwReport.class);
+            for (int i = 0; i < parameters.size(); i++) {
+                query.setParameter(i + 1, parameters.get(i));
+            }
+            List<MwReport> results = query.getResultList();
+            return results;
+        } finally {
+            em.close();
+        }
+    }
 
-            String hostIdentifierQueryString = hostIdentifierQueryString(hostName, hardwareUuid);
-            String additionalOptionsQueryString = null;
+    /**
+     * Opens a server-side cursor over the SAML assertions of the latest
+     * reports matching the given criteria, so memory use does not depend on
+     * the size of the result. The cursor must be closed.
+     */
+    public SamlCursor openLatestMwReportSaml(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, int limit, int fetchSize) throws IOException {
+        String formattedQuery = buildLatestMwReportQueryString("r.saml", reportId, hostId, hostName, hardwareUuid, hostState, null);
+        return openSaml(formattedQuery, new ArrayList<String>(), limit, fetchSize);
+    }
 
-            // Build the additional options query string if host identifier is set
-            if (hostIdentifierQueryString != null && !hostIdentifierQueryString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s", hostIdentifierQueryString);
-            }
+    static String buildLatestMwReportQueryString(String columns, String reportId, String hostId, String hostName,
+            String hardwareUuid, String hostState, String afterId) {
+        //Build table join string for host table if host identifier is set
+        String tableJoinString = null;
+        if ((hostName != null && !hostName.isEmpty())
+                || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
+            tableJoinString = String.format("INNER JOIN mw_host h on h.id = r.host_id");
+        }
 
-            //Build host id partial query string and add it to the additional options query string
-            if (hostId != null && !hostId.isEmpty()) {
-                String hostIdQueryString = String.format("r.host_id = '%s'", hostId);
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", hostIdQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
-                }
+        //Build table join string for host status statble if host state is set 
+        if (hostState != null && !hostState.isEmpty()) {
+            if (tableJoinString == null || tableJoinString.isEmpty()) {
+                tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = r.host_id");
+            } else {
+                tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = r.host_id", tableJoinString);
             }
+        }
 
-            //Build host state partial query string and add it to the additional options query string
-            if (hostState != null && !hostState.isEmpty()) {
-                String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", hostStateQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
-                }
-            }
+        String hostIdentifierQueryString = hostIdentifierQueryString(hostName, hardwareUuid);
+        String additionalOptionsQueryString = null;
 
-            //Build reports id partial query string and add it to the additional options query string
-            if (reportId != null && !reportId.isEmpty()) {
-                String reportIdQueryString = String.format("r.id = '%s'", reportId);
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", reportIdQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, reportIdQueryString);
-                }
+        // Build the additional options query string if host identifier is set
+        if (hostIdentifierQueryString != null && !hostIdentifierQueryString.isEmpty()) {
+            additionalOptionsQueryString = String.format("%s", hostIdentifierQueryString);
+        }
+
+        //Build host id partial query string and add it to the additional options query string
+        if (hostId != null && !hostId.isEmpty()) {
+            String hostIdQueryString = String.format("r.host_id = '%s'", hostId);
+            if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
+                additionalOptionsQueryString = String.format("%s", hostIdQueryString);
+            } else {
+                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
             }
+        }
 
-            // build final formatted string with additional options string and the table join string
-            String formattedQuery = "SELECT r.* FROM mw_report r";
-            if (tableJoinString != null && !tableJoinString.isEmpty()) {
-                formattedQuery = String.format("%s %s", formattedQuery, tableJoinString);
+        //Build host state partial query string and add it to the additional options query string
+        if (hostState != null && !hostState.isEmpty()) {
+            String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
+            if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
+                additionalOptionsQueryString = String.format("%s", hostStateQueryString);
+            } else {
+                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
             }
-            if (additionalOptionsQueryString != null && !additionalOptionsQueryString.isEmpty()) {
-                formattedQuery = String.format("%s WHERE %s", formattedQuery, additionalOptionsQueryString);
+        }
+
+        //Build reports id partial query string and add it to the additional options query string
+        if (reportId != null && !reportId.isEmpty()) {
+            String reportIdQueryString = String.format("r.id = '%s'", reportId);
+            if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
+                additionalOptionsQueryString = String.format("%s", reportIdQueryString);
+            } else {
+                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, reportIdQueryString);
             }
+        }
 
-            Query query = em.createNativeQuery(formattedQuery, MwReport.class);
-            query.setMaxResults(limit);
-            if (query.getResultList() != null && !query.getResultList().isEmpty()) {
-                reportsList = query.getResultList();
+        //Build keyset partial query string and add it to the additional options query string
+        if (afterId != null && !afterId.isEmpty()) {
+            String afterIdQueryString = String.format("r.id > '%s'", afterId);
+            if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
+                additionalOptionsQueryString = String.format("%s", afterIdQueryString);
+            } else {
+                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, afterIdQueryString);
             }
-            return reportsList;
-        } finally {
-            em.close();
         }
+
+        // build final formatted string with additional options string and the table join string
+        String formattedQuery = String.format("SELECT %s FROM mw_report r", columns);
+        if (tableJoinString != null && !tableJoinString.isEmpty()) {
+            formattedQuery = String.format("%s %s", formattedQuery, tableJoinString);
+        }
+        if (additionalOptionsQueryString != null && !additionalOptionsQueryString.isEmpty()) {
+            formattedQuery = String.format("%s WHERE %s", formattedQuery, additionalOptionsQueryString);
+        }
+        // a stable order is needed for the pages to follow on from each other
+        formattedQuery = String.format("%s ORDER BY r.id", formattedQuery);
+        return formattedQuery;
     }
 
     public List<MwReport> findMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
             String hostState, Date fromDate, Date toDate, boolean latestPerHost, int limit) {
 
         EntityManager em = getEntityManager();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         try {
+            String formattedQuery = buildMwReportQueryString("au.*", hostId, hostName, hardwareUuid, hostState,
+                    fromDate, toDate, latestPerHost);
 
-            String auditLogAbbrv = "au";
-            if (latestPerHost) {
-                auditLogAbbrv = "auj";
-            }
-            //build table join string for host table if host identifier is set and aik certificate is null
-            String tableJoinString = null;
-            String hostIdentifierString = null;
-            String additionalOptionsQueryString = String.format("WHERE %s.entity_type = 'MwReport'", auditLogAbbrv);
+            List<AuditLogEntry> auditLogEntryList = null;
 
-            //Build table join string with host table if host identifier is set
-            if ((hostName != null && !hostName.isEmpty())
-                    || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
-                tableJoinString = String.format("INNER JOIN mw_host h on h.id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
-                hostIdentifierString = hostIdentifierQueryString(hostName, hardwareUuid);
+            Query query = em.createNativeQuery(formattedQuery, AuditLogEntry.class);
+            List<String> parameters = buildDateParameters(fromDate, toDate);
+            for (int i = 0; i < parameters.size(); i++) {
+                query.setParameter(i + 1, parameters.get(i));
             }
 
-            //Build table join string with host status table if host state identifier is set
-            if (hostState != null && !hostState.isEmpty()) {
-                if (tableJoinString == null || tableJoinString.isEmpty()) {
-                    tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
-                } else {
-                    tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", tableJoinString, auditLogAbbrv);
-                }
+            query.setMaxResults(limit);
+            List<AuditLogEntry> results = query.getResultList();
+            if (results != null && !results.isEmpty()) {
+                auditLogEntryList = results;
             }
 
-            //Build additional options query string if host identifier is set
-            if (hostIdentifierString != null && !hostIdentifierString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdentifierString);
-            }
+            return convertToReport(auditLogEntryList);
 
-            //Build host ID partial query string and add it to the additional options query string
-            if (hostId != null && !hostId.isEmpty()) {
-                String hostIdQueryString = String.format("%s.data -> 'columns' -> 1 ->> 'value' = '%s'", auditLogAbbrv, hostId);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
-            }
+        } finally {
+            em.close();
+        }
+    }
 
-            //Build host state partial query string and add it to the additional options query string
-            if (hostState != null && !hostState.isEmpty()) {
-                String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
-            }
+    /**
+     * Opens a server-side cursor over the SAML assertions of the reports
+     * recorded in the audit log that match the given criteria, so memory use
+     * does not depend on the size of the date range. The cursor must be closed.
+     */
+    public SamlCursor openMwReportSaml(String hostId, String hostName, String hardwareUuid, String hostState,
+            Date fromDate, Date toDate, boolean latestPerHost, int limit, int fetchSize) throws IOException {
+        String formattedQuery = buildMwReportQueryString("au.data -> 'columns' -> 5 ->> 'value'", hostId, hostName,
+                hardwareUuid, hostState, fromDate, toDate, latestPerHost);
+        return openSaml(formattedQuery, buildDateParameters(fromDate, toDate), limit, fetchSize);
+    }
 
-            //Build from date query string and add it to the additional options query string
-            if (fromDate != null) {
-                String fromDateQueryString = String.format("CAST(%s.data -> 'columns' -> 3 ->> 'value' AS TIMESTAMP) >= CAST(? AS TIMESTAMP)", auditLogAbbrv);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, fromDateQueryString);
-            }
+    private List<String> buildDateParameters(Date fromDate, Date toDate) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        List<String> parameters = new ArrayList<>();
+        if (fromDate != null) {
+            parameters.add(dateFormat.format(fromDate));
+        }
+        if (toDate != null) {
+            parameters.add(dateFormat.format(toDate));
+        }
+        return parameters;
+    }
 
-            //Build to date and add it to the additional options query string
-            if (toDate != null) {
-                String toDateQueryString = String.format("CAST(%s.data -> 'columns' -> 3 ->> 'value' AS TIMESTAMP) <= CAST(? AS TIMESTAMP)", auditLogAbbrv);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, toDateQueryString);
-            }
+    private String buildMwReportQueryString(String columns, String hostId, String hostName, String hardwareUuid,
+            String hostState, Date fromDate, Date toDate, boolean latestPerHost) {
+        String auditLogAbbrv = "au";
+        if (latestPerHost) {
+            auditLogAbbrv = "auj";
+        }
+        //build table join string for host table if host identifier is set and aik certificate is null
+        String tableJoinString = null;
+        String hostIdentifierString = null;
+        String additionalOptionsQueryString = String.format("WHERE %s.entity_type = 'MwReport'", auditLogAbbrv);
+
+        //Build table join string with host table if host identifier is set
+        if ((hostName != null && !hostName.isEmpty())
+                || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
+            tableJoinString = String.format("INNER JOIN mw_host h on h.id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
+            hostIdentifierString = hostIdentifierQueryString(hostName, hardwareUuid);
+        }
 
-            //Add table join string to additional options query string
-            if (tableJoinString != null && !tableJoinString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s %s", tableJoinString, additionalOptionsQueryString);
+        //Build table join string with host status table if host state identifier is set
+        if (hostState != null && !hostState.isEmpty()) {
+            if (tableJoinString == null || tableJoinString.isEmpty()) {
+                tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
+            } else {
+                tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", tableJoinString, auditLogAbbrv);
             }
+        }
 
-            //Build final formatted query string
-            String formattedQuery = String.format("SELECT au.* "
-                    + "FROM mw_audit_log_entry au");
+        //Build additional options query string if host identifier is set
+        if (hostIdentifierString != null && !hostIdentifierString.isEmpty()) {
+            additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdentifierString);
+        }
 
-            // Build final formatted query string for latest per host filter criteria
-            if (latestPerHost) {
-                String maxDateQueryString = String.format("INNER JOIN (SELECT entity_id, max(auj.data -> 'columns' -> 3 ->> 'value') AS max_date "
-                        + "FROM mw_audit_log_entry auj %s GROUP BY entity_id)a "
-                        + "ON a.entity_id = au.entity_id "
-                        + "AND a.max_date = au.data -> 'columns' -> 3 ->> 'value'", additionalOptionsQueryString);
-                formattedQuery = String.format("%s %s ORDER BY au.data -> 'columns' -> 3 ->> 'columnName' DESC", formattedQuery, maxDateQueryString);
-            } else {
-                formattedQuery = String.format("%s %s", formattedQuery, additionalOptionsQueryString);
+        //Build host ID partial query string and add it to the additional options query string
+        if (hostId != null && !hostId.isEmpty()) {
+            String hostIdQueryString = String.format("%s.data -> 'columns' -> 1 ->> 'value' = '%s'", auditLogAbbrv, hostId);
+            additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
+        }
+
+        //Build host state partial query string and add it to the additional options query string
+        if (hostState != null && !hostState.isEmpty()) {
+            String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
+            additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
+        }
+
+        //Build from date query string and add it to the additional options query string
+        if (fromDate != null) {
+            String fromDateQueryString = String.format("CAST(%s.data -> 'columns' -> 3 ->> 'value' AS TIMESTAMP) >= CAST(? AS TIMESTAMP)", auditLogAbbrv);
+            additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, fromDateQueryString);
+        }
+
+        //Build to date and add it to the additional options query string
+        if (toDate != null) {
+            String toDateQueryString = String.format("CAST(%s.data -> 'columns' -> 3 ->> 'value' AS TIMESTAMP) <= CAST(? AS TIMESTAMP)", auditLogAbbrv);
+            additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, toDateQueryString);
+        }
+
+        //Add table join string to additional options query string
+        if (tableJoinString != null && !tableJoinString.isEmpty()) {
+            additionalOptionsQueryString = String.format("%s %s", tableJoinString, additionalOptionsQueryString);
+        }
+
+        //Build final formatted query string
+        String formattedQuery = String.format("SELECT %s "
+                + "FROM mw_audit_log_entry au", columns);
+
+        // Build final formatted query string for latest per host filter criteria
+        if (latestPerHost) {
+            String maxDateQueryString = String.format("INNER JOIN (SELECT entity_id, max(auj.data -> 'columns' -> 3 ->> 'value') AS max_date "
+                    + "FROM mw_audit_log_entry auj %s GROUP BY entity_id)a "
+                    + "ON a.entity_id = au.entity_id "
+                    + "AND a.max_date = au.data -> 'columns' -> 3 ->> 'value'", additionalOptionsQueryString);
+            formattedQuery = String.format("%s %s ORDER BY au.data -> 'columns' -> 3 ->> 'columnName' DESC", formattedQuery, maxDateQueryString);
+        } else {
+            formattedQuery = String.format("%s %s", formattedQuery, additionalOptionsQueryString);
+        }
+        return formattedQuery;
+    }
+
+    private SamlCursor openSaml(String formattedQuery, List<String> parameters, int limit, int fetchSize) throws IOException {
+        // the cursor has its own entity manager and transaction, never the ones of a unit
+        // of work, since it outlives the caller and is rolled back when it is closed
+        EntityManager em = emf.createEntityManager();
+        PreparedStatement statement = null;
+        try {
+            // the PostgreSQL driver only uses a server-side cursor when auto-commit is off,
+            // so the query runs on the connection of a (read only) transaction
+            em.getTransaction().begin();
+            Connection connection = em.unwrap(Connection.class);
+            statement = connection.prepareStatement(formattedQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            if (limit > 0) {
+                statement.setMaxRows(limit);
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setString(i + 1, parameters.get(i));
+            }
+            return new SamlCursor(em, statement, statement.executeQuery());
+        } catch (SQLException ex) {
+            release(em, statement);
+            throw new IOException("Cannot read SAML reports", ex);
+        } catch (RuntimeException ex) {
+            release(em, statement);
+            throw ex;
+        }
+    }
+
+    private static void release(EntityManager em, PreparedStatement statement) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ex) {
+            log.debug("Cannot close SAML report statement", ex);
+        } finally {
+            // nothing was written, the transaction only held the cursor
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
             }
+            em.close();
+        }
+    }
 
-            List<AuditLogEntry> auditLogEntryList = null;
+    /**
+     * The SAML assertions of a report search, read from a server-side cursor
+     * as they are iterated. Closing the cursor releases its connection.
+     */
+    public static class SamlCursor implements Closeable {
+        private final EntityManager em;
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+        private String next;
+        private int count = 0;
+
+        private SamlCursor(EntityManager em, PreparedStatement statement, ResultSet rs) throws SQLException {
+            this.em = em;
+            this.statement = statement;
+            this.rs = rs;
+            advance();
+        }
 
-            Query query = em.createNativeQuery(formattedQuery, AuditLogEntry.class);
-            if (fromDate != null) {
-                query.setParameter(1, dateFormat.format(fromDate));
-            }
-            if (toDate != null) {
-                if (fromDate == null) {
-                    query.setParameter(1, dateFormat.format(toDate));
-                } else {
-                    query.setParameter(2, dateFormat.format(toDate));
-                }
+        private void advance() throws SQLException {
+            next = null;
+            while (next == null && rs.next()) {
+                next = rs.getString(1);
             }
+        }
 
-            query.setMaxResults(limit);
-            if (query.getResultList() != null && !query.getResultList().isEmpty()) {
-                auditLogEntryList = query.getResultList();
+        public boolean hasNext() {
+            return next != null;
+        }
 
+        public String next() throws IOException {
+            if (next == null) {
+                throw new NoSuchElementException();
             }
+            String saml = next;
+            count++;
+            try {
+                advance();
+            } catch (SQLException ex) {
+                throw new IOException("Cannot read SAML reports", ex);
+            }
+            return saml;
+        }
 
-            return convertToReport(auditLogEntryList);
+        /**
+         * @return the number of SAML assertions read so far
+         */
+        public int getCount() {
+            return count;
+        }
 
-        } finally {
-            em.close();
+        @Override
+        public void close() {
+            log.debug("Read {} SAML reports", count);
+            release(em, statement);
         }
     }
 
@@ -444,7 +724,7 @@ public class MwReportJpaController implements Serializable {
             // To find the list of hosts which would have their attestation report getting expired, we calculate what is the earliest create date for which the SAML would expire
             // and also add a buffer time of about 5 min so that we might get to processing the host before it actually expires.
             //Query query = em.createNativeQuery("SELECT h.id FROM mw_host as h WHERE NOT EXISTS ( SELECT ID FROM mw_report as t WHERE h.ID = t.host_id AND t.created > ? )", MwReport.class);
-            Query query = em.createNativeQuery("select h.id from mw_host as h where not exists (select t.host_id from (select row_number() over (partition by host_id order by expiration desc) rn, host_id from mw_report where expiration > CAST(? AS TIMESTAMP)) as t where h.id=t.host_id and t.rn=1)");
+            Query query = em.createNativeQuery(HOSTS_WITH_EXPIRED_CACHE_QUERY);
             Calendar maxCache = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
             maxCache.add(Calendar.SECOND, expiryThresholdInSeconds);
@@ -458,7 +738,7 @@ public class MwReportJpaController implements Serializable {
         }
     }
 
-    private String hostIdentifierQueryString(String hostName, String hardwareUuid) {
+    private static String hostIdentifierQueryString(String hostName, String hardwareUuid) {
 
         String hostIdentifierQueryString = null;
 
@@ -481,4 +761,12 @@ public class MwReportJpaController implements Serializable {
         return hostIdentifierQueryString;
     }
 
+    private String getParamBuffer(int size, String param) {
+        StringBuffer params = new StringBuffer();
+        params.append(param);
+        for (int i = 1; i < size; i++) {
+            params.append(", ").append(param);
+        }
+        return params.toString();
+    }
 }
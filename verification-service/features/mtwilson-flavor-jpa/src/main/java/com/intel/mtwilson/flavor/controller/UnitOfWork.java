@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+/**
+ * Thread-bound unit of work for the JPA controllers.
+ * <p>
+ * While a unit of work is open on the current thread, every controller
+ * created from the same EntityManagerFactory shares one EntityManager and
+ * one transaction instead of opening a new EntityManager (and connection)
+ * for each call. Controllers join without code changes: the EntityManager
+ * they get ignores {@code close()}, and its transaction begins the shared
+ * transaction on first use, turns {@code commit()} into a flush and defers
+ * the actual commit to {@link #commit()}, and turns {@code rollback()} into
+ * rollback-only.
+ * <p>
+ * Because each controller commit is flushed, a write that fails is reported
+ * by the controller method that made it, as it is outside a unit of work.
+ * The database transaction cannot continue after a failed statement, and
+ * EclipseLink marks it rollback-only, so such an error always fails the
+ * whole unit of work: {@link #commit()} then rolls back and throws. Writes
+ * that are expected to conflict with concurrent writers are therefore made
+ * so that they cannot fail instead of catching the unique violation: flavor
+ * host links are inserted with ON CONFLICT DO NOTHING, and the report of a
+ * host is stored while holding a lock on the host row.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+ *     My.jpa().mwHost().edit(mwHost);
+ *     My.jpa().mwHostStatus().edit(mwHostStatus);
+ *     unitOfWork.commit();
+ * }
+ * </pre>
+ * Closing a unit of work that was not committed rolls it back. Opening a unit
+ * of work while one is already open joins the outer one; only the outermost
+ * commit and close take effect. A unit of work is not visible to other
+ * threads, so work handed to other threads uses its own EntityManagers.
+ * <p>
+ * Caches of data written during a unit of work must not be invalidated
+ * only before it commits: another thread could load the old data again in
+ * between. They register their invalidation with {@link #afterCommit(Runnable)}.
+ */
+public class UnitOfWork implements Closeable {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(UnitOfWork.class);
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final UnitOfWork outer;
+    private final Map<EntityManagerFactory, EntityManager> entityManagers;
+    private final List<Runnable> afterCommitActions;
+    private boolean committed = false;
+    private boolean closed = false;
+
+    private UnitOfWork(UnitOfWork outer) {
+        this.outer = outer;
+        this.entityManagers = (outer == null ? new IdentityHashMap<EntityManagerFactory, EntityManager>() : outer.entityManagers);
+        this.afterCommitActions = (outer == null ? new ArrayList<Runnable>() : outer.afterCommitActions);
+    }
+
+    /**
+     * Opens a unit of work on the current thread, or joins the one that is
+     * already open.
+     */
+    public static UnitOfWork begin() {
+        UnitOfWork outer = current.get();
+        UnitOfWork unitOfWork = new UnitOfWork(outer);
+        if (outer == null) {
+            current.set(unitOfWork);
+        }
+        return unitOfWork;
+    }
+
+    /**
+     * @return true if a unit of work is open on the current thread
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Runs the action once the writes of the current unit of work are
+     * committed, or immediately when no unit of work is open. The action is
+     * discarded if the unit of work is rolled back.
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            action.run();
+            return;
+        }
+        unitOfWork.afterCommitActions.add(action);
+    }
+
+    /**
+     * Returns the EntityManager controllers should use: the one shared by the
+     * current unit of work, or a new one when no unit of work is open.
+     */
+    static EntityManager getEntityManager(EntityManagerFactory emf) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            return emf.createEntityManager();
+        }
+        EntityManager em = unitOfWork.entityManagers.get(emf);
+        if (em == null) {
+            em = joinedEntityManager(emf.createEntityManager());
+            unitOfWork.entityManagers.put(emf, em);
+        }
+        return em;
+    }
+
+    /**
+     * Commits the writes made during the unit of work, then runs the actions
+     * registered with {@link #afterCommit(Runnable)}. Has no effect when this
+     * unit of work joined an outer one.
+     */
+    public void commit() {
+        if (closed) {
+            throw new IllegalStateException("Unit of work is already closed");
+        }
+        committed = true;
+        if (outer != null) {
+            return;
+        }
+        for (EntityManager em : entityManagers.values()) {
+            EntityTransaction transaction = unwrap(em).getTransaction();
+            if (transaction.isActive()) {
+                if (transaction.getRollbackOnly()) {
+                    transaction.rollback();
+                    throw new IllegalStateException("Unit of work was marked for rollback");
+                }
+                transaction.commit();
+            }
+        }
+        List<Runnable> actions = new ArrayList<>(afterCommitActions);
+        afterCommitActions.clear();
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("Error running action after unit of work commit", e);
+            }
+        }
+    }
+
+    /**
+     * Rolls back anything not committed and closes the shared EntityManagers.
+     * Closing a joined unit of work without committing it marks the outer
+     * one for rollback.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (outer != null) {
+            if (!committed) {
+                for (EntityManager em : entityManagers.values()) {
+                    EntityTransaction transaction = unwrap(em).getTransaction();
+                    if (transaction.isActive()) {
+                        transaction.setRollbackOnly();
+                    }
+                }
+            }
+            return;
+        }
+        current.remove();
+        afterCommitActions.clear();
+        List<EntityManager> closing = new ArrayList<>(entityManagers.values());
+        entityManagers.clear();
+        for (EntityManager em : closing) {
+            EntityManager delegate = unwrap(em);
+            try {
+                if (delegate.getTransaction().isActive()) {
+                    log.debug("Rolling back uncommitted unit of work");
+                    delegate.getTransaction().rollback();
+                }
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+
+    private static EntityManager unwrap(EntityManager em) {
+        return ((JoinedEntityManagerHandler) Proxy.getInvocationHandler(em)).delegate;
+    }
+
+    private static EntityManager joinedEntityManager(EntityManager delegate) {
+        return (EntityManager) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                new Class<?>[] { EntityManager.class }, new JoinedEntityManagerHandler(delegate));
+    }
+
+    private static class JoinedEntityManagerHandler implements InvocationHandler {
+        private final EntityManager delegate;
+        private final EntityTransaction transaction;
+
+        private JoinedEntityManagerHandler(EntityManager delegate) {
+            this.delegate = delegate;
+            this.transaction = new JoinedTransaction(delegate);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // closed with the unit of work
+                    return null;
+                case "getTransaction":
+                    return transaction;
+                case "clear":
+                    // controllers clear the persistence context after committing a batch,
+                    // with the commit deferred the pending writes must be flushed first
+                    if (delegate.getTransaction().isActive()) {
+                        delegate.flush();
+                    }
+                    delegate.clear();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    private static class JoinedTransaction implements EntityTransaction {
+        private final EntityManager delegate;
+
+        private JoinedTransaction(EntityManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void begin() {
+            if (!delegate.getTransaction().isActive()) {
+                delegate.getTransaction().begin();
+            }
+        }
+
+        @Override
+        public void commit() {
+            // committed with the unit of work, flushed now so that errors are
+            // reported to the controller that made the write
+            if (delegate.getTransaction().isActive() && !delegate.getTransaction().getRollbackOnly()) {
+                try {
+                    delegate.flush();
+                } catch (RuntimeException e) {
+                    delegate.getTransaction().setRollbackOnly();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void rollback() {
+            if (delegate.getTransaction().isActive()) {
+                delegate.getTransaction().setRollbackOnly();
+            }
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            delegate.getTransaction().setRollbackOnly();
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return delegate.getTransaction().getRollbackOnly();
+        }
+
+        @Override
+        public boolean isActive() {
+            return delegate.getTransaction().isActive();
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class HostManifestConverter implements AttributeConverter<HostManifest, P
     public PGobject convertToDatabaseColumn(HostManifest hostManifest) {
         try {
             PGobject po = new PGobject();
-            po.setType("json");
+            po.setType("jsonb");
             ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
             po.setValue(mapper.writeValueAsString(hostManifest));
             return po;
@@ -30,7 +30,7 @@ public class HostStatusConverter implements AttributeConverter<HostStatusInforma
     public PGobject convertToDatabaseColumn(HostStatusInformation hostStatus) {
         try {
             PGobject po = new PGobject();
-            po.setType("json");
+            po.setType("jsonb");
             ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
             po.setValue(mapper.writeValueAsString(hostStatus));
             return po;
@@ -28,7 +28,7 @@ public class StringMapConverter implements AttributeConverter<Map<String, String
     public PGobject convertToDatabaseColumn(Map<String, String> stringMap) {
         try {
             PGobject po = new PGobject();
-            po.setType("json");
+            po.setType("jsonb");
             po.setValue((new ObjectMapper()).writeValueAsString(stringMap));
             return po;
         } catch (JsonProcessingException | SQLException e) {
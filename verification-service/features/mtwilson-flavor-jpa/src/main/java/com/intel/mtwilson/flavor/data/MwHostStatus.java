@@ -52,7 +52,7 @@ public class MwHostStatus implements Serializable {
     private String hostId;
     @Basic(optional = true)
     @Lob
-    @Column(name = "status", columnDefinition = "json")
+    @Column(name = "status", columnDefinition = "jsonb")
     @Convert(converter = HostStatusConverter.class)
     private HostStatusInformation status;
     @Basic(optional = false)
@@ -61,7 +61,7 @@ public class MwHostStatus implements Serializable {
     private Date created;
     @Basic(optional = true)
     @Lob
-    @Column(name = "host_report", columnDefinition = "json")
+    @Column(name = "host_report", columnDefinition = "jsonb")
     @Convert(converter = HostManifestConverter.class)
     private HostManifest hostManifest;
 
@@ -47,7 +47,7 @@ public class MwQueue implements Serializable {
     private String queueAction;
     @Basic(optional = false)
     @Lob
-    @Column(name = "action_parameters", columnDefinition = "json")
+    @Column(name = "action_parameters", columnDefinition = "jsonb")
     @Convert(converter = StringMapConverter.class)
     private Map<String, String> actionParameters;
     @Basic(optional = false)
@@ -16,6 +16,7 @@ import static com.intel.mtwilson.flavor.model.MatchPolicy.MatchType.ANY_OF;
 import static com.intel.mtwilson.flavor.model.MatchPolicy.Required.REQUIRED;
 import static com.intel.mtwilson.flavor.model.MatchPolicy.Required.REQUIRED_IF_DEFINED;
 import static com.intel.mtwilson.core.flavor.common.FlavorPart.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import javax.persistence.EntityManagerFactory;
@@ -26,6 +27,10 @@ import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import com.intel.mtwilson.flavor.rest.v2.model.Flavorgroup;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -171,4 +176,91 @@ public class MwFlavorgroupJpaControllerTest {
                     "Found flavorgroup [%s] with name: %s", mwFlavorgroup.getId(), mwFlavorgroup.getName()));
         }
     }
+    
+    @Test
+    public void createFlavorgroupsInUnitOfWork() throws Exception {
+        MwFlavorgroup committed = new MwFlavorgroup(new UUID().toString(), "unit-of-work-committed", null);
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            mwFlavorgroupJpaController.create(committed);
+            // visible inside the unit of work before it is committed
+            assertNotNull(mwFlavorgroupJpaController.findMwFlavorgroup(committed.getId()));
+            unitOfWork.commit();
+        }
+        assertNotNull(mwFlavorgroupJpaController.findMwFlavorgroup(committed.getId()));
+
+        MwFlavorgroup rolledBack = new MwFlavorgroup(new UUID().toString(), "unit-of-work-rolled-back", null);
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            mwFlavorgroupJpaController.create(rolledBack);
+        }
+        assertNull(mwFlavorgroupJpaController.findMwFlavorgroup(rolledBack.getId()));
+        mwFlavorgroupJpaController.destroy(committed.getId());
+    }
+
+    @Test
+    public void runActionsAfterUnitOfWorkCommit() throws Exception {
+        final List<String> actions = new ArrayList<>();
+        MwFlavorgroup flavorgroup = new MwFlavorgroup(new UUID().toString(), "unit-of-work-after-commit", null);
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            mwFlavorgroupJpaController.create(flavorgroup);
+            UnitOfWork.afterCommit(new Runnable() {
+                @Override
+                public void run() {
+                    actions.add("committed");
+                }
+            });
+            assertEquals(0, actions.size());
+            unitOfWork.commit();
+        }
+        assertEquals(1, actions.size());
+        assertEquals("committed", actions.get(0));
+        assertNotNull(mwFlavorgroupJpaController.findMwFlavorgroup(flavorgroup.getId()));
+
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            UnitOfWork.afterCommit(new Runnable() {
+                @Override
+                public void run() {
+                    actions.add("rolled back");
+                }
+            });
+        }
+        assertEquals(1, actions.size());
+
+        // without a unit of work the action runs immediately
+        UnitOfWork.afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                actions.add("immediate");
+            }
+        });
+        assertEquals(2, actions.size());
+        mwFlavorgroupJpaController.destroy(flavorgroup.getId());
+    }
+
+    @Test
+    public void failedWriteRollsBackUnitOfWork() throws Exception {
+        MwFlavorgroup existing = new MwFlavorgroup(new UUID().toString(), "unit-of-work-existing", null);
+        mwFlavorgroupJpaController.create(existing);
+        MwFlavorgroup written = new MwFlavorgroup(new UUID().toString(), "unit-of-work-written", null);
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            mwFlavorgroupJpaController.create(written);
+            // the duplicate is reported by the controller call, not by the commit
+            try {
+                mwFlavorgroupJpaController.create(new MwFlavorgroup(existing.getId(), "unit-of-work-duplicate", null));
+                fail("Expected the duplicate flavorgroup to be rejected");
+            } catch (Exception e) {
+                log.debug("Duplicate flavorgroup rejected: {}", e.getMessage());
+            }
+            try {
+                unitOfWork.commit();
+                fail("Expected the unit of work to be rolled back");
+            } catch (IllegalStateException e) {
+                log.debug("Unit of work rolled back: {}", e.getMessage());
+            }
+        }
+        assertNull(mwFlavorgroupJpaController.findMwFlavorgroup(written.getId()));
+        MwFlavorgroup unchanged = mwFlavorgroupJpaController.findMwFlavorgroup(existing.getId());
+        assertNotNull(unchanged);
+        assertEquals("unit-of-work-existing", unchanged.getName());
+        mwFlavorgroupJpaController.destroy(existing.getId());
+    }
 }
@@ -6,15 +6,25 @@
 package com.intel.mtwilson.flavor.controller;
 
 import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.flavor.data.MwFlavorgroup;
 import com.intel.mtwilson.flavor.data.MwHost;
+import com.intel.mtwilson.flavor.data.MwLinkFlavorgroupHost;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.Query;
 import javax.persistence.spi.PersistenceUnitTransactionType;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -139,4 +149,118 @@ public class MwHostJpaControllerTest {
                     "Found host [%s] with name: %s", mwHost.getId(), mwHost.getName()));
         }
     }
+    
+    @Test
+    public void findHostsByCombinedCriteria() throws Exception {
+        String prefix = "search-" + new UUID().toString().substring(0, 8);
+        MwFlavorgroupJpaController mwFlavorgroupJpaController = new MwFlavorgroupJpaController(emf);
+        MwLinkFlavorgroupHostJpaController mwLinkFlavorgroupHostJpaController = new MwLinkFlavorgroupHostJpaController(emf);
+        String tlsPolicyId = new UUID().toString();
+        MwHost[] hosts = new MwHost[] {
+            createSearchHost(prefix + "-alpha-1", tlsPolicyId, "RHEL", true),
+            createSearchHost(prefix + "-alpha-2", tlsPolicyId, "Ubuntu", false),
+            createSearchHost(prefix + "-beta-3", new UUID().toString(), "RHEL", false)
+        };
+        MwFlavorgroup mwFlavorgroup = new MwFlavorgroup(new UUID().toString(), prefix + "-flavorgroup", null);
+        mwFlavorgroupJpaController.create(mwFlavorgroup);
+        List<String> linkIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            MwLinkFlavorgroupHost link = new MwLinkFlavorgroupHost(new UUID().toString(), mwFlavorgroup.getId(), hosts[i].getId());
+            mwLinkFlavorgroupHostJpaController.create(link);
+            linkIds.add(link.getId());
+        }
+        try {
+            assertEquals(ids(hosts[0]),
+                    ids(mwHostJpaController.findMwHosts(hosts[0].getId(), null, null, null, null, null, null, null, null, 10)));
+            assertEquals(ids(hosts[1]),
+                    ids(mwHostJpaController.findMwHosts(null, hosts[1].getName(), null, null, null, null, null, null, null, 10)));
+            assertEquals(ids(hosts[0], hosts[1], hosts[2]),
+                    ids(mwHostJpaController.findMwHosts(null, null, prefix, null, null, null, null, null, null, 10)));
+            assertEquals(ids(hosts[2]),
+                    ids(mwHostJpaController.findMwHosts(null, null, null, hosts[2].getHardwareUuid().toUpperCase(), null, null, null, null, null, 10)));
+            assertEquals(ids(hosts[0], hosts[2]),
+                    ids(mwHostJpaController.findMwHosts(null, null, prefix, null, null, "os_name", "RHEL", null, null, 10)));
+            assertEquals(ids(hosts[1]),
+                    ids(mwHostJpaController.findMwHosts(null, null, null, null, null, "hardware_uuid", hosts[1].getHardwareUuid(), null, null, 10)));
+            assertEquals(ids(hosts[0], hosts[1]),
+                    ids(mwHostJpaController.findMwHosts(null, null, null, null, tlsPolicyId, null, null, mwFlavorgroup.getName(), null, 10)));
+            // boolean host info fields match their text value
+            assertEquals(ids(hosts[0]),
+                    ids(mwHostJpaController.findMwHosts(null, null, prefix + "-alpha", null, null, "tpm_enabled", "true", mwFlavorgroup.getName(), null, 10)));
+            // all criteria must match
+            assertTrue(mwHostJpaController.findMwHosts(hosts[0].getId(), hosts[1].getName(), null, null, null, null, null, null, null, 10).isEmpty());
+            assertTrue(mwHostJpaController.findMwHosts(null, hosts[2].getName(), null, null, null, null, null, mwFlavorgroup.getName(), null, 10).isEmpty());
+
+            // pages follow on from each other in ID order
+            List<String> sortedIds = new ArrayList<>(ids(hosts[0], hosts[1], hosts[2]));
+            Collections.sort(sortedIds);
+            List<MwHost> firstPage = mwHostJpaController.findMwHosts(null, null, prefix, null, null, null, null, null, null, 2);
+            assertEquals(sortedIds.subList(0, 2), idList(firstPage));
+            List<MwHost> secondPage = mwHostJpaController.findMwHosts(null, null, prefix, null, null, null, null, null, firstPage.get(1).getId(), 2);
+            assertEquals(sortedIds.subList(2, 3), idList(secondPage));
+        } finally {
+            for (String linkId : linkIds) {
+                mwLinkFlavorgroupHostJpaController.destroy(linkId);
+            }
+            mwFlavorgroupJpaController.destroy(mwFlavorgroup.getId());
+            for (MwHost mwHost : hosts) {
+                executeUpdate("DELETE FROM mw_host_status WHERE host_id = ?", mwHost.getId());
+                mwHostJpaController.destroy(mwHost.getId());
+            }
+        }
+    }
+
+    private MwHost createSearchHost(String name, String tlsPolicyId, String osName, boolean tpmEnabled) throws Exception {
+        MwHost mwHost = new MwHost();
+        mwHost.setId(new UUID().toString());
+        mwHost.setName(name);
+        mwHost.setTlsPolicyId(tlsPolicyId);
+        mwHost.setHardwareUuid(new UUID().toString());
+        mwHost.setConnectionString("https://192.168.0.1:1443/;uslogin;uspassword");
+        mwHostJpaController.create(mwHost);
+        executeUpdate("INSERT INTO mw_host_status (id, host_id, status, created, host_report) "
+                + "VALUES (?, ?, CAST('{\"host_state\": \"CONNECTED\"}' AS jsonb), NOW(), "
+                + "jsonb_build_object('host_info', jsonb_build_object('os_name', CAST(? AS text), "
+                + "'tpm_enabled', CAST(? AS boolean), 'hardware_uuid', CAST(? AS text))))",
+                new UUID().toString(), mwHost.getId(), osName, String.valueOf(tpmEnabled), mwHost.getHardwareUuid());
+        return mwHost;
+    }
+
+    private void executeUpdate(String sql, String... parameters) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Query query = em.createNativeQuery(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                query.setParameter(i + 1, parameters[i]);
+            }
+            query.executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static Set<String> ids(MwHost... mwHosts) {
+        Set<String> ids = new HashSet<>();
+        for (MwHost mwHost : mwHosts) {
+            ids.add(mwHost.getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> ids(List<MwHost> mwHosts) {
+        return new HashSet<>(idList(mwHosts));
+    }
+
+    private static List<String> idList(List<MwHost> mwHosts) {
+        List<String> ids = new ArrayList<>();
+        for (MwHost mwHost : mwHosts) {
+            ids.add(mwHost.getId());
+        }
+        return ids;
+    }
 }
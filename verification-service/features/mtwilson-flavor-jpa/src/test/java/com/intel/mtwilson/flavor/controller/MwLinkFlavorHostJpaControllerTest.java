@@ -9,14 +9,20 @@ import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.flavor.data.MwFlavor;
 import com.intel.mtwilson.flavor.data.MwHost;
 import com.intel.mtwilson.flavor.data.MwLinkFlavorHost;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.persistence.spi.PersistenceUnitTransactionType;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -168,4 +174,72 @@ public class MwLinkFlavorHostJpaControllerTest {
                     mwLinkFlavorHost.getFlavorId(), mwLinkFlavorHost.getHostId(), mwLinkFlavorHost.getId()));
         }
     }
+    
+    @Test
+    public void replaceFlavorHostLinks() throws Exception {
+        MwFlavorJpaController mwFlavorJpaController = new MwFlavorJpaController(emf);
+        MwHostJpaController mwHostJpaController = new MwHostJpaController(emf);
+        List<MwHost> mwHostList = mwHostJpaController.findMwHostEntities();
+        for (MwHost mwHost : mwHostList) {
+            Set<String> flavorIds = new HashSet<>();
+            List<MwFlavor> mwFlavorList = mwFlavorJpaController.findMwFlavorByKeyValue("label", mwHost.getName());
+            if (mwFlavorList != null) {
+                for (MwFlavor mwFlavor : mwFlavorList) {
+                    flavorIds.add(mwFlavor.getId());
+                }
+            }
+            // replacing twice must not create duplicate links
+            mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(mwHost.getId(), flavorIds);
+            mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(mwHost.getId(), flavorIds);
+            assertEquals(flavorIds, getLinkedFlavorIds(mwHost.getId()));
+
+            // links to flavors that are no longer in the set are removed
+            if (!flavorIds.isEmpty()) {
+                Set<String> remainingFlavorIds = new HashSet<>(flavorIds);
+                remainingFlavorIds.remove(remainingFlavorIds.iterator().next());
+                mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(mwHost.getId(), remainingFlavorIds);
+                assertEquals(remainingFlavorIds, getLinkedFlavorIds(mwHost.getId()));
+                mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(mwHost.getId(), flavorIds);
+            }
+        }
+    }
+
+    @Test
+    public void replaceFlavorHostLinksForManyHosts() throws Exception {
+        MwFlavorJpaController mwFlavorJpaController = new MwFlavorJpaController(emf);
+        MwHostJpaController mwHostJpaController = new MwHostJpaController(emf);
+        List<MwFlavor> mwFlavorList = mwFlavorJpaController.findMwFlavorEntities();
+        Map<String, Set<String>> flavorIdsByHostId = new HashMap<>();
+        for (MwHost mwHost : mwHostJpaController.findMwHostEntities()) {
+            Set<String> flavorIds = new HashSet<>();
+            for (MwFlavor mwFlavor : mwFlavorList) {
+                flavorIds.add(mwFlavor.getId());
+            }
+            flavorIdsByHostId.put(mwHost.getId(), flavorIds);
+        }
+        // more links than fit in one statement when there are enough hosts and flavors
+        mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(flavorIdsByHostId);
+        for (Map.Entry<String, Set<String>> entry : flavorIdsByHostId.entrySet()) {
+            assertEquals(entry.getValue(), getLinkedFlavorIds(entry.getKey()));
+        }
+
+        for (Set<String> flavorIds : flavorIdsByHostId.values()) {
+            flavorIds.clear();
+        }
+        mwLinkFlavorHostJpaController.replaceMwLinkFlavorHosts(flavorIdsByHostId);
+        for (String hostId : flavorIdsByHostId.keySet()) {
+            assertTrue(getLinkedFlavorIds(hostId).isEmpty());
+        }
+    }
+
+    private Set<String> getLinkedFlavorIds(String hostId) {
+        Set<String> flavorIds = new HashSet<>();
+        List<MwLinkFlavorHost> mwLinkFlavorHostList = mwLinkFlavorHostJpaController.findMwLinkFlavorHostByHostId(hostId);
+        if (mwLinkFlavorHostList != null) {
+            for (MwLinkFlavorHost mwLinkFlavorHost : mwLinkFlavorHostList) {
+                assertTrue("Duplicate link to flavor " + mwLinkFlavorHost.getFlavorId(), flavorIds.add(mwLinkFlavorHost.getFlavorId()));
+            }
+        }
+        return flavorIds;
+    }
 }
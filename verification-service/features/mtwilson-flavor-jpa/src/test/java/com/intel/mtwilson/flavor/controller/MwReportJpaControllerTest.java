@@ -30,6 +30,9 @@ import javax.persistence.spi.PersistenceUnitTransactionType;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -96,16 +99,12 @@ public class MwReportJpaControllerTest {
         Calendar cal = Calendar.getInstance();
         Date created, expiration;
 
-        String hostId = new UUID().toString();
-
         for (int i = 1; i <= 10; i++) {
 
             MwReport obj = new MwReport();
             obj.setId(new UUID().toString());
-            if ((i % 3) == 0) {
-                hostId = new UUID().toString();
-            }
-            obj.setHostId(hostId);
+            // each host has one report
+            obj.setHostId(new UUID().toString());
             
             ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
             mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
@@ -128,6 +127,40 @@ public class MwReportJpaControllerTest {
         }
     }
 
+    @Test
+    public void storeReportOfHostTwice() throws Exception {
+        String hostId = new UUID().toString();
+        MwReport first = createReport(hostId, "first SAML report");
+        mwReportJpaController.storeMwReportByHostId(first);
+
+        // a second report of the same host updates the first instead of adding another
+        MwReport second = createReport(hostId, "second SAML report");
+        mwReportJpaController.storeMwReportByHostId(second);
+
+        MwReport stored = mwReportJpaController.findMwReportByHostId(hostId);
+        assertNotNull(stored);
+        assertEquals(first.getId(), stored.getId());
+        assertEquals("second SAML report", stored.getSaml());
+        assertNull(mwReportJpaController.findMwReport(second.getId()));
+        mwReportJpaController.destroy(first.getId());
+    }
+
+    private MwReport createReport(String hostId, String saml) throws Exception {
+        ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        String trustReportInString = Resources.toString(Resources.getResource("trustreport.json"), Charsets.UTF_8);
+        MwReport mwReport = new MwReport();
+        mwReport.setId(new UUID().toString());
+        mwReport.setHostId(hostId);
+        mwReport.setTrustReport(mapper.readValue(trustReportInString, TrustReport.class));
+        mwReport.setSaml(saml);
+        Calendar cal = Calendar.getInstance();
+        mwReport.setCreated(cal.getTime());
+        cal.add(Calendar.HOUR, 1);
+        mwReport.setExpiration(cal.getTime());
+        return mwReport;
+    }
+
     @Test
     public void readData() throws Exception {
 
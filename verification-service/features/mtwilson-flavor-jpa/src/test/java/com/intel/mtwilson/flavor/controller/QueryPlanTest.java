@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
+import org.eclipse.persistence.jpa.JpaEntityManager;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks that the hot flavor, report, queue, host and host status queries are
+ * planned with the indexes added for them. The native queries are built by the
+ * controllers' own query code and the named queries are translated to SQL by
+ * EclipseLink, so the plans are those of the queries the controllers run.
+ * Each test seeds a synthetic data set inside a transaction, analyzes it and
+ * rolls everything back afterwards, so it can run against any database that
+ * has the current schema.
+ */
+public class QueryPlanTest {
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanTest.class);
+
+    private static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "org.postgresql.Driver";
+    private static final String JAVAX_PERSISTENCE_JDBC_URL = "jdbc:postgresql://192.168.0.1:5432/mw_as";
+    private static final String JAVAX_PERSISTENCE_JDBC_USER = "root";
+    private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "password";
+
+    private static final int ROWS = 20000;
+    private static final int HOSTS = 2000;
+    private static final int FLAVORGROUPS = 100;
+    private static final String UNKNOWN_ID = "00000000-0000-0000-0000-000000000000";
+
+    private static final String PERSISTENCE_UNIT_NAME = "FlavorDataPU";
+    private static EntityManagerFactory emf;
+    private Connection connection;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Properties jpaProperties = new Properties();
+        jpaProperties.put(TRANSACTION_TYPE, PersistenceUnitTransactionType.RESOURCE_LOCAL.name());
+        jpaProperties.put(JDBC_DRIVER, JAVAX_PERSISTENCE_JDBC_DRIVER);
+        jpaProperties.put(JDBC_URL, JAVAX_PERSISTENCE_JDBC_URL);
+        jpaProperties.put(JDBC_USER, JAVAX_PERSISTENCE_JDBC_USER);
+        jpaProperties.put(JDBC_PASSWORD, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, jpaProperties);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        emf.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(JAVAX_PERSISTENCE_JDBC_URL, JAVAX_PERSISTENCE_JDBC_USER, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+        connection.setAutoCommit(false);
+        seed();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.rollback();
+        connection.close();
+    }
+
+    private void seed() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // one flavor in a hundred is an ASSET_TAG flavor, the rest are spread across the other parts
+            statement.executeUpdate(String.format("INSERT INTO mw_flavor (id, content, created, label) "
+                    + "SELECT CAST(CAST(md5('flavor' || i) AS uuid) AS text), json_build_object('meta', json_build_object("
+                    + "'id', CAST(CAST(md5('flavor' || i) AS uuid) AS text), 'description', json_build_object("
+                    + "'label', 'plan-test-' || i, "
+                    + "'flavor_part', CASE WHEN i %% 100 = 0 THEN 'ASSET_TAG' ELSE (ARRAY['PLATFORM','OS','SOFTWARE','HOST_UNIQUE'])[1 + i %% 4] END, "
+                    + "'hardware_uuid', UPPER(CAST(CAST(md5('host' || (i %% %d)) AS uuid) AS text))))), "
+                    + "NOW() - i * INTERVAL '1 second', 'plan-test-' || i "
+                    + "FROM generate_series(1, %d) i", HOSTS, ROWS));
+            statement.executeUpdate(String.format("INSERT INTO mw_flavorgroup (id, name) "
+                    + "SELECT CAST(CAST(md5('flavorgroup' || i) AS uuid) AS text), 'plan-test-' || i FROM generate_series(0, %d) i", FLAVORGROUPS - 1));
+            statement.executeUpdate(String.format("INSERT INTO mw_link_flavor_flavorgroup (id, flavor_id, flavorgroup_id) "
+                    + "SELECT CAST(CAST(md5('flavor-flavorgroup' || i) AS uuid) AS text), CAST(CAST(md5('flavor' || i) AS uuid) AS text), "
+                    + "CAST(CAST(md5('flavorgroup' || (i %% %d)) AS uuid) AS text) FROM generate_series(1, %d) i", FLAVORGROUPS, ROWS));
+            statement.executeUpdate(String.format("INSERT INTO mw_link_flavor_host (id, flavor_id, host_id) "
+                    + "SELECT CAST(CAST(md5('flavor-host' || i) AS uuid) AS text), CAST(CAST(md5('flavor' || i) AS uuid) AS text), "
+                    + "CAST(CAST(md5('host' || (i %% %d)) AS uuid) AS text) FROM generate_series(1, %d) i", HOSTS, ROWS));
+            // each host has one report
+            statement.executeUpdate(String.format("INSERT INTO mw_report (id, host_id, trust_report, created, expiration, saml) "
+                    + "SELECT CAST(CAST(md5('report' || i) AS uuid) AS text), CAST(CAST(md5('host' || i) AS uuid) AS text), "
+                    + "CAST('{}' AS json), NOW() - i * INTERVAL '1 minute', NOW() - i * INTERVAL '1 minute' + INTERVAL '1 day', 'saml' "
+                    + "FROM generate_series(0, %d) i", HOSTS - 1));
+            // almost every queue entry is completed, as it is on a system that has been running for a while
+            statement.executeUpdate(String.format("INSERT INTO mw_queue (id, queue_action, action_parameters, created, updated, status) "
+                    + "SELECT CAST(CAST(md5('queue' || i) AS uuid) AS text), 'flavor-verify', "
+                    + "jsonb_build_object('host_id', CAST(CAST(md5('host' || (i %% %d)) AS uuid) AS text)), NOW(), NOW(), "
+                    + "CASE WHEN i %% 500 = 0 THEN 'NEW' ELSE 'COMPLETED' END FROM generate_series(1, %d) i", HOSTS, ROWS));
+            statement.executeUpdate(String.format("INSERT INTO mw_host_status (id, host_id, status, created, host_report) "
+                    + "SELECT CAST(CAST(md5('host-status' || i) AS uuid) AS text), CAST(CAST(md5('host' || i) AS uuid) AS text), "
+                    + "jsonb_build_object('host_state', 'CONNECTED'), NOW(), jsonb_build_object("
+                    + "'aik_certificate', 'aik-' || md5('aik' || i), 'host_info', jsonb_build_object("
+                    + "'os_name', (ARRAY['RHEL','Ubuntu','Windows'])[1 + i %% 3], 'bios_version', 'plan-test-' || i, "
+                    + "'plan_test_enabled', i %% 2 = 0, 'plan_test_count', i %% 4, "
+                    + "'hardware_uuid', UPPER(CAST(CAST(md5('host' || i) AS uuid) AS text)))) "
+                    + "FROM generate_series(0, %d) i", HOSTS - 1));
+            statement.executeUpdate(String.format("INSERT INTO mw_host (id, name, connection_string, hardware_uuid, tls_policy_id) "
+                    + "SELECT CAST(CAST(md5('host' || i) AS uuid) AS text), 'plan-test-' || i, 'intel:https://plan-test-' || i || ':1443', "
+                    + "CAST(CAST(md5('host' || i) AS uuid) AS text), CAST(CAST(md5('tls-policy' || i) AS uuid) AS text) "
+                    + "FROM generate_series(0, %d) i", HOSTS - 1));
+            statement.executeUpdate(String.format("INSERT INTO mw_link_flavorgroup_host (id, flavorgroup_id, host_id) "
+                    + "SELECT CAST(CAST(md5('flavorgroup-host' || i) AS uuid) AS text), CAST(CAST(md5('flavorgroup' || (i %% %d)) AS uuid) AS text), "
+                    + "CAST(CAST(md5('host' || i) AS uuid) AS text) FROM generate_series(0, %d) i", FLAVORGROUPS, HOSTS - 1));
+            statement.execute("ANALYZE mw_flavor");
+            statement.execute("ANALYZE mw_link_flavor_flavorgroup");
+            statement.execute("ANALYZE mw_link_flavor_host");
+            statement.execute("ANALYZE mw_report");
+            statement.execute("ANALYZE mw_queue");
+            statement.execute("ANALYZE mw_host_status");
+            statement.execute("ANALYZE mw_host");
+            statement.execute("ANALYZE mw_flavorgroup");
+            statement.execute("ANALYZE mw_link_flavorgroup_host");
+        }
+    }
+
+    private String explain(String query, String... parameters) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        log.debug("Plan for {}:\n{}", query, plan);
+        return plan.toString();
+    }
+
+    private long rows(String query, String... parameters) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Translates a named query to the SQL EclipseLink runs for it, with the
+     * parameter values inlined.
+     */
+    private String namedQuery(String name, Map<String, Object> parameters) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            DatabaseQuery databaseQuery = em.createNamedQuery(name).unwrap(JpaQuery.class).getDatabaseQuery();
+            DatabaseRecord record = new DatabaseRecord();
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                record.put(parameter.getKey(), parameter.getValue());
+            }
+            String query = databaseQuery.getTranslatedSQLString(em.unwrap(JpaEntityManager.class).getActiveSession(), record);
+            log.debug("SQL for named query {}: {}", name, query);
+            return query;
+        } finally {
+            em.close();
+        }
+    }
+
+    private long hostSearchRows(String key, String value) throws SQLException {
+        List<String> parameters = new ArrayList<>();
+        String query = MwHostJpaController.buildHostSearchQueryString(null, null, null, null, null, key, value, null, null, parameters);
+        return rows(query, parameters.toArray(new String[0]));
+    }
+
+    private void assertUsesIndex(String plan, String index) {
+        assertTrue(String.format("Expected plan to use %s:\n%s", index, plan), plan.contains(index));
+    }
+
+    @Test
+    public void flavorFlavorPartUsesIndex() throws Exception {
+        HashMap<String, Boolean> flavorTypes = new HashMap<>();
+        flavorTypes.put("ASSET_TAG", false);
+        String plan = explain(MwFlavorJpaController.buildFlavorSearchQueryString(null, null, flavorTypes));
+        assertUsesIndex(plan, "idx_flavor_flavor_part");
+    }
+
+    @Test
+    public void hostHasUniqueFlavorUsesIndex() throws Exception {
+        String plan = explain(MwFlavorJpaController.buildHostHasUniqueFlavorQueryString("HOST_UNIQUE"), UNKNOWN_ID);
+        assertUsesIndex(plan, "idx_flavor_hardware_uuid_lower");
+    }
+
+    @Test
+    public void flavorsInFlavorgroupUseIndex() throws Exception {
+        String plan = explain(MwFlavorJpaController.buildFlavorSearchQueryString(UNKNOWN_ID, null, new HashMap<String, Boolean>()));
+        assertUsesIndex(plan, "idx_flavor_flavorgroup_flavorgroup_id");
+    }
+
+    @Test
+    public void flavorHostLinksByHostUseIndex() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("hostId", UNKNOWN_ID);
+        String plan = explain(namedQuery("MwLinkFlavorHost.findByHostId", parameters));
+        assertUsesIndex(plan, "idx_flavor_host_host_id");
+    }
+
+    @Test
+    public void reportForHostUsesIndex() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("hostId", UNKNOWN_ID);
+        String plan = explain(namedQuery("MwReport.findByHostId", parameters));
+        assertUsesIndex(plan, "idx_report_host_id");
+    }
+
+    @Test
+    public void latestReportSearchByHostUsesIndex() throws Exception {
+        String plan = explain(MwReportJpaController.buildLatestMwReportQueryString("r.*", null, UNKNOWN_ID, null, null, null, null));
+        assertUsesIndex(plan, "idx_report_host_id");
+    }
+
+    @Test(expected = SQLException.class)
+    public void secondReportForHostIsRejected() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO mw_report (id, host_id, trust_report, created, expiration, saml) "
+                    + "VALUES ('00000000-0000-0000-0000-000000000001', CAST(CAST(md5('host' || 0) AS uuid) AS text), "
+                    + "CAST('{}' AS json), NOW(), NOW() + INTERVAL '1 day', 'saml')");
+        }
+    }
+
+    @Test
+    public void hostsWithExpiredCacheUseIndex() throws Exception {
+        String plan = explain(MwReportJpaController.HOSTS_WITH_EXPIRED_CACHE_QUERY, "2100-01-01 00:00:00");
+        assertUsesIndex(plan, "idx_report_expiration");
+    }
+
+    @Test
+    public void queueStatesUseIndex() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("queueStates", Arrays.asList("NEW", "PENDING"));
+        String plan = explain(namedQuery("MwQueue.findByQueueStates", parameters));
+        assertUsesIndex(plan, "idx_queue_status");
+    }
+
+    @Test
+    public void queueByHostIdUsesIndex() throws Exception {
+        String plan = explain(MwQueueJpaController.QUEUE_BY_HOST_ID_QUERY, "flavor-verify", UNKNOWN_ID);
+        assertUsesIndex(plan, "idx_queue_action_host_id");
+    }
+
+    @Test
+    public void queueByActionParameterUsesIndex() throws Exception {
+        String plan = explain(MwQueueJpaController.QUEUE_BY_ACTION_PARAMETER_QUERY, "flavor-verify", "flavor_id", UNKNOWN_ID);
+        assertUsesIndex(plan, "idx_queue_action_parameters");
+    }
+
+    @Test
+    public void queuePromotedHostIdIsPopulated() throws Exception {
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM mw_queue "
+                        + "WHERE host_id IS DISTINCT FROM action_parameters ->> 'host_id'")) {
+            rs.next();
+            assertEquals(0, rs.getLong(1));
+        }
+    }
+
+    @Test
+    public void hostStatusByAikCertificateUsesIndex() throws Exception {
+        String plan = explain(MwHostStatusJpaController.HOST_STATUS_BY_AIK_CERTIFICATE_QUERY, "aik-certificate", "aik-certificate");
+        assertUsesIndex(plan, "idx_host_status_aik_certificate_digest");
+    }
+
+    @Test
+    public void hostStatusByHardwareUuidUsesIndex() throws Exception {
+        String plan = explain(MwHostStatusJpaController.HOST_IDS_BY_HARDWARE_UUID_QUERY, UNKNOWN_ID);
+        assertUsesIndex(plan, "idx_host_status_hardware_uuid");
+    }
+
+    @Test
+    public void hostStatusByHostInfoMatchesText() throws Exception {
+        // boolean and numeric fields are matched by their text value
+        String query = MwHostStatusJpaController.HOST_IDS_BY_HOST_INFO_QUERY;
+        assertEquals(1, rows(query, "bios_version", "plan-test-1"));
+        assertEquals(HOSTS / 2, rows(query, "plan_test_enabled", "true"));
+        assertEquals(HOSTS / 4, rows(query, "plan_test_count", "3"));
+    }
+
+    @Test
+    public void hostSearchByHardwareUuidUsesIndex() throws Exception {
+        List<String> parameters = new ArrayList<>();
+        String query = MwHostJpaController.buildHostSearchQueryString(null, null, null, UNKNOWN_ID, null, null, null, null, null, parameters);
+        String plan = explain(query, parameters.toArray(new String[0]));
+        assertUsesIndex(plan, "idx_host_hardware_uuid");
+    }
+
+    @Test
+    public void hostSearchByTlsPolicyIdUsesIndex() throws Exception {
+        List<String> parameters = new ArrayList<>();
+        String query = MwHostJpaController.buildHostSearchQueryString(null, null, null, null, UNKNOWN_ID, null, null, null, null, parameters);
+        String plan = explain(query, parameters.toArray(new String[0]));
+        assertUsesIndex(plan, "idx_host_tls_policy_id");
+    }
+
+    @Test
+    public void hostSearchByHostInfoMatchesText() throws Exception {
+        assertEquals(1, hostSearchRows("bios_version", "plan-test-1"));
+        assertEquals(HOSTS / 2, hostSearchRows("plan_test_enabled", "true"));
+        assertEquals(HOSTS / 2, hostSearchRows("plan_test_enabled", "false"));
+    }
+}
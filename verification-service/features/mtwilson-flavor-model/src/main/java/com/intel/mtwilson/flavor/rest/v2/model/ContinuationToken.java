@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.model;
+
+import com.google.common.io.BaseEncoding;
+import com.intel.dcsg.cpg.io.UUID;
+import java.nio.charset.Charset;
+
+/**
+ * Opaque token returned with a page of search results and passed back to
+ * get the next page. The token records the collection it belongs to and
+ * the ID of the last entry of the page, which is the sort key of every
+ * paged search.
+ */
+public class ContinuationToken {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+    private static final String SEPARATOR = ":";
+
+    private final String collection;
+    private final String lastId;
+
+    public ContinuationToken(String collection, String lastId) {
+        this.collection = collection;
+        this.lastId = lastId;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    public String encode() {
+        return ENCODING.encode((collection + SEPARATOR + lastId).getBytes(UTF8));
+    }
+
+    /**
+     * Decodes a token that was issued for the given collection.
+     * @param collection the collection being searched, for example "hosts"
+     * @param token the token from the previous page
+     * @return the decoded token
+     * @throws IllegalArgumentException if the token is malformed or was issued for another collection
+     */
+    public static ContinuationToken decode(String collection, String token) {
+        String text;
+        try {
+            text = new String(ENCODING.decode(token), UTF8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+        int index = text.indexOf(SEPARATOR);
+        if (index < 0 || !collection.equals(text.substring(0, index))) {
+            throw new IllegalArgumentException("Continuation token is not valid for " + collection);
+        }
+        String lastId = text.substring(index + 1);
+        if (!UUID.isValid(lastId)) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+        return new ContinuationToken(collection, lastId);
+    }
+}
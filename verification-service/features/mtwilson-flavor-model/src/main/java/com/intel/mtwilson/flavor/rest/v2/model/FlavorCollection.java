@@ -33,4 +33,15 @@ public class FlavorCollection extends DocumentCollection<Flavor> {
     public List<Flavor> getDocuments() {
         return getFlavors();
     }
+    
+    private String continuationToken;
+    
+    /**
+     * Set when more results may follow, pass it back as the continuationToken
+     * search parameter to get the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getContinuationToken() { return continuationToken; }
+    
+    public void setContinuationToken(String continuationToken) { this.continuationToken = continuationToken; }
 }
@@ -6,6 +6,7 @@
 package com.intel.mtwilson.flavor.rest.v2.model;
 
 import com.intel.dcsg.cpg.io.UUID;
+import com.intel.dcsg.cpg.validation.Regex;
 import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.core.flavor.model.Flavor;
 import com.intel.mtwilson.jaxrs2.DefaultFilterCriteria;
@@ -32,4 +33,7 @@ public class FlavorFilterCriteria extends DefaultFilterCriteria implements Filte
     public List<FlavorPart> flavorParts;
     public HostManifest hostManifest;
     public HashMap<String, Boolean> flavorPartsWithLatest;
+    @Regex("(?:[a-zA-Z0-9_-]+)")
+    @QueryParam("continuationToken")
+    public String continuationToken;
 }
@@ -28,4 +28,15 @@ public class FlavorgroupCollection extends DocumentCollection<Flavorgroup> {
     public List<Flavorgroup> getDocuments() {
         return getFlavorgroups();
     }
+    
+    private String continuationToken;
+    
+    /**
+     * Set when more results may follow, pass it back as the continuationToken
+     * search parameter to get the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getContinuationToken() { return continuationToken; }
+    
+    public void setContinuationToken(String continuationToken) { this.continuationToken = continuationToken; }
 }
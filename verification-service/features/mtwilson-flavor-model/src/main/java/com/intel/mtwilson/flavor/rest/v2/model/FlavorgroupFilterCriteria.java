@@ -6,6 +6,7 @@
 package com.intel.mtwilson.flavor.rest.v2.model;
 
 import com.intel.dcsg.cpg.io.UUID;
+import com.intel.dcsg.cpg.validation.Regex;
 import com.intel.mtwilson.jaxrs2.DefaultFilterCriteria;
 import com.intel.mtwilson.repository.FilterCriteria;
 import javax.ws.rs.QueryParam;
@@ -25,4 +26,7 @@ public class FlavorgroupFilterCriteria extends DefaultFilterCriteria implements
     public boolean includeFlavorContent;
     @QueryParam("hostId")
     public UUID hostId;
+    @Regex("(?:[a-zA-Z0-9_-]+)")
+    @QueryParam("continuationToken")
+    public String continuationToken;
 }
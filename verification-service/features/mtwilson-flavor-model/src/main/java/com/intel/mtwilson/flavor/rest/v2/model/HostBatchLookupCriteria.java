@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.rest.v2.model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.intel.dcsg.cpg.io.UUID;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The hosts of a batch lookup of reports or host status. A host is included
+ * if it matches any of the IDs, names or hardware UUIDs.
+ */
+public class HostBatchLookupCriteria {
+    private List<UUID> hostIds = new ArrayList<>();
+    private List<String> hostNames = new ArrayList<>();
+    private List<UUID> hardwareUuids = new ArrayList<>();
+
+    @JacksonXmlElementWrapper(localName="host_ids")
+    @JacksonXmlProperty(localName="host_id")
+    public List<UUID> getHostIds() {
+        return hostIds;
+    }
+
+    public void setHostIds(List<UUID> hostIds) {
+        this.hostIds = hostIds;
+    }
+
+    @JacksonXmlElementWrapper(localName="host_names")
+    @JacksonXmlProperty(localName="host_name")
+    public List<String> getHostNames() {
+        return hostNames;
+    }
+
+    public void setHostNames(List<String> hostNames) {
+        this.hostNames = hostNames;
+    }
+
+    @JacksonXmlElementWrapper(localName="hardware_uuids")
+    @JacksonXmlProperty(localName="hardware_uuid")
+    public List<UUID> getHardwareUuids() {
+        return hardwareUuids;
+    }
+
+    public void setHardwareUuids(List<UUID> hardwareUuids) {
+        this.hardwareUuids = hardwareUuids;
+    }
+}
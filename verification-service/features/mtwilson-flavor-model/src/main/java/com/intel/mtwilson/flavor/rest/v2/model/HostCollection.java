@@ -23,4 +23,15 @@ public class HostCollection {
     
     private final ArrayList<Host> hosts = new ArrayList<Host>();
     public List<Host> getHosts() { return hosts; }
+    
+    private String continuationToken;
+    
+    /**
+     * Set when more results may follow, pass it back as the continuationToken
+     * search parameter to get the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getContinuationToken() { return continuationToken; }
+    
+    public void setContinuationToken(String continuationToken) { this.continuationToken = continuationToken; }
 }
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.rest.v2.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The hosts of a bulk host registration request.
+ */
+public class HostCreateCriteriaCollection {
+    @JsonSerialize(include=JsonSerialize.Inclusion.ALWAYS) // jackson 1.9
+    @JsonInclude(JsonInclude.Include.ALWAYS)                // jackson 2.0
+    @JacksonXmlElementWrapper(localName="host")
+    @JacksonXmlProperty(localName="host")    
+    
+    private final ArrayList<HostCreateCriteria> hosts = new ArrayList<HostCreateCriteria>();
+    public List<HostCreateCriteria> getHosts() { return hosts; }
+}
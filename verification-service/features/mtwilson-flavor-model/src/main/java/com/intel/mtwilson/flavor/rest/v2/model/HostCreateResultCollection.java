@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.rest.v2.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of a bulk host registration request, one for each requested
+ * host in request order.
+ */
+public class HostCreateResultCollection {
+    @JsonSerialize(include=JsonSerialize.Inclusion.ALWAYS) // jackson 1.9
+    @JsonInclude(JsonInclude.Include.ALWAYS)                // jackson 2.0
+    @JacksonXmlElementWrapper(localName="result")
+    @JacksonXmlProperty(localName="result")    
+    
+    private final ArrayList<HostCreateResult> results = new ArrayList<HostCreateResult>();
+    public List<HostCreateResult> getResults() { return results; }
+}
@@ -6,6 +6,7 @@
 package com.intel.mtwilson.flavor.rest.v2.model;
 
 import com.intel.dcsg.cpg.io.UUID;
+import com.intel.dcsg.cpg.validation.Regex;
 import com.intel.dcsg.cpg.validation.Validator;
 import com.intel.mtwilson.jaxrs2.DefaultFilterCriteria;
 import com.intel.mtwilson.repository.FilterCriteria;
@@ -42,4 +43,7 @@ public class HostFilterCriteria extends DefaultFilterCriteria implements FilterC
     public String flavorgroupName;
     @QueryParam("tlsPolicyId")
     public String tlsPolicyId;
+    @Regex("(?:[a-zA-Z0-9_-]+)")
+    @QueryParam("continuationToken")
+    public String continuationToken;
 }
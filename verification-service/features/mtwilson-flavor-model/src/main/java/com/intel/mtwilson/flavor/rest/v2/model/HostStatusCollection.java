@@ -28,4 +28,15 @@ public class HostStatusCollection extends DocumentCollection<HostStatus> {
     public List<HostStatus> getDocuments() {
         return getHostStatus();
     }
-}
\ No newline at end of file
+    
+    private String continuationToken;
+    
+    /**
+     * Set when more results may follow, pass it back as the continuationToken
+     * search parameter to get the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getContinuationToken() { return continuationToken; }
+    
+    public void setContinuationToken(String continuationToken) { this.continuationToken = continuationToken; }
+}
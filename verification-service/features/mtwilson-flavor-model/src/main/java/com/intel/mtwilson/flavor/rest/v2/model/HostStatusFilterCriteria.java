@@ -39,4 +39,7 @@ public class HostStatusFilterCriteria extends DefaultFilterCriteria implements F
     public String toDate;
     @QueryParam("latestPerHost")
     public String latestPerHost;
+    @Regex("(?:[a-zA-Z0-9_-]+)")
+    @QueryParam("continuationToken")
+    public String continuationToken;
 }
@@ -31,4 +31,15 @@ public class ReportCollection extends DocumentCollection<Report>{
         return getReports();
     }
     
+    
+    private String continuationToken;
+    
+    /**
+     * Set when more results may follow, pass it back as the continuationToken
+     * search parameter to get the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getContinuationToken() { return continuationToken; }
+    
+    public void setContinuationToken(String continuationToken) { this.continuationToken = continuationToken; }
 }
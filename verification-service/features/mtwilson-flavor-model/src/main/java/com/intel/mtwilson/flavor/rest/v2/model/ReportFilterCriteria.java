@@ -37,4 +37,7 @@ public class ReportFilterCriteria extends DefaultFilterCriteria implements Filte
     public String toDate;
     @QueryParam("latestPerHost")
     public String latestPerHost;
+    @Regex("(?:[a-zA-Z0-9_-]+)")
+    @QueryParam("continuationToken")
+    public String continuationToken;
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ContinuationTokenTest {
+
+    @Test
+    public void testEncodeDecode() {
+        String token = new ContinuationToken("hosts", "f271d192-4efe-43ad-994c-4fa46459ac57").encode();
+        assertTrue(token.matches("[a-zA-Z0-9_-]+"));
+        assertEquals("f271d192-4efe-43ad-994c-4fa46459ac57", ContinuationToken.decode("hosts", token).getLastId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenForOtherCollection() {
+        String token = new ContinuationToken("hosts", "f271d192-4efe-43ad-994c-4fa46459ac57").encode();
+        ContinuationToken.decode("flavors", token);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenWithoutId() {
+        String token = new ContinuationToken("hosts", "' OR 1=1 --").encode();
+        ContinuationToken.decode("hosts", token);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedToken() {
+        ContinuationToken.decode("hosts", "not*base64");
+    }
+}
@@ -6,21 +6,17 @@
 package com.intel.mtwilson.flavor.business;
 
 import com.intel.dcsg.cpg.io.UUID;
-import com.intel.dcsg.cpg.x509.X509Util;
 import com.intel.mtwilson.My;
-import com.intel.mtwilson.core.common.model.HardwareFeature;
-import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
 import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.core.flavor.model.Flavor;
 import com.intel.mtwilson.core.verifier.Verifier;
 import com.intel.mtwilson.core.verifier.policy.Fault;
 import com.intel.mtwilson.core.verifier.policy.RuleResult;
-import com.intel.mtwilson.core.verifier.policy.TrustMarker;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
 import com.intel.mtwilson.features.queue.QueueOperation;
 import com.intel.mtwilson.flavor.business.policy.rule.RequiredFlavorTypeExists;
 import com.intel.mtwilson.flavor.business.policy.rule.RuleAllOfFlavors;
-import com.intel.mtwilson.flavor.data.MwHostCredential;
+import com.intel.mtwilson.flavor.controller.UnitOfWork;
 import com.intel.mtwilson.flavor.model.*;
 
 import static com.intel.mtwilson.flavor.model.MatchPolicy.MatchType.ALL_OF;
@@ -31,7 +27,6 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLink;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLinkCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLinkFilterCriteria;
-import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLinkLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.Flavorgroup;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupCollection;
@@ -50,7 +45,8 @@ import com.intel.mtwilson.flavor.rest.v2.repository.HostRepository;
 import com.intel.mtwilson.flavor.rest.v2.repository.HostStatusRepository;
 import com.intel.mtwilson.flavor.rest.v2.repository.ReportRepository;
 import com.intel.mtwilson.flavor.rest.v2.resource.HostResource;
-import com.intel.mtwilson.flavor.saml.IssuerConfigurationFactory;
+import com.intel.mtwilson.flavor.saml.SamlReport;
+import com.intel.mtwilson.flavor.saml.SamlReportGenerator;
 import com.intel.mtwilson.i18n.HostState;
 import static com.intel.mtwilson.i18n.HostState.CONNECTED;
 import static com.intel.mtwilson.i18n.HostState.QUEUE;
@@ -63,31 +59,21 @@ import static com.intel.mtwilson.features.queue.model.QueueState.ERROR;
 import com.intel.mtwilson.flavor.rest.v2.resource.HostStatusResource;
 import static com.intel.mtwilson.i18n.HostState.CONNECTION_TIMEOUT;
 
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
-import com.intel.mtwilson.supplemental.saml.SAML;
-import com.intel.mtwilson.supplemental.saml.MapFormatter;
-import com.intel.mtwilson.supplemental.saml.SamlAssertion;
-import java.io.StringReader;
 import java.security.GeneralSecurityException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.TimeZone;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.dsig.XMLSignatureException;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
-import javax.xml.stream.XMLStreamReader;
-import org.apache.commons.beanutils.BeanMap;
-import org.apache.commons.lang.WordUtils;
-import org.apache.shiro.util.CollectionUtils;
 import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.xml.io.MarshallingException;
 /**
@@ -144,38 +130,42 @@ public class FlavorVerify extends QueueOperation {
                 return false;
             }
 
-            // retrieve the flavorgroups
-            List<Flavorgroup> flavorGroupsToVerify = getFlavorgroupsToVerify(hostId);
-            UUID hardwareUuid = UUID.valueOf(hostManifest.getHostInfo().getHardwareUuid());
-            boolean isCollectiveTrustReportValid = true;
-            // create collective trust report from hostgroups individual trustreport
-            TrustReport collectiveTrustReport = null;
-            for(Flavorgroup flavorgroup: flavorGroupsToVerify) {
-                HostTrustRequirements trustRequirementsForFlavorGroup = getHostTrustRequirementsForFlavorgroup(hostId, hardwareUuid, flavorgroup);
-                List<Flavor> cachedFlavorsForFlavorgroup = retrieveCachedFlavorsForFlavorgroupToMatch(hostId, flavorgroup);
-                if(cachedFlavorsForFlavorgroup != null) {
-                    HostTrustCache hostTrustCacheForFlavorgroup = validateCachedFlavorsAgainstHostManifest(hostId, hostManifest, cachedFlavorsForFlavorgroup);
-                    TrustReport hostTrustReportForFlavorgroup = hostTrustCacheForFlavorgroup.getTrustReport();
-                    if (!isHostTrustReportValidForFlavorgroup(trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup)) {
+            // the database work of the verification shares one EntityManager and transaction,
+            // flavorgroups evaluated on the flavorgroup pool use their own
+            try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+                // retrieve the flavorgroups
+                List<Flavorgroup> flavorGroupsToVerify = getFlavorgroupsToVerify(hostId);
+                UUID hardwareUuid = UUID.valueOf(hostManifest.getHostInfo().getHardwareUuid());
+                boolean isCollectiveTrustReportValid = true;
+                // create collective trust report from hostgroups individual trustreport,
+                // merging in flavorgroup order regardless of the order the flavorgroups finish in
+                TrustReport collectiveTrustReport = null;
+                // flavors that make up the trust cache of the host after this verification
+                Set<UUID> linkedFlavorIds = new LinkedHashSet<>();
+                for (FlavorgroupTrust flavorgroupTrust : verifyFlavorgroups(hardwareUuid, hostManifest, flavorGroupsToVerify)) {
+                    linkedFlavorIds.addAll(flavorgroupTrust.linkedFlavorIds);
+                    if (flavorgroupTrust.trustReport == null) {
+                        continue;
+                    }
+                    if (!flavorgroupTrust.cacheValid) {
                         isCollectiveTrustReportValid = false;
-                        // Generate Host Trust Report for Flavor Group by verifying flavors against Host Manifest
-                        hostTrustReportForFlavorgroup = createHostTrustReportForFlavorgroup(hostManifest, trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup);
                     }
-
-                    log.debug("Trust status for host {} for flavor group {} is {}", hostId.toString(), flavorgroup.getName(), hostTrustReportForFlavorgroup.isTrusted());
                     if (collectiveTrustReport == null) {
-                        collectiveTrustReport = hostTrustReportForFlavorgroup;
+                        collectiveTrustReport = flavorgroupTrust.trustReport;
                     } else {
-                        addRuleResults(collectiveTrustReport, hostTrustReportForFlavorgroup.getResults());
+                        addRuleResults(collectiveTrustReport, flavorgroupTrust.trustReport.getResults());
                     }
                 }
+                // update the trust cache of the host with the flavors linked during verification
+                new FlavorHostLinkRepository().replace(hostId, linkedFlavorIds);
+                if (collectiveTrustReport != null && (!isCollectiveTrustReportValid || forceUpdate)) {
+                    log.debug("Trust cache update called, generating new SAML and saving new report for host: {}", hostId.toString());
+                    storeTrustReport(hostId, collectiveTrustReport);
+                }
+                // update host_status so not in QUEUE state
+                new HostResource().updateHostStatus(hostId, CONNECTED, hostManifest);
+                unitOfWork.commit();
             }
-            if (collectiveTrustReport != null && (!isCollectiveTrustReportValid || forceUpdate)) {
-                log.debug("Trust cache update called, generating new SAML and saving new report for host: {}", hostId.toString());
-                storeTrustReport(hostId, collectiveTrustReport);
-            }
-            // update host_status so not in QUEUE state
-            new HostResource().updateHostStatus(hostId, CONNECTED, hostManifest);
             this.setQueueState(COMPLETED);
             log.info("Flavor verification completed succesfully for host with ID {}",hostId.toString());
             return true;
@@ -187,6 +177,78 @@ public class FlavorVerify extends QueueOperation {
         }
     }
 
+    /**
+     * Evaluates each flavorgroup of the host. Flavorgroups are independent of
+     * each other, so when the host belongs to more than one and
+     * mtwilson.flavor.verify.flavorgroup.threads is greater than one they are
+     * evaluated on the shared {@link FlavorgroupVerifyExecutor} pool while
+     * this thread evaluates the first one. Results are returned in flavorgroup
+     * order.
+     */
+    private List<FlavorgroupTrust> verifyFlavorgroups(final UUID hardwareUuid, final HostManifest hostManifest, List<Flavorgroup> flavorgroups) {
+        List<FlavorgroupTrust> results = new ArrayList<>();
+        if (flavorgroups.size() < 2 || !FlavorgroupVerifyExecutor.isEnabled()) {
+            for (Flavorgroup flavorgroup : flavorgroups) {
+                results.add(verifyFlavorgroup(hardwareUuid, hostManifest, flavorgroup));
+            }
+            return results;
+        }
+        List<Future<FlavorgroupTrust>> futures = new ArrayList<>();
+        try {
+            for (final Flavorgroup flavorgroup : flavorgroups.subList(1, flavorgroups.size())) {
+                futures.add(FlavorgroupVerifyExecutor.submit(new Callable<FlavorgroupTrust>() {
+                    @Override
+                    public FlavorgroupTrust call() {
+                        return verifyFlavorgroup(hardwareUuid, hostManifest, flavorgroup);
+                    }
+                }));
+            }
+            results.add(verifyFlavorgroup(hardwareUuid, hostManifest, flavorgroups.get(0)));
+            for (Future<FlavorgroupTrust> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlavorVerifyException(String.format("Interrupted while verifying flavorgroups for host [%s]", hostId.toString()), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FlavorVerifyException(String.format("Error while verifying flavorgroups for host [%s]", hostId.toString()), e.getCause());
+        } finally {
+            // no-op for completed flavorgroups, stops the rest if one of them failed
+            for (Future<FlavorgroupTrust> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private FlavorgroupTrust verifyFlavorgroup(UUID hardwareUuid, HostManifest hostManifest, Flavorgroup flavorgroup) {
+        FlavorgroupTrust flavorgroupTrust = new FlavorgroupTrust();
+        HostTrustRequirements trustRequirementsForFlavorGroup = getHostTrustRequirementsForFlavorgroup(hostId, hardwareUuid, flavorgroup);
+        List<Flavor> cachedFlavorsForFlavorgroup = retrieveCachedFlavorsForFlavorgroupToMatch(hostId, flavorgroup);
+        if (cachedFlavorsForFlavorgroup != null) {
+            HostTrustCache hostTrustCacheForFlavorgroup = validateCachedFlavorsAgainstHostManifest(hostId, hostManifest, cachedFlavorsForFlavorgroup, flavorgroupTrust.linkedFlavorIds);
+            TrustReport hostTrustReportForFlavorgroup = hostTrustCacheForFlavorgroup.getTrustReport();
+            if (!isHostTrustReportValidForFlavorgroup(trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup)) {
+                flavorgroupTrust.cacheValid = false;
+                // Generate Host Trust Report for Flavor Group by verifying flavors against Host Manifest
+                hostTrustReportForFlavorgroup = createHostTrustReportForFlavorgroup(hostManifest, trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup, flavorgroupTrust.linkedFlavorIds);
+            }
+            log.debug("Trust status for host {} for flavor group {} is {}", hostId.toString(), flavorgroup.getName(), hostTrustReportForFlavorgroup.isTrusted());
+            flavorgroupTrust.trustReport = hostTrustReportForFlavorgroup;
+        }
+        return flavorgroupTrust;
+    }
+
+    // result of evaluating a single flavorgroup, merged into the collective trust report by call()
+    private static class FlavorgroupTrust {
+        private TrustReport trustReport;
+        private boolean cacheValid = true;
+        private final Set<UUID> linkedFlavorIds = new LinkedHashSet<>();
+    }
+
     private List<Flavorgroup> getFlavorgroupsToVerify(UUID hostId) {
         FlavorgroupFilterCriteria flavorgroupFilterCriteria = new FlavorgroupFilterCriteria();
         flavorgroupFilterCriteria.hostId = hostId;
@@ -226,9 +288,12 @@ public class FlavorVerify extends QueueOperation {
             HostState hostState = QUEUE;
             HostManifest hostManifest = null;
             try {
-                MwHostCredential credential = My.jpa().mwHostCredential().findByHostId(hostId.toString());
+                String credential = new HostRepository().retrieveCredential(hostId);
+                if (credential == null) {
+                    throw new IllegalStateException(String.format("No credential stored for host [%s]", hostId.toString()));
+                }
                 hostManifest = new HostResource().getHostManifest(host,
-                        new ConnectionString(String.format("%s;%s", host.getConnectionString(), credential.getCredential())));
+                        new ConnectionString(String.format("%s;%s", host.getConnectionString(), credential)));
             } catch (Exception e) {
                 // detect the host state from the error response
                 hostState = new HostStatusResource().determineHostState(e);
@@ -368,7 +433,7 @@ public class FlavorVerify extends QueueOperation {
         return flavorsToMatch;
     }
 
-    private HostTrustCache validateCachedFlavorsAgainstHostManifest(UUID hostId, HostManifest hostManifest, List<Flavor> cachedFlavors) {
+    private HostTrustCache validateCachedFlavorsAgainstHostManifest(UUID hostId, HostManifest hostManifest, List<Flavor> cachedFlavors, Set<UUID> linkedFlavorIds) {
         HostTrustCache hostTrustCache = new HostTrustCache();
         hostTrustCache.setHostId(hostId);
         TrustReport collectiveTrustReport = null;
@@ -381,19 +446,15 @@ public class FlavorVerify extends QueueOperation {
                 TrustReport individualTrustReport = verifier.verify(hostManifest, cachedFlavor);
 
                 // if the flavor is trusted, add it to the collective trust report and to the return object
-                // else, delete it from the trust cache
+                // else, leave it out of the trust cache so its link is removed
                 if (individualTrustReport.isTrusted()) {
                     hostTrustCache.getTrustedFlavors().getFlavors().add(cachedFlavor);
+                    linkedFlavorIds.add(UUID.valueOf(cachedFlavor.getMeta().getId()));
                     if (collectiveTrustReport == null) {
                         collectiveTrustReport = individualTrustReport;
                     } else {
                         collectiveTrustReport = addRuleResults(collectiveTrustReport, individualTrustReport.getResults());
                     }
-                } else {
-                    FlavorHostLinkFilterCriteria flavorHostLinkFilterCriteria = new FlavorHostLinkFilterCriteria();
-                    flavorHostLinkFilterCriteria.hostId = hostId;
-                    flavorHostLinkFilterCriteria.flavorId = UUID.valueOf(cachedFlavor.getMeta().getId());
-                    new FlavorHostLinkRepository().delete(flavorHostLinkFilterCriteria);
                 }
             }
             hostTrustCache.setTrustReport(collectiveTrustReport);
@@ -407,7 +468,7 @@ public class FlavorVerify extends QueueOperation {
         return hostTrustCache;
     }
 
-    private TrustReport verify(UUID hostId, FlavorCollection flavors, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements) {
+    private TrustReport verify(UUID hostId, FlavorCollection flavors, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, Set<UUID> linkedFlavorIds) {
         TrustReport collectiveTrustReport = null;
 
         // return null if no flavors were found
@@ -446,8 +507,8 @@ public class FlavorVerify extends QueueOperation {
                                 collectiveTrustReport = addRuleResults(collectiveTrustReport, individualTrustReport.getResults());
                             }
 
-                            // create a new flavor host link (trust cache record), only if it doesn't already exist
-                            createFlavorHostLink(flavorId, hostId);
+                            // add the flavor to the trust cache of the host
+                            linkedFlavorIds.add(flavorId);
                         } else {
                             untrustedReports.getFlavorTrustReportList().add(new FlavorTrustReport(
                                     FlavorPart.valueOf(flavor.getMeta().getDescription().getFlavorPart()),
@@ -480,7 +541,7 @@ public class FlavorVerify extends QueueOperation {
                                 collectiveTrustReport = untrustedReport.getTrustReport();
                             else
                                 collectiveTrustReport = addRuleResults(collectiveTrustReport, untrustedReport.getTrustReport().getResults());
-                            createFlavorHostLink(untrustedReport.getFlavorId(), hostId);
+                            linkedFlavorIds.add(untrustedReport.getFlavorId());
                         }
                     // add the ANY_OF trust report with least faults to the collective
                     } else if (matchPolicy != null && (matchPolicy.getMatchType() == MatchType.ANY_OF 
@@ -502,7 +563,7 @@ public class FlavorVerify extends QueueOperation {
                                 collectiveTrustReport = leastFaultsReport.getTrustReport();
                             else
                                 collectiveTrustReport = addRuleResults(collectiveTrustReport, leastFaultsReport.getTrustReport().getResults());
-                            createFlavorHostLink(leastFaultsReport.getFlavorId(), hostId);
+                            linkedFlavorIds.add(leastFaultsReport.getFlavorId());
                         }
                     }
                 }
@@ -517,26 +578,13 @@ public class FlavorVerify extends QueueOperation {
         return collectiveTrustReport;
     }
     
-    private Boolean createFlavorHostLink(UUID flavorId, UUID hostId) {
-        // create a new flavor host link (trust cache record), only if it doesn't already exist
-        FlavorHostLinkLocator flavorHostLinkLocator = new FlavorHostLinkLocator(flavorId, hostId);
-        FlavorHostLink existingFlavorHostLink = new FlavorHostLinkRepository().retrieve(flavorHostLinkLocator);
-        if (existingFlavorHostLink == null) {
-            FlavorHostLink flavorHostLink = new FlavorHostLink();
-            flavorHostLink.setFlavorId(flavorId);
-            flavorHostLink.setHostId(hostId);
-            new FlavorHostLinkRepository().create(flavorHostLink);
-            return true;
-        }
-        return false;
-    }
-
     private TrustReport createTrustReport(HostManifest hostManifest, HostTrustRequirements hostTrustRequirements,
-                                          HostTrustCache trustCache, HashMap<String, Boolean> latestReqAndDefFlavorTypes) {
+                                          HostTrustCache trustCache, HashMap<String, Boolean> latestReqAndDefFlavorTypes,
+                                          Set<UUID> linkedFlavorIds) {
         // Fetch flavors needed to verify
         FlavorCollection flavorsToVerify = findFlavors(hostTrustRequirements.getFlavorgroupId(), hostManifest, latestReqAndDefFlavorTypes);
         // Verify flavor collection against host report
-        TrustReport trustReport = verify(hostId, flavorsToVerify, hostManifest, hostTrustRequirements);
+        TrustReport trustReport = verify(hostId, flavorsToVerify, hostManifest, hostTrustRequirements, linkedFlavorIds);
 
         // add results found in trust cache
         if (!isTrustCacheEmpty(trustCache)) {
@@ -602,21 +650,21 @@ public class FlavorVerify extends QueueOperation {
         return true;
     }
 
-    private TrustReport createHostTrustReportForFlavorgroup(HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache) {
+    private TrustReport createHostTrustReportForFlavorgroup(HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache, Set<UUID> linkedFlavorIds) {
         //create a hashMap with latest match policy
         List<FlavorPart> reqAndDefFlavorTypes = hostTrustRequirements.getDefinedAndRequiredFlavorTypes();
         HashMap<String, Boolean> latestReqAndDefFlavorTypes = getLatestFlavorTypeMap(hostTrustRequirements, reqAndDefFlavorTypes);
 
         // No results found in Trust Cache
         if (isTrustCacheEmpty(trustCache)) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes);
+            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes, linkedFlavorIds);
         }
 
         // Missing Required and Defined Flavors
         TrustReport cachedTrustReport = trustCache.getTrustReport();
         HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = getMissingRequiredFlavorPartsWithLatest(hostTrustRequirements, reqAndDefFlavorTypes, cachedTrustReport);
         if (!missingRequiredFlavorPartsWithLatest.isEmpty()) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, missingRequiredFlavorPartsWithLatest);
+            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, missingRequiredFlavorPartsWithLatest, linkedFlavorIds);
         }
         
         // All Of Flavors present
@@ -626,7 +674,7 @@ public class FlavorVerify extends QueueOperation {
                 My.configuration().getAssetTagCaCertificateFile().getAbsolutePath());
         ruleAllOfFlavors.setMarkers(getAllOfMarkers(hostTrustRequirements));
         if (areAllOfFlavorsMissingInCachedTrustReport(cachedTrustReport, ruleAllOfFlavors)) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes);
+            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes, linkedFlavorIds);
         }
         return cachedTrustReport;
     }
@@ -687,80 +735,22 @@ public class FlavorVerify extends QueueOperation {
         return flavorRepository.search(flavorFilterCriteria);
     }
 
-    private String generateSamlReport(TrustReport trustReport) {
-        SamlAssertion mapSamlAssertion;
+    private void storeTrustReport(UUID hostId, TrustReport trustReport) {
+        SamlReport samlReport;
         try {
-            SAML saml = new SAML(new IssuerConfigurationFactory().loadIssuerConfiguration());
-            BeanMap map = new BeanMap(trustReport.getHostManifest().getHostInfo());
-            Map<String, String> samlMap = new LinkedHashMap();
-            Iterator<String> it = map.keyIterator();
-            X509Certificate aikCertificate = trustReport.getHostManifest().getAikCertificate();
-            X509Certificate bindingKeyCertificate = trustReport.getHostManifest().getBindingKeyCertificate();
-            while (it.hasNext()) {
-                String key = it.next();
-                if (map.get(key) != null && !key.equals("class") && !key.equals("hardwareFeatures")) {
-                    String value = map.get(key).toString();
-                    samlMap.put(key, value);
-                }
-            }
-            Map<HardwareFeature, HardwareFeatureDetails> hardwareFeatures = trustReport.getHostManifest().getHostInfo().getHardwareFeatures();
-            if(!CollectionUtils.isEmpty(hardwareFeatures)) {
-                for (HardwareFeature feature : HardwareFeature.values()) {
-                    HardwareFeatureDetails details = hardwareFeatures.get(feature);
-                    if(details != null) {
-                        String key = "FEATURE_" + feature.getValue();
-                        String value = String.valueOf(details.getEnabled());
-                        samlMap.put(key, value);
-                        if(HardwareFeature.CBNT.equals(feature)) {
-                            samlMap.put("FEATURE_cbntProfile", details.getMeta().get("profile"));
-                        }
-                        if(HardwareFeature.MKTME.equals(feature)) {
-                            samlMap.put("FEATURE_mktmeAlgorithm", details.getMeta().get("encryption_algorithm"));
-                        }
-                    }
-                }
-            }
-
-            for (TrustMarker marker : TrustMarker.values()) {
-                String markerName = marker.name();
-                if (!trustReport.getResultsForMarker(markerName).isEmpty()) {
-                    samlMap.put("TRUST_" + WordUtils.capitalize(markerName), String.valueOf(trustReport.isTrustedForMarker(markerName)));
-                } else {
-                    samlMap.put("TRUST_" + WordUtils.capitalize(markerName), "NA");
-                }
-            }
-            samlMap.put("TRUST_OVERALL", String.valueOf(trustReport.isTrusted()));
-            
-            if (bindingKeyCertificate != null){
-                samlMap.put("Binding_Key_Certificate", X509Util.encodePemCertificate(bindingKeyCertificate));
-            }
-            if (aikCertificate != null){
-                samlMap.put("AIK_Certificate", X509Util.encodePemCertificate(aikCertificate));
-            }
-
-            for (Map.Entry<String, String> tag : trustReport.getTags().entrySet()) {
-                samlMap.put("TAG_" + WordUtils.capitalize(tag.getKey()), WordUtils.capitalize(tag.getValue()));
-            }
-            MapFormatter mapAssertion = new MapFormatter(samlMap);
-            mapSamlAssertion = saml.generateSamlAssertion(mapAssertion);
+            samlReport = new SamlReportGenerator().generateSamlReport(trustReport);
         } catch (InitializationException | MarshallingException | GeneralSecurityException | XMLSignatureException | MarshalException e) {
             throw new FlavorVerifyException("Failed to generate SAML report", e);
         }
-        return mapSamlAssertion.assertion;
-    }
-    
-    private void storeTrustReport(UUID hostId, TrustReport trustReport) {
-        String samlReport = generateSamlReport(trustReport);
-        Map<String, Date> dates = parseDatesFromSaml(samlReport);
-        log.debug("flavorverify: {}", samlReport); 
+        log.debug("flavorverify: {}", samlReport.getAssertion()); 
         // Save Report in DB
         Report report = new Report();
         report.setHostId(hostId);
         report.setTrustInformation(new ReportRepository().buildTrustInformation(trustReport));
         report.setTrustReport(trustReport);
-        report.setSaml(samlReport);
-        report.setCreated(dates.get("created"));
-        report.setExpiration(dates.get("expiration"));
+        report.setSaml(samlReport.getAssertion());
+        report.setCreated(samlReport.getCreated());
+        report.setExpiration(samlReport.getExpiration());
         new ReportRepository().create(report);       
     }
 
@@ -770,30 +760,4 @@ public class FlavorVerify extends QueueOperation {
         }
         return trustReport;
     }
-    
-    private Map<String, Date> parseDatesFromSaml(String saml) {
-        String DATE_FORMAT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
-        Map<String, Date> dates = new HashMap();
-        
-        try (StringReader sr = new StringReader(saml)) {
-            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(sr);
-            while (reader.hasNext()) {
-                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
-                    if (reader.getLocalName().equalsIgnoreCase("SubjectConfirmationData")) {
-                        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_PATTERN);
-                        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-                        dates.put("created", sdf.parse(reader.getAttributeValue("", "NotBefore")));
-                        dates.put("expiration", sdf.parse(reader.getAttributeValue("", "NotOnOrAfter")));
-                    }
-                }
-                reader.next();
-            }
-        } catch (Exception ex) {
-            log.error("Error while parsing dates from SAML XML string for host: {}", hostId.toString());
-            throw new FlavorVerifyException(String.format(
-                    "Error while parsing dates from SAML XML string for host: [%s]", hostId.toString()), ex);
-        }
-        return dates;
-    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.mtwilson.My;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool shared by all flavor verifications for evaluating the
+ * flavorgroups of a single host in parallel. It is kept separate from the
+ * queue execution pool so flavorgroup tasks never wait behind the queue
+ * operations that submitted them.
+ *
+ * The pool size is set by mtwilson.flavor.verify.flavorgroup.threads. The
+ * default of 1 keeps flavorgroups evaluated sequentially on the calling
+ * thread.
+ */
+class FlavorgroupVerifyExecutor {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorgroupVerifyExecutor.class);
+    private static final int DEFAULT_FLAVORGROUP_VERIFY_THREADS = 1;
+    private static final int threads = My.configuration().getConfiguration().getInt("mtwilson.flavor.verify.flavorgroup.threads", DEFAULT_FLAVORGROUP_VERIFY_THREADS);
+    private static ExecutorService executor = null;
+
+    private FlavorgroupVerifyExecutor() {
+    }
+
+    static boolean isEnabled() {
+        return threads > 1;
+    }
+
+    static <T> Future<T> submit(Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            log.debug("Creating flavorgroup verification pool with {} threads", threads);
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "flavorgroup-verify-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
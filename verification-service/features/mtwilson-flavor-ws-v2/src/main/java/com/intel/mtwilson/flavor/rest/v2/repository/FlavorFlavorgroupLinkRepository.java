@@ -145,6 +145,7 @@ public class FlavorFlavorgroupLinkRepository {
                             flavorId.toString(),
                             flavorgroupId.toString());
             mwLinkFlavorFlavorgroupJpaController.create(newMwLinkFlavorFlavorgroup);
+            FlavorTypeCache.invalidate();
             log.debug("flavor_flavorgroup_link:create - created the flavor [{}] flavorgroup [{}] link [{}] successfully",
                     flavorId.toString(), flavorgroupId.toString(), flavorFlavorgroupLinkId.toString());
             
@@ -169,6 +170,7 @@ public class FlavorFlavorgroupLinkRepository {
             try {
                 log.debug("FlavorFlavorgroupLinkRepository: About to delete flavor-flavorgroup link with id - {}", flavorFlavorgroupLink.getId());
                 My.jpa().mwLinkFlavorFlavorgroup().destroy(flavorFlavorgroupLink.getId().toString());
+                FlavorTypeCache.invalidate();
             } catch (IOException | NonexistentEntityException ex) {
                 log.error("Error during deletion of flavor", ex);
                 throw new RepositoryDeleteException(ex);
@@ -22,7 +22,12 @@ import com.intel.mtwilson.repository.RepositoryInvalidInputException;
 import com.intel.mtwilson.repository.RepositoryRetrieveException;
 import com.intel.mtwilson.repository.RepositorySearchException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -161,6 +166,46 @@ public class FlavorHostLinkRepository {
         }
     }
     
+    /**
+     * Replaces the trust cache of a host with the given set of flavors. Links
+     * are maintained with one insert and one delete statement instead of
+     * retrieving, creating and deleting each link individually.
+     * @param hostId the host whose flavor links are replaced
+     * @param flavorIds the complete set of flavors to link to the host
+     */
+    public void replace(UUID hostId, Collection<UUID> flavorIds) {
+        replace(Collections.singletonMap(hostId, flavorIds));
+    }
+    
+    /**
+     * Replaces the trust cache of each host in the map with the given set of
+     * flavors, in a single transaction.
+     * @param flavorIdsByHostId the complete set of flavors to link to each host
+     */
+    public void replace(Map<UUID, ? extends Collection<UUID>> flavorIdsByHostId) {
+        log.debug("FlavorHostLinkRepository:replace - got request to replace flavor host links for {} hosts", flavorIdsByHostId.size());
+        Map<String, List<String>> links = new LinkedHashMap<>();
+        for (Map.Entry<UUID, ? extends Collection<UUID>> entry : flavorIdsByHostId.entrySet()) {
+            if (entry.getKey() == null) {
+                log.error("FlavorHostLinkRepository:replace - host ID must be specified");
+                throw new RepositoryInvalidInputException();
+            }
+            List<String> flavorIds = new ArrayList<>();
+            if (entry.getValue() != null) {
+                for (UUID flavorId : entry.getValue()) {
+                    flavorIds.add(flavorId.toString());
+                }
+            }
+            links.put(entry.getKey().toString(), flavorIds);
+        }
+        try {
+            My.jpa().mwLinkFlavorHost().replaceMwLinkFlavorHosts(links);
+        } catch (Exception ex) {
+            log.error("FlavorHostLinkRepository:replace - error during the replacement of flavor host links in the DB", ex);
+            throw new RepositoryCreateException(ex);
+        }
+    }
+    
     public void delete(FlavorHostLinkLocator locator) {
         log.debug("FlavorHostLinkRepository: Received request to delete flavor host link");
         if (locator == null || (locator.id == null && locator.pathId == null)) { return; }
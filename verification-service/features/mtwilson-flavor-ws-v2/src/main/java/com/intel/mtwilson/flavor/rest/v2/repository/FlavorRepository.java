@@ -45,14 +45,17 @@ public class FlavorRepository {
     public FlavorCollection search(FlavorFilterCriteria criteria) {
         log.debug("flavor:search - got request to search for flavors");
         FlavorCollection flavorCollection = new FlavorCollection();
+        String afterId = SearchPages.getAfterId("flavors", criteria.continuationToken);
         try {
             MwFlavorJpaController mwFlavorJpaController = My.jpa().mwFlavor();
             if (criteria.filter == false) {
-                List<MwFlavor> mwFlavorList = mwFlavorJpaController.findMwFlavorEntities();
+                List<MwFlavor> mwFlavorList = mwFlavorJpaController.findMwFlavorEntitiesAfter(afterId, criteria.limit);
                 if (mwFlavorList != null && !mwFlavorList.isEmpty()) {
                     for (MwFlavor mwFlavor : mwFlavorList) {
                         flavorCollection.getFlavors().add(mwFlavor.getContent());
                     }
+                    flavorCollection.setContinuationToken(SearchPages.getContinuationToken("flavors",
+                            mwFlavorList.size(), criteria.limit, mwFlavorList.get(mwFlavorList.size() - 1).getId()));
                 }
             } else if (criteria.id != null) {
                 MwFlavor mwFlavor = mwFlavorJpaController.findMwFlavor(criteria.id.toString());
@@ -168,6 +171,7 @@ public class FlavorRepository {
             // create the flavor
             MwFlavor newMwFlavor = new MwFlavor(flavorId.toString(), item);
             mwFlavorJpaController.create(newMwFlavor);
+            FlavorTypeCache.invalidate();
             log.debug("Created the flavor {} successfully", flavorId);
 
             // return back the flavor created
@@ -193,6 +197,7 @@ public class FlavorRepository {
         if (flavor != null) {
             try {
                 My.jpa().mwFlavor().destroy(flavor.getMeta().getId());
+                FlavorTypeCache.invalidate();
             } catch (IOException | NonexistentEntityException ex) {
                 log.error("Error during deletion of flavor", ex);
                 throw new RepositoryDeleteException(ex);
@@ -211,7 +216,7 @@ public class FlavorRepository {
 
             // check for HOST_UNIQUE flavor part
             boolean hostHasHostUniqueFlavor
-                    = mwFlavorJpaController.hostHasUniqueFlavor(hardwareUuid.toString(), FlavorPart.HOST_UNIQUE.name());
+                    = hostHasUniqueFlavor(mwFlavorJpaController, hardwareUuid, FlavorPart.HOST_UNIQUE);
             if (hostHasHostUniqueFlavor) {
                 log.debug("Host [{}] has HOST_UNIQUE flavor", hardwareUuid.toString());
                 uniqueFlavorTypesForHost.add(FlavorPart.HOST_UNIQUE);
@@ -219,7 +224,7 @@ public class FlavorRepository {
 
             // check for ASSET_TAG flavor part
             boolean hostHasTagFlavor
-                    = mwFlavorJpaController.hostHasUniqueFlavor(hardwareUuid.toString(), FlavorPart.ASSET_TAG.name());
+                    = hostHasUniqueFlavor(mwFlavorJpaController, hardwareUuid, FlavorPart.ASSET_TAG);
             if (hostHasTagFlavor) {
                 log.debug("Host [{}] has ASSET_TAG flavor", hardwareUuid.toString());
                 uniqueFlavorTypesForHost.add(FlavorPart.ASSET_TAG);
@@ -247,7 +252,7 @@ public class FlavorRepository {
             }
             for (FlavorPart flavorPart : flavorParts) {
                 boolean flavorgroupContainsFlavorType
-                        = mwFlavorJpaController.flavorgroupContainsFlavorType(flavorgroupId, flavorPart.name());
+                        = flavorgroupContainsFlavorType(mwFlavorJpaController, flavorgroupId, flavorPart);
                 if (flavorgroupContainsFlavorType) {
                     log.debug("Flavorgroup [{}] contains flavor type [{}]",
                             flavorgroupId.toString(), flavorPart.name());
@@ -270,6 +275,28 @@ public class FlavorRepository {
         }
     }
 
+    private boolean hostHasUniqueFlavor(MwFlavorJpaController mwFlavorJpaController, UUID hardwareUuid, FlavorPart flavorPart) {
+        Boolean cached = FlavorTypeCache.getHostHasUniqueFlavor(hardwareUuid, flavorPart);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = FlavorTypeCache.getGeneration();
+        boolean hostHasUniqueFlavor = mwFlavorJpaController.hostHasUniqueFlavor(hardwareUuid.toString(), flavorPart.name());
+        FlavorTypeCache.putHostHasUniqueFlavor(hardwareUuid, flavorPart, hostHasUniqueFlavor, generation);
+        return hostHasUniqueFlavor;
+    }
+
+    private boolean flavorgroupContainsFlavorType(MwFlavorJpaController mwFlavorJpaController, UUID flavorgroupId, FlavorPart flavorPart) {
+        Boolean cached = FlavorTypeCache.getFlavorgroupContainsFlavorType(flavorgroupId, flavorPart);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = FlavorTypeCache.getGeneration();
+        boolean flavorgroupContainsFlavorType = mwFlavorJpaController.flavorgroupContainsFlavorType(flavorgroupId, flavorPart.name());
+        FlavorTypeCache.putFlavorgroupContainsFlavorType(flavorgroupId, flavorPart, flavorgroupContainsFlavorType, generation);
+        return flavorgroupContainsFlavorType;
+    }
+
     public FlavorMatchPolicyCollection createAutomaticFlavorMatchPolicy() {
         FlavorMatchPolicyCollection policy = new FlavorMatchPolicyCollection();
         policy.addFlavorMatchPolicy(new FlavorMatchPolicy(PLATFORM, new MatchPolicy(ANY_OF, REQUIRED)));
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.ExpiringCache;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.core.flavor.common.FlavorPart;
+import com.intel.mtwilson.flavor.controller.UnitOfWork;
+
+/**
+ * Caches which flavor types are present in a flavorgroup and which unique
+ * flavor types exist for a host. Both are looked up for every flavorgroup of
+ * every host verification but only change when flavors, flavorgroups or the
+ * links between them change, so the repositories that make those changes
+ * call {@link #invalidate()}.
+ *
+ * Changes made by other nodes are picked up through the same
+ * {@code mtwilson_reference_data} notifications as {@link ReferenceDataCache},
+ * which mw_flavor and mw_link_flavor_flavorgroup also send. Entries also
+ * expire after {@code mtwilson.flavor.type.cache.expiry.seconds} in case a
+ * notification is missed.
+ */
+class FlavorTypeCache {
+    private static final long DEFAULT_FLAVOR_TYPE_CACHE_EXPIRY_SECONDS = 300;
+    // keyed by "flavorgroup:<flavorgroup ID>:<flavor part>" and "host:<hardware UUID>:<flavor part>"
+    private static final ExpiringCache<String, Boolean> flavorTypes = new ExpiringCache<>("Flavor type cache");
+
+    private FlavorTypeCache() {
+    }
+
+    static long getGeneration() {
+        return flavorTypes.getGeneration();
+    }
+
+    static Boolean getFlavorgroupContainsFlavorType(UUID flavorgroupId, FlavorPart flavorPart) {
+        return get(flavorgroupKey(flavorgroupId, flavorPart));
+    }
+
+    static void putFlavorgroupContainsFlavorType(UUID flavorgroupId, FlavorPart flavorPart, boolean present, long loadedGeneration) {
+        put(flavorgroupKey(flavorgroupId, flavorPart), present, loadedGeneration);
+    }
+
+    static Boolean getHostHasUniqueFlavor(UUID hardwareUuid, FlavorPart flavorPart) {
+        return get(hostKey(hardwareUuid, flavorPart));
+    }
+
+    static void putHostHasUniqueFlavor(UUID hardwareUuid, FlavorPart flavorPart, boolean present, long loadedGeneration) {
+        put(hostKey(hardwareUuid, flavorPart), present, loadedGeneration);
+    }
+
+    /**
+     * Discards all cached flavor type presence. Flavor, flavorgroup and
+     * flavor-flavorgroup link changes are infrequent compared to host
+     * verification, so the whole cache is cleared rather than tracking which
+     * flavorgroups and hosts a change affects.
+     * <p>
+     * Within a unit of work the change is only visible to other threads once
+     * it commits, and a lookup in between would cache the old presence
+     * again, so the cache is cleared again after the commit.
+     */
+    static void invalidate() {
+        clear();
+        UnitOfWork.afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                clear();
+            }
+        });
+    }
+
+    private static void clear() {
+        flavorTypes.invalidateAll();
+    }
+
+    private static Boolean get(String key) {
+        ReferenceDataListener.start();
+        return flavorTypes.get(key);
+    }
+
+    private static void put(String key, boolean present, long loadedGeneration) {
+        long expirySeconds = My.configuration().getConfiguration().getLong("mtwilson.flavor.type.cache.expiry.seconds", DEFAULT_FLAVOR_TYPE_CACHE_EXPIRY_SECONDS);
+        flavorTypes.put(key, present, loadedGeneration, expirySeconds);
+    }
+
+    private static String flavorgroupKey(UUID flavorgroupId, FlavorPart flavorPart) {
+        return "flavorgroup:" + flavorgroupId.toString() + ":" + flavorPart.name();
+    }
+
+    private static String hostKey(UUID hardwareUuid, FlavorPart flavorPart) {
+        return "host:" + hardwareUuid.toString().toLowerCase() + ":" + flavorPart.name();
+    }
+}
@@ -154,6 +154,7 @@ public class FlavorgroupHostLinkRepository {
             mwLinkFlavorgroupHost.setFlavorgroupId(item.getFlavorgroupId().toString());
             mwLinkFlavorgroupHost.setHostId(item.getHostId().toString());
             flavorgroupHostJpa.create(mwLinkFlavorgroupHost);
+            ReferenceDataCache.invalidateFlavorgroupHostLinks();
             return item;
         } catch (IOException Ex) {
             log.error("Error while associating the host [{}] with the flavorgroup [{}]", item.getHostId(), item.getFlavorgroupId());
@@ -189,6 +190,7 @@ public class FlavorgroupHostLinkRepository {
                 }
             }
             flavorgroupHostJpa.destroy(linkFlavorgroupTbl.getId());
+            ReferenceDataCache.invalidateFlavorgroupHostLinks();
         } catch (IOException ex) {
             log.error("Error while deleting the flavorgroup host link");
             throw new RepositoryDeleteException(ex, locator);
@@ -19,6 +19,8 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupLocator;
 import com.intel.mtwilson.repository.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -32,23 +34,26 @@ public class FlavorgroupRepository {
     public FlavorgroupCollection search(FlavorgroupFilterCriteria criteria) {
         log.debug("flavorgroup:search - got request to search for flavorgroups");
         FlavorgroupCollection flavorgroupCollection = new FlavorgroupCollection();
+        String afterId = SearchPages.getAfterId("flavorgroups", criteria.continuationToken);
         try {
             MwFlavorgroupJpaController mwFlavorgroupJpaController = My.jpa().mwFlavorgroup();
             if (criteria.filter == false) {
-                List<MwFlavorgroup> mwFlavorgroupList = mwFlavorgroupJpaController.findMwFlavorgroupEntities();
+                List<MwFlavorgroup> mwFlavorgroupList = mwFlavorgroupJpaController.findMwFlavorgroupEntitiesAfter(afterId, criteria.limit);
                 if (mwFlavorgroupList != null && !mwFlavorgroupList.isEmpty()) {
                     for (MwFlavorgroup mwFlavorgroup : mwFlavorgroupList) {
                         flavorgroupCollection.getFlavorgroups().add(convert(mwFlavorgroup));
                     }
+                    flavorgroupCollection.setContinuationToken(SearchPages.getContinuationToken("flavorgroups",
+                            mwFlavorgroupList.size(), criteria.limit, mwFlavorgroupList.get(mwFlavorgroupList.size() - 1).getId()));
                 }
             } else if (criteria.id != null) {
-                MwFlavorgroup mwFlavorgroup = mwFlavorgroupJpaController.findMwFlavorgroup(criteria.id.toString());
+                MwFlavorgroup mwFlavorgroup = findFlavorgroup(mwFlavorgroupJpaController, criteria.id.toString());
                 if (mwFlavorgroup != null) {
                     flavorgroupCollection.getFlavorgroups().add(convert(mwFlavorgroup));
                 }
             } else if (criteria.nameEqualTo != null && !criteria.nameEqualTo.isEmpty()) {
                 // re-arranged slightly to look more like the nameContains case below
-                MwFlavorgroup mwFlavorgroup = mwFlavorgroupJpaController.findMwFlavorgroupByName(criteria.nameEqualTo);
+                MwFlavorgroup mwFlavorgroup = findFlavorgroupByName(mwFlavorgroupJpaController, criteria.nameEqualTo);
                 if (mwFlavorgroup != null) {
                     flavorgroupCollection.getFlavorgroups().add(convert(mwFlavorgroup));
                 }
@@ -60,16 +65,10 @@ public class FlavorgroupRepository {
                     }
                 }
             } else if (criteria.hostId != null) {
-                MwLinkFlavorgroupHostJpaController mwLinkFlavorgroupHostJpaController = My.jpa().mwLinkFlavorgroupHost();
-                List<MwLinkFlavorgroupHost> mwLinkFlavorgroupHostList
-                        = mwLinkFlavorgroupHostJpaController.findMwLinkFlavorgroupHostByHostId(criteria.hostId.toString());
-                if (mwLinkFlavorgroupHostList != null && !mwLinkFlavorgroupHostList.isEmpty()) {
-                    for (MwLinkFlavorgroupHost mwLinkFlavorgroupHost : mwLinkFlavorgroupHostList) {
-                        MwFlavorgroup mwFlavorgroup
-                                = mwFlavorgroupJpaController.findMwFlavorgroup(mwLinkFlavorgroupHost.getFlavorgroupId());
-                        if (mwFlavorgroup != null) {
-                            flavorgroupCollection.getFlavorgroups().add(convert(mwFlavorgroup));
-                        }
+                for (String flavorgroupId : findFlavorgroupIdsByHostId(criteria.hostId.toString())) {
+                    MwFlavorgroup mwFlavorgroup = findFlavorgroup(mwFlavorgroupJpaController, flavorgroupId);
+                    if (mwFlavorgroup != null) {
+                        flavorgroupCollection.getFlavorgroups().add(convert(mwFlavorgroup));
                     }
                 }
             } else {
@@ -92,19 +91,19 @@ public class FlavorgroupRepository {
         try {
             MwFlavorgroupJpaController mwFlavorgroupJpaController = My.jpa().mwFlavorgroup();
             if (locator.pathId != null) {
-                MwFlavorgroup mwFlavorgroup = mwFlavorgroupJpaController.findMwFlavorgroup(locator.pathId.toString());
+                MwFlavorgroup mwFlavorgroup = findFlavorgroup(mwFlavorgroupJpaController, locator.pathId.toString());
                 if (mwFlavorgroup != null) {
                     Flavorgroup flavorgroup = convert(mwFlavorgroup);
                     return flavorgroup;
                 }
             } else if (locator.id != null) {
-                MwFlavorgroup mwFlavorgroup = mwFlavorgroupJpaController.findMwFlavorgroup(locator.id.toString());
+                MwFlavorgroup mwFlavorgroup = findFlavorgroup(mwFlavorgroupJpaController, locator.id.toString());
                 if (mwFlavorgroup != null) {
                     Flavorgroup flavorgroup = convert(mwFlavorgroup);
                     return flavorgroup;
                 }
             } else if (locator.name != null && !locator.name.isEmpty()) {
-                MwFlavorgroup mwFlavorgroup = mwFlavorgroupJpaController.findMwFlavorgroupByName(locator.name);
+                MwFlavorgroup mwFlavorgroup = findFlavorgroupByName(mwFlavorgroupJpaController, locator.name);
                 if (mwFlavorgroup != null) {
                     Flavorgroup flavorgroup = convert(mwFlavorgroup);
                     return flavorgroup;
@@ -141,6 +140,8 @@ public class FlavorgroupRepository {
             if (item.getFlavorMatchPolicyCollection() != null)
                 mwFlavorgroup.setFlavorTypeMatchPolicy(item.getFlavorMatchPolicyCollection());
             mwFlavorgroupJpaController.edit(mwFlavorgroup);
+            FlavorTypeCache.invalidate();
+            ReferenceDataCache.invalidateFlavorgroups();
 
             log.debug("Flavorgroup:Store - Updated the Flavorgroup with id {} successfully.", item.getId().toString());
             return retrieve(locator);
@@ -180,6 +181,7 @@ public class FlavorgroupRepository {
             // create the flavor
             MwFlavorgroup newFlavorgroup = new MwFlavorgroup(flavorgroupId.toString(), item.getName(), item.getFlavorMatchPolicyCollection());
             mwFlavorgroupJpaController.create(newFlavorgroup);
+            FlavorTypeCache.invalidate();
             log.debug("flavorgroup:create - Created the flavorgroup {} successfully", flavorgroupId.toString());
 
             // Return back the flavor id created.
@@ -209,6 +211,9 @@ public class FlavorgroupRepository {
                 MwFlavorgroupJpaController mwFlavorgroupJpa = My.jpa().mwFlavorgroup();
 
                 mwFlavorgroupJpa.destroy(obj.getId().toString());
+                FlavorTypeCache.invalidate();
+                ReferenceDataCache.invalidateFlavorgroups();
+                ReferenceDataCache.invalidateFlavorgroupHostLinks();
             }
         } catch (IOException ex) {
             log.error("flavorgroup:delete - error during the deletion of the flavorgroup in the DB", ex);
@@ -254,6 +259,9 @@ public class FlavorgroupRepository {
                     }
                 }
             }
+            FlavorTypeCache.invalidate();
+            ReferenceDataCache.invalidateFlavorgroups();
+            ReferenceDataCache.invalidateFlavorgroupHostLinks();
         } catch (RepositoryException re) {
             throw re;
         } catch (Exception ex) {
@@ -262,6 +270,49 @@ public class FlavorgroupRepository {
         }
     }
 
+    private MwFlavorgroup findFlavorgroup(MwFlavorgroupJpaController jpaController, String id) {
+        String key = "id:" + id;
+        MwFlavorgroup cached = ReferenceDataCache.flavorgroups.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = ReferenceDataCache.flavorgroups.getGeneration();
+        MwFlavorgroup mwFlavorgroup = jpaController.findMwFlavorgroup(id);
+        ReferenceDataCache.flavorgroups.put(key, mwFlavorgroup, generation);
+        return mwFlavorgroup;
+    }
+
+    private MwFlavorgroup findFlavorgroupByName(MwFlavorgroupJpaController jpaController, String name) {
+        String key = "name:" + name;
+        MwFlavorgroup cached = ReferenceDataCache.flavorgroups.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = ReferenceDataCache.flavorgroups.getGeneration();
+        MwFlavorgroup mwFlavorgroup = jpaController.findMwFlavorgroupByName(name);
+        ReferenceDataCache.flavorgroups.put(key, mwFlavorgroup, generation);
+        return mwFlavorgroup;
+    }
+
+    private List<String> findFlavorgroupIdsByHostId(String hostId) throws IOException {
+        List<String> cached = ReferenceDataCache.hostFlavorgroupIds.get(hostId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = ReferenceDataCache.hostFlavorgroupIds.getGeneration();
+        List<String> flavorgroupIds = new ArrayList<>();
+        List<MwLinkFlavorgroupHost> mwLinkFlavorgroupHostList
+                = My.jpa().mwLinkFlavorgroupHost().findMwLinkFlavorgroupHostByHostId(hostId);
+        if (mwLinkFlavorgroupHostList != null) {
+            for (MwLinkFlavorgroupHost mwLinkFlavorgroupHost : mwLinkFlavorgroupHostList) {
+                flavorgroupIds.add(mwLinkFlavorgroupHost.getFlavorgroupId());
+            }
+        }
+        flavorgroupIds = Collections.unmodifiableList(flavorgroupIds);
+        ReferenceDataCache.hostFlavorgroupIds.put(hostId, flavorgroupIds, generation);
+        return flavorgroupIds;
+    }
+
     private Flavorgroup convert(MwFlavorgroup mwFlavorgroup) {
         Flavorgroup flavorgroup = new Flavorgroup();
         flavorgroup.setId(UUID.valueOf(mwFlavorgroup.getId()));
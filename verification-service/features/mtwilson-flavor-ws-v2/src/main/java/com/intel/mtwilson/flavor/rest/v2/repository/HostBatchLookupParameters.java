@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
+import com.intel.mtwilson.repository.RepositoryInvalidInputException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Batch lookup criteria converted to the values expected by the JPA
+ * controllers, with duplicates and blank host names removed.
+ *
+ * The number of hosts in one lookup is limited by
+ * mtwilson.batch.lookup.max.hosts, which keeps the query well below the
+ * number of parameters a statement can have.
+ */
+class HostBatchLookupParameters {
+
+    private static final int DEFAULT_BATCH_LOOKUP_MAX_HOSTS = 10000;
+
+    final List<String> hostIds;
+    final List<String> hostNames;
+    final List<String> hardwareUuids;
+
+    HostBatchLookupParameters(HostBatchLookupCriteria criteria) throws IOException {
+        if (criteria == null) {
+            throw new RepositoryInvalidInputException("Host IDs, names or hardware UUIDs must be specified");
+        }
+        hostIds = toStrings(criteria.getHostIds());
+        hostNames = new ArrayList<>();
+        if (criteria.getHostNames() != null) {
+            LinkedHashSet<String> names = new LinkedHashSet<>();
+            for (String hostName : criteria.getHostNames()) {
+                if (hostName != null && !hostName.trim().isEmpty()) {
+                    names.add(hostName);
+                }
+            }
+            hostNames.addAll(names);
+        }
+        hardwareUuids = toStrings(criteria.getHardwareUuids());
+
+        int size = hostIds.size() + hostNames.size() + hardwareUuids.size();
+        if (size == 0) {
+            throw new RepositoryInvalidInputException("Host IDs, names or hardware UUIDs must be specified");
+        }
+        int maxHosts = My.configuration().getConfiguration().getInt("mtwilson.batch.lookup.max.hosts", DEFAULT_BATCH_LOOKUP_MAX_HOSTS);
+        if (size > maxHosts) {
+            throw new RepositoryInvalidInputException(String.format("At most %d hosts can be looked up at once", maxHosts));
+        }
+    }
+
+    private static List<String> toStrings(List<UUID> uuids) {
+        LinkedHashSet<String> strings = new LinkedHashSet<>();
+        if (uuids != null) {
+            for (UUID uuid : uuids) {
+                if (uuid != null) {
+                    strings.add(uuid.toString());
+                }
+            }
+        }
+        return new ArrayList<>(strings);
+    }
+}
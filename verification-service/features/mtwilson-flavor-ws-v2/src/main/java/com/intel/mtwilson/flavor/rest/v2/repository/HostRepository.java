@@ -10,7 +10,6 @@ import com.intel.mountwilson.as.common.ASException;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.controller.MwHostJpaController;
-import com.intel.mtwilson.flavor.controller.MwHostStatusJpaController;
 import com.intel.mtwilson.flavor.data.MwHost;
 import com.intel.mtwilson.flavor.data.MwHostCredential;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
@@ -45,56 +44,46 @@ public class HostRepository {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostRepository.class);
 
+    /**
+     * Searches for hosts. Every search returns at most criteria.limit hosts
+     * ordered by ID, and a continuation token when the page is full;
+     * callers that need every matching host pass the token back in the
+     * same criteria until none is returned.
+     */
     public HostCollection search(HostFilterCriteria criteria) {
         log.debug("host:search - got request to search for hosts");
         HostCollection hostCollection = new HostCollection();
+        String afterId = SearchPages.getAfterId("hosts", criteria.continuationToken);
         try {
             MwHostJpaController mwHostJpaController = My.jpa().mwHost();
             if (criteria.filter == false) {
-                List<MwHost> mwHostList = mwHostJpaController.findMwHostEntities();
+                List<MwHost> mwHostList = mwHostJpaController.findMwHostEntitiesAfter(afterId, criteria.limit);
                 if (mwHostList != null && !mwHostList.isEmpty()) {
                     for (MwHost mwHost : mwHostList) {
                         hostCollection.getHosts().add(convert(mwHost));
                     }
+                    hostCollection.setContinuationToken(SearchPages.getContinuationToken("hosts",
+                            mwHostList.size(), criteria.limit, mwHostList.get(mwHostList.size() - 1).getId()));
                 }
-            } else if (criteria.id != null) {
-                MwHost mwHost = mwHostJpaController.findMwHost(criteria.id.toString());
-                if (mwHost != null) {
-                    hostCollection.getHosts().add(convert(mwHost));
-                }
-            } else if (criteria.tlsPolicyId != null) {
-                MwHost mwHost = mwHostJpaController.findMwHostByTlsPolicyId(criteria.tlsPolicyId);
-                if (mwHost != null) {
-                    hostCollection.getHosts().add(convert(mwHost));
-                }
-            } else if (criteria.nameEqualTo != null && !criteria.nameEqualTo.isEmpty()) {
-                // re-arranged slightly to look more like the nameContains case below
-                MwHost mwHost = mwHostJpaController.findMwHostByName(criteria.nameEqualTo);
-                if (mwHost != null) {
-                    hostCollection.getHosts().add(convert(mwHost));
-                }
-            } else if (criteria.nameContains != null && !criteria.nameContains.isEmpty()) {
-                List<MwHost> mwHostList = mwHostJpaController.findMwHostByNameLike(criteria.nameContains);
+            } else if (hasHostFilter(criteria)) {
+                // all specified criteria must match, in one query whatever the combination
+                List<MwHost> mwHostList = mwHostJpaController.findMwHosts(
+                        criteria.id == null ? null : criteria.id.toString(),
+                        criteria.nameEqualTo,
+                        criteria.nameContains,
+                        criteria.hostHardwareId == null ? null : criteria.hostHardwareId.toString(),
+                        criteria.tlsPolicyId,
+                        criteria.key,
+                        criteria.value,
+                        criteria.flavorgroupName,
+                        afterId,
+                        criteria.limit);
                 if (mwHostList != null && !mwHostList.isEmpty()) {
                     for (MwHost mwHost : mwHostList) {
                         hostCollection.getHosts().add(convert(mwHost));
                     }
-                }
-            } else if (criteria.hostHardwareId != null) {
-                MwHost mwHost = mwHostJpaController.findMwHostByHardwareUuid(criteria.hostHardwareId.toString());
-                if (mwHost != null) {
-                    hostCollection.getHosts().add(convert(mwHost));
-                }
-            } else if (criteria.key != null && !criteria.key.isEmpty() && criteria.value != null && !criteria.value.isEmpty()) {
-                MwHostStatusJpaController hostStatuspaController = My.jpa().mwHostStatus();
-                List<String> mwHostEntries = hostStatuspaController.findMwHostListByKeyValue(criteria.key, criteria.value);
-                if (mwHostEntries != null && !mwHostEntries.isEmpty()) {
-                    for (String hostId : mwHostEntries) {
-                        MwHost mwHost = mwHostJpaController.findMwHost(hostId);
-                        if (mwHost != null) {
-                            hostCollection.getHosts().add(convert(mwHost));
-                        }
-                    }
+                    hostCollection.setContinuationToken(SearchPages.getContinuationToken("hosts",
+                            mwHostList.size(), criteria.limit, mwHostList.get(mwHostList.size() - 1).getId()));
                 }
             } else {
                 // Invalid search criteria specified. Just log the error and return back empty collection.
@@ -108,6 +97,16 @@ public class HostRepository {
         return hostCollection;
     }
 
+    private boolean hasHostFilter(HostFilterCriteria criteria) {
+        return criteria.id != null
+                || (criteria.tlsPolicyId != null && !criteria.tlsPolicyId.isEmpty())
+                || (criteria.nameEqualTo != null && !criteria.nameEqualTo.isEmpty())
+                || (criteria.nameContains != null && !criteria.nameContains.isEmpty())
+                || criteria.hostHardwareId != null
+                || (criteria.key != null && !criteria.key.isEmpty() && criteria.value != null && !criteria.value.isEmpty())
+                || (criteria.flavorgroupName != null && !criteria.flavorgroupName.isEmpty());
+    }
+
     public Host retrieve(HostLocator locator) {
         log.debug("host:retrieve - got request to retrieve host");
         if (locator == null || ( locator.id == null && locator.pathId == null && locator.hardwareUuid == null
@@ -203,6 +202,7 @@ public class HostRepository {
                     mwHostCredential.setCredential(String.format("u=%s;p=%s", connectionString.getUserName(), connectionString.getPassword()));
                     mwHostCredential.setCreatedTs(Calendar.getInstance().getTime());
                     My.jpa().mwHostCredential().edit(mwHostCredential);
+                    ReferenceDataCache.invalidateHostCredentials();
                 }
             
             }
@@ -288,6 +288,7 @@ public class HostRepository {
                 }
                 My.jpa().mwHostCredential().create(mwHostCredential);
             }
+            ReferenceDataCache.invalidateHostCredentials();
              log.info("Created host with ID {} ", item.getId().toString());
             return item;
 
@@ -300,6 +301,25 @@ public class HostRepository {
         }
     }
 
+    /**
+     * Returns the credential used to connect to a host, for example
+     * "u=user;p=password", or null if the host has no credential.
+     */
+    public String retrieveCredential(UUID hostId) throws IOException {
+        String key = hostId.toString();
+        String cached = ReferenceDataCache.hostCredentials.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = ReferenceDataCache.hostCredentials.getGeneration();
+        MwHostCredential mwHostCredential = My.jpa().mwHostCredential().findByHostId(key);
+        if (mwHostCredential == null) {
+            return null;
+        }
+        ReferenceDataCache.hostCredentials.put(key, mwHostCredential.getCredential(), generation);
+        return mwHostCredential.getCredential();
+    }
+
     public void delete(HostLocator locator) {
 
     }
@@ -309,6 +329,8 @@ public class HostRepository {
         try {
             MwHostJpaController hostJpa = My.jpa().mwHost();
             hostJpa.destroy(hostId);
+            ReferenceDataCache.invalidateFlavorgroupHostLinks();
+            ReferenceDataCache.invalidateHostCredentials();
             log.debug("Successfully deleted the host: {}", hostId);
         } catch (NonexistentEntityException ex) {
             log.error("Bad Input. Host ID is incorrect. {}", ex);
@@ -326,6 +348,8 @@ public class HostRepository {
             MwHost mwHost = hostJpa.findMwHostByName(hostName);
             if (mwHost != null) {
                 hostJpa.destroy(mwHost.getId());
+                ReferenceDataCache.invalidateFlavorgroupHostLinks();
+                ReferenceDataCache.invalidateHostCredentials();
                 log.debug("Successfully deleted the host: {}", hostName);
             }
         } catch (NonexistentEntityException ex) {
@@ -8,9 +8,11 @@ package com.intel.mtwilson.flavor.rest.v2.repository;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.dcsg.cpg.iso8601.Iso8601Date;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.MyJpa;
 import com.intel.mtwilson.flavor.controller.MwHostStatusJpaController;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.data.MwHostStatus;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatus;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusFilterCriteria;
@@ -53,8 +55,6 @@ public class HostStatusRepository {
                 return objCollection; //Empty
             }
            
-            MwHostStatusJpaController hostStatusJpaController = My.jpa().mwHostStatus();
-
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
             Calendar cal = Calendar.getInstance();
 
@@ -114,27 +114,52 @@ public class HostStatusRepository {
                 log.debug("Host status between {} to {} will be retrieved", dateFormat.format(fromDate), dateFormat.format(toDate));
             }
 
-            if (fromDate == null && toDate == null && latestPerHost) {
-                hostStatusList = hostStatusJpaController.findLatestMwHostStatus(
-                        hostStatusId,
-                        hostId,
-                        hostName,
-                        hostHardwareUuid,
-                        aikCertificate,
-                        hostStatus, 
-                        criteria.limit);
-            } else {
-                hostStatusList = hostStatusJpaController.findMwHostStatus(
-                        hostStatusId,
-                        hostId,
-                        hostName,
-                        hostHardwareUuid,
-                        aikCertificate,
-                        hostStatus, 
-                        fromDate,
-                        toDate,
-                        latestPerHost,
-                        criteria.limit);
+            final boolean latest = fromDate == null && toDate == null && latestPerHost;
+            if (!latest && criteria.continuationToken != null && !criteria.continuationToken.isEmpty()) {
+                // the host status history is bounded by the date range and limit instead
+                throw new RepositoryInvalidInputException("Continuation token is only supported for the latest host status");
+            }
+            final String queryHostStatusId = hostStatusId;
+            final String queryHostId = hostId;
+            final String queryHostName = hostName;
+            final String queryHostHardwareUuid = hostHardwareUuid;
+            final String queryAikCertificate = aikCertificate;
+            final String queryHostStatus = hostStatus;
+            final Date queryFromDate = fromDate;
+            final Date queryToDate = toDate;
+            final boolean queryLatestPerHost = latestPerHost;
+            final String afterId = latest ? SearchPages.getAfterId("hoststatus", criteria.continuationToken) : null;
+            final int limit = criteria.limit;
+            hostStatusList = My.jpa().queryReplica(new MyJpa.ReplicaQuery<List<MwHostStatus>>() {
+                @Override
+                public List<MwHostStatus> run(MyJpa jpa) throws IOException {
+                    if (latest) {
+                        return jpa.mwHostStatus().findLatestMwHostStatus(
+                                queryHostStatusId,
+                                queryHostId,
+                                queryHostName,
+                                queryHostHardwareUuid,
+                                queryAikCertificate,
+                                queryHostStatus,
+                                afterId,
+                                limit);
+                    }
+                    return jpa.mwHostStatus().findMwHostStatus(
+                            queryHostStatusId,
+                            queryHostId,
+                            queryHostName,
+                            queryHostHardwareUuid,
+                            queryAikCertificate,
+                            queryHostStatus,
+                            queryFromDate,
+                            queryToDate,
+                            queryLatestPerHost,
+                            limit);
+                }
+            });
+            if (latest && hostStatusList != null && !hostStatusList.isEmpty()) {
+                objCollection.setContinuationToken(SearchPages.getContinuationToken("hoststatus",
+                        hostStatusList.size(), criteria.limit, hostStatusList.get(hostStatusList.size() - 1).getId()));
             }
            
             // Now that we have the final list, let us return it back
@@ -151,6 +176,37 @@ public class HostStatusRepository {
         return objCollection;
     }
 
+    /**
+     * Finds the current status of each of the given hosts with one query,
+     * instead of one search per host. Hosts that do not exist or have no
+     * status yet are left out of the result.
+     * @param criteria the IDs, names and hardware UUIDs of the hosts
+     * @return the host status ordered by host status ID
+     */
+    public HostStatusCollection searchByHosts(HostBatchLookupCriteria criteria) {
+        log.debug("Got request to look up the status of a batch of hosts");
+        HostStatusCollection objCollection = new HostStatusCollection();
+        try {
+            final HostBatchLookupParameters parameters = new HostBatchLookupParameters(criteria);
+            List<MwHostStatus> hostStatusList = My.jpa().queryReplica(new MyJpa.ReplicaQuery<List<MwHostStatus>>() {
+                @Override
+                public List<MwHostStatus> run(MyJpa jpa) throws IOException {
+                    return jpa.mwHostStatus().findLatestMwHostStatusByHosts(
+                            parameters.hostIds,
+                            parameters.hostNames,
+                            parameters.hardwareUuids);
+                }
+            });
+            for (MwHostStatus objHostStatus : hostStatusList) {
+                objCollection.getHostStatus().add(convert(objHostStatus));
+            }
+        } catch (IOException ex) {
+            log.error("Error during batch lookup of host status", ex);
+            throw new RepositorySearchException(ex);
+        }
+        return objCollection;
+    }
+
     public HostStatus retrieve(HostStatusLocator locator){
         MwHostStatus mwHostStatus = retrieveMwHostStatus(locator);
         if(mwHostStatus == null)
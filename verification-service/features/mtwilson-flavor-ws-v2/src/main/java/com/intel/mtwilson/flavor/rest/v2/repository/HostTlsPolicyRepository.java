@@ -5,6 +5,7 @@
 
 package com.intel.mtwilson.flavor.rest.v2.repository;
 
+import com.intel.dcsg.cpg.tls.policy.TlsPolicy;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.jaxrs2.server.resource.DocumentRepository;
 import com.intel.mtwilson.repository.RepositoryCreateConflictException;
@@ -26,6 +27,7 @@ import com.intel.mtwilson.tls.policy.jdbi.TlsPolicyRecord;
 import com.intel.mtwilson.tls.policy.codec.impl.JsonTlsPolicyReader;
 import com.intel.mtwilson.tls.policy.codec.impl.JsonTlsPolicyWriter;
 import com.intel.mtwilson.tls.policy.exception.TlsPolicyAllowedException;
+import com.intel.mtwilson.tls.policy.factory.TlsPolicyFactoryUtil;
 import com.intel.mtwilson.tls.policy.filter.HostTlsPolicyFilter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -40,6 +42,7 @@ import java.util.List;
 public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy, HostTlsPolicyCollection, HostTlsPolicyFilterCriteria, HostTlsPolicyLocator> {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostTlsPolicyRepository.class);
+    private static final String TRUST_FIRST_CERTIFICATE = "TRUST_FIRST_CERTIFICATE";
 
     @Override
     public HostTlsPolicyCollection search(HostTlsPolicyFilterCriteria criteria) {
@@ -147,6 +150,51 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
         return null;
     }
 
+    /**
+     * Retrieves a TLS policy by ID or name together with the TlsPolicy built
+     * from its descriptor. Both are cached, so host connections do not read
+     * and decode the policy and build its trust managers every time.
+     * @param locator the ID or name of the TLS policy
+     * @return the TLS policy, or null if it does not exist
+     */
+    public ResolvedTlsPolicy resolve(HostTlsPolicyLocator locator) {
+        String key;
+        if (locator.id != null) {
+            key = "id:" + locator.id.toString();
+        } else if (locator.name != null && !locator.name.isEmpty()) {
+            key = "name:" + locator.name;
+        } else {
+            return null;
+        }
+        ResolvedTlsPolicy resolvedTlsPolicy = ReferenceDataCache.tlsPolicies.get(key);
+        if (resolvedTlsPolicy != null) {
+            return resolvedTlsPolicy;
+        }
+        long generation = ReferenceDataCache.tlsPolicies.getGeneration();
+        HostTlsPolicy hostTlsPolicy = retrieve(locator);
+        if (hostTlsPolicy == null) {
+            return null;
+        }
+        resolvedTlsPolicy = new ResolvedTlsPolicy(hostTlsPolicy, createSharedTlsPolicy(hostTlsPolicy.getDescriptor()));
+        ReferenceDataCache.tlsPolicies.put("id:" + hostTlsPolicy.getId().toString(), resolvedTlsPolicy, generation);
+        ReferenceDataCache.tlsPolicies.put("name:" + hostTlsPolicy.getName(), resolvedTlsPolicy, generation);
+        return resolvedTlsPolicy;
+    }
+
+    private TlsPolicy createSharedTlsPolicy(TlsPolicyDescriptor descriptor) {
+        // trust first certificate policies learn the host key on first use, so each connection needs its own
+        if (descriptor == null || descriptor.getPolicyType() == null || descriptor.getPolicyType().equalsIgnoreCase(TRUST_FIRST_CERTIFICATE)) {
+            return null;
+        }
+        try {
+            return TlsPolicyFactoryUtil.createTlsPolicy(descriptor);
+        } catch (RuntimeException e) {
+            // left to the caller, which reports the error when it builds the policy itself
+            log.debug("HostTlsPolicy:Resolve - Cannot create TLS policy from descriptor", e);
+            return null;
+        }
+    }
+
     @Override
     public void store(HostTlsPolicy item) {
         log.debug("HostTlsPolicy:Store - Got request to update HostTlsPolicy with id {}.", item.getId().toString());
@@ -184,6 +232,7 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
                 record.setContent(writer.write(item.getDescriptor()));
             }
             dao.updateTlsPolicy(record);
+            ReferenceDataCache.invalidateTlsPolicies();
         } catch (IOException ex) {
             log.error("HostTlsPolicy:Store - Error during HostTlsPolicy update.", ex);
             throw new RepositoryStoreException(ex, locator);
@@ -218,6 +267,7 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
 
             TlsPolicyRecord record = convert(item);
             dao.insertTlsPolicy(record);
+            ReferenceDataCache.invalidateTlsPolicies();
         } catch (IOException ex) {
             log.error("HostTlsPolicy:Create - Error during HostTlsPolicy creation.", ex);
             throw new RepositoryCreateException(ex, locator);
@@ -237,6 +287,7 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
 
         try (TlsPolicyDAO dao = TlsPolicyJdbiFactory.tlsPolicyDAO()) {
             dao.deleteTlsPolicyById(locator.id);
+            ReferenceDataCache.invalidateTlsPolicies();
         } catch (IOException ex) {
             log.error("HostTlsPolicy:Delete - Error during HostTlsPolicy deletion.", ex);
             throw new RepositoryDeleteException(ex, locator);
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.mtwilson.ExpiringCache;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.flavor.controller.UnitOfWork;
+import com.intel.mtwilson.flavor.data.MwFlavorgroup;
+import java.util.List;
+
+/**
+ * Caches the reference data read for every host verification and host
+ * connection: flavorgroups, the flavorgroups linked to each host, host
+ * credentials and TLS policies. These rarely change, so each table's entries are discarded
+ * together whenever the table changes.
+ *
+ * The repositories that change these tables invalidate the cache directly.
+ * Changes made by other nodes, or by database cascades, are picked up
+ * through the {@code mtwilson_reference_data} notification channel when
+ * {@code mtwilson.reference.cache.notify.enabled} is true, see
+ * {@link ReferenceDataListener}. Entries also expire after
+ * {@code mtwilson.reference.cache.expiry.seconds}.
+ *
+ * Cached entities are shared between callers and must not be modified.
+ */
+public class ReferenceDataCache {
+    private static final long DEFAULT_REFERENCE_CACHE_EXPIRY_SECONDS = 300;
+    static final String FLAVORGROUP_TABLE = "mw_flavorgroup";
+    static final String FLAVORGROUP_HOST_LINK_TABLE = "mw_link_flavorgroup_host";
+    static final String HOST_CREDENTIAL_TABLE = "mw_host_credential";
+    static final String TLS_POLICY_TABLE = "mw_tls_policy";
+    // tables of the flavor type presence held by FlavorTypeCache
+    static final String FLAVOR_TABLE = "mw_flavor";
+    static final String FLAVOR_FLAVORGROUP_LINK_TABLE = "mw_link_flavor_flavorgroup";
+
+    // flavorgroups keyed by both "id:<id>" and "name:<name>"
+    static final Region<MwFlavorgroup> flavorgroups = new Region<>(FLAVORGROUP_TABLE);
+    // IDs of the flavorgroups linked to each host, keyed by host ID
+    static final Region<List<String>> hostFlavorgroupIds = new Region<>(FLAVORGROUP_HOST_LINK_TABLE);
+    // host credentials keyed by host ID
+    static final Region<String> hostCredentials = new Region<>(HOST_CREDENTIAL_TABLE);
+    // TLS policies with their built TlsPolicy keyed by both "id:<id>" and "name:<name>"
+    static final Region<ResolvedTlsPolicy> tlsPolicies = new Region<>(TLS_POLICY_TABLE);
+
+    private ReferenceDataCache() {
+    }
+
+    public static void invalidateFlavorgroups() {
+        flavorgroups.invalidate();
+    }
+
+    public static void invalidateFlavorgroupHostLinks() {
+        hostFlavorgroupIds.invalidate();
+    }
+
+    public static void invalidateHostCredentials() {
+        hostCredentials.invalidate();
+    }
+
+    public static void invalidateTlsPolicies() {
+        tlsPolicies.invalidate();
+    }
+
+    /**
+     * Discards the cached entries of a table, as named in a notification,
+     * including the flavor type presence of {@link FlavorTypeCache} for the
+     * flavor tables. Unknown table names discard everything.
+     */
+    static void invalidate(String table) {
+        if (FLAVORGROUP_TABLE.equals(table)) {
+            invalidateFlavorgroups();
+        } else if (FLAVORGROUP_HOST_LINK_TABLE.equals(table)) {
+            invalidateFlavorgroupHostLinks();
+        } else if (HOST_CREDENTIAL_TABLE.equals(table)) {
+            invalidateHostCredentials();
+        } else if (TLS_POLICY_TABLE.equals(table)) {
+            invalidateTlsPolicies();
+        } else if (FLAVOR_TABLE.equals(table) || FLAVOR_FLAVORGROUP_LINK_TABLE.equals(table)) {
+            FlavorTypeCache.invalidate();
+        } else {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Discards all cached reference data and flavor type presence.
+     */
+    public static void invalidateAll() {
+        invalidateFlavorgroups();
+        invalidateFlavorgroupHostLinks();
+        invalidateHostCredentials();
+        invalidateTlsPolicies();
+        FlavorTypeCache.invalidate();
+    }
+
+    static class Region<V> {
+        private final ExpiringCache<String, V> entries;
+
+        private Region(String table) {
+            this.entries = new ExpiringCache<>("Reference data cache of " + table);
+        }
+
+        long getGeneration() {
+            return entries.getGeneration();
+        }
+
+        V get(String key) {
+            ReferenceDataListener.start();
+            return entries.get(key);
+        }
+
+        /**
+         * Caches a value loaded from the database. Values read inside a unit
+         * of work may not be committed yet and are not cached.
+         */
+        void put(String key, V value, long loadedGeneration) {
+            if (UnitOfWork.isActive()) {
+                return;
+            }
+            long expirySeconds = My.configuration().getConfiguration().getLong("mtwilson.reference.cache.expiry.seconds", DEFAULT_REFERENCE_CACHE_EXPIRY_SECONDS);
+            entries.put(key, value, loadedGeneration, expirySeconds);
+        }
+
+        /**
+         * Discards the entries of the table. A change made in a unit of work
+         * is not visible to other threads until it commits, so the entries
+         * are discarded again after the commit in case one of them loaded
+         * the old data in between.
+         */
+        void invalidate() {
+            entries.invalidateAll();
+            UnitOfWork.afterCommit(new Runnable() {
+                @Override
+                public void run() {
+                    entries.invalidateAll();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.mtwilson.My;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Listens on the {@code mtwilson_reference_data} channel, which the database
+ * notifies with the table name whenever a cached reference table changes,
+ * and invalidates the matching entries of {@link ReferenceDataCache} and
+ * {@link FlavorTypeCache}. This keeps the caches of all nodes sharing the
+ * database current.
+ *
+ * The listener keeps one dedicated connection and checks it every
+ * {@code mtwilson.reference.cache.notify.poll.ms}. Notifications sent while
+ * it is disconnected are lost, so the whole cache is invalidated every time
+ * it connects.
+ */
+class ReferenceDataListener implements Runnable {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReferenceDataListener.class);
+    private static final String CHANNEL = "mtwilson_reference_data";
+    private static final long DEFAULT_POLL_MILLIS = 1000;
+    private static final long RECONNECT_MILLIS = 30000;
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+
+    private ReferenceDataListener() {
+    }
+
+    /**
+     * Starts the listener thread the first time it is called, if
+     * notifications are enabled.
+     */
+    static void start() {
+        if (started.get() || !started.compareAndSet(false, true)) {
+            return;
+        }
+        if (!My.configuration().getConfiguration().getBoolean("mtwilson.reference.cache.notify.enabled", true)) {
+            log.debug("Reference data change notifications are disabled");
+            return;
+        }
+        Thread thread = new Thread(new ReferenceDataListener(), "reference-data-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long pollMillis = My.configuration().getConfiguration().getLong("mtwilson.reference.cache.notify.poll.ms", DEFAULT_POLL_MILLIS);
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection connection = My.jdbc().connection();
+                    Statement statement = connection.createStatement()) {
+                if (!(connection instanceof PGConnection)) {
+                    log.warn("Reference data change notifications require PostgreSQL, other nodes' changes are picked up when cache entries expire");
+                    return;
+                }
+                statement.execute("LISTEN " + CHANNEL);
+                ReferenceDataCache.invalidateAll();
+                log.debug("Listening for reference data changes");
+                while (!Thread.currentThread().isInterrupted()) {
+                    // the driver only reads notifications while it talks to the server
+                    statement.execute("SELECT 1");
+                    PGNotification[] notifications = ((PGConnection) connection).getNotifications();
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            log.debug("Reference data changed in {}", notification.getParameter());
+                            ReferenceDataCache.invalidate(notification.getParameter());
+                        }
+                    }
+                    Thread.sleep(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Lost the reference data change notification connection, reconnecting in {} ms: {}", RECONNECT_MILLIS, e.getMessage());
+                ReferenceDataCache.invalidateAll();
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -8,12 +8,14 @@ package com.intel.mtwilson.flavor.rest.v2.repository;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.dcsg.cpg.iso8601.Iso8601Date;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.MyJpa;
 import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
 import com.intel.mtwilson.flavor.controller.MwReportJpaController;
 import com.intel.mtwilson.flavor.data.MwReport;
 import com.intel.mtwilson.flavor.model.FlavorsTrustStatus;
 import com.intel.mtwilson.flavor.model.TrustInformation;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.Report;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportCollection;
@@ -44,27 +46,178 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
         ReportCollection objCollection = new ReportCollection();
         try {
             // If user specifies no criteria, an empty result will be returned to prevent an unintentional process intensive query. 
-            if (criteria.filter
-                    && criteria.id == null
-                    && (criteria.hostId == null || criteria.hostId.isEmpty())
-                    && (criteria.hostName == null || criteria.hostName.isEmpty())
-                    && (criteria.hostHardwareId == null || criteria.hostHardwareId.isEmpty())
-                    && (criteria.hostStatus == null || criteria.hostStatus.isEmpty())
-                    && (criteria.numberOfDays == 0)
-                    && (criteria.toDate == null || criteria.toDate.isEmpty())
-                    && (criteria.fromDate == null || criteria.fromDate.isEmpty())
-                    && (criteria.latestPerHost == null || criteria.latestPerHost.isEmpty())
-                    && (criteria.limit == 10000)) {
+            if (isUnfilteredSearch(criteria)) {
                 return objCollection; // Empty
             }
             
-            MwReportJpaController jpaController = My.jpa().mwReport();
+            final ReportSearchParameters parameters = new ReportSearchParameters(criteria);
+            final boolean latest = criteria.fromDate == null && criteria.toDate == null && parameters.latestPerHost;
+            if (!latest && criteria.continuationToken != null && !criteria.continuationToken.isEmpty()) {
+                // the report history is bounded by the date range and limit instead
+                throw new RepositoryInvalidInputException("Continuation token is only supported for the latest reports");
+            }
+            final String afterId = latest ? SearchPages.getAfterId("reports", criteria.continuationToken) : null;
+            final int limit = criteria.limit;
+
+            List<MwReport> reportList = My.jpa().queryReplica(new MyJpa.ReplicaQuery<List<MwReport>>() {
+                @Override
+                public List<MwReport> run(MyJpa jpa) throws IOException {
+                    if (latest) {
+                        return jpa.mwReport().findLatestMwReport(
+                                parameters.reportId,
+                                parameters.hostId,
+                                parameters.hostName,
+                                parameters.hostHardwareUuid,
+                                parameters.hostStatus,
+                                afterId,
+                                limit);
+                    }
+                    return jpa.mwReport().findMwReport(
+                            parameters.reportId,
+                            parameters.hostId,
+                            parameters.hostName,
+                            parameters.hostHardwareUuid,
+                            parameters.hostStatus,
+                            parameters.fromDate,
+                            parameters.toDate,
+                            parameters.latestPerHost,
+                            limit);
+                }
+            });
+            if (latest && reportList != null && !reportList.isEmpty()) {
+                objCollection.setContinuationToken(SearchPages.getContinuationToken("reports",
+                        reportList.size(), criteria.limit, reportList.get(reportList.size() - 1).getId()));
+            }
+
+            // Now that we have the final list, let us return it back.
+            if (reportList != null && !reportList.isEmpty()) {
+                for (MwReport objReport : reportList) {
+                    objCollection.getReports().add(convert(objReport));
+                }
+            }
+
+        } catch (IOException | ParseException ex) {
+            log.error("Error during search for reports", ex);
+            throw new RepositorySearchException(ex, criteria);
+        }
+        log.debug("Returning back {} of results", objCollection.getReports().size());
+        return objCollection;
+    }
+    
+    /**
+     * Finds the current report of each of the given hosts with one query,
+     * instead of one search per host. Hosts that do not exist or have no
+     * report yet are left out of the result.
+     * @param criteria the IDs, names and hardware UUIDs of the hosts
+     * @return the reports ordered by report ID
+     */
+    public ReportCollection searchByHosts(HostBatchLookupCriteria criteria) {
+        log.debug("Got request to look up the reports of a batch of hosts");
+        ReportCollection objCollection = new ReportCollection();
+        try {
+            final HostBatchLookupParameters parameters = new HostBatchLookupParameters(criteria);
+            List<MwReport> reportList = My.jpa().queryReplica(new MyJpa.ReplicaQuery<List<MwReport>>() {
+                @Override
+                public List<MwReport> run(MyJpa jpa) throws IOException {
+                    return jpa.mwReport().findLatestMwReportByHosts(
+                            parameters.hostIds,
+                            parameters.hostNames,
+                            parameters.hardwareUuids);
+                }
+            });
+            for (MwReport objReport : reportList) {
+                objCollection.getReports().add(convert(objReport));
+            }
+        } catch (IOException ex) {
+            log.error("Error during batch lookup of reports", ex);
+            throw new RepositorySearchException(ex);
+        }
+        log.debug("Returning back {} of results", objCollection.getReports().size());
+        return objCollection;
+    }
+    
+    /**
+     * Searches for reports like {@link #search(ReportFilterCriteria)} but
+     * opens a cursor over only the SAML assertions of the reports, read from
+     * the database as they are iterated, instead of building the whole
+     * result in memory.
+     * @param criteria the report search criteria
+     * @param fetchSize the number of rows fetched from the database at a time
+     * @return the SAML assertions, which must be closed, or null for an
+     * unfiltered search
+     */
+    public MwReportJpaController.SamlCursor searchSaml(ReportFilterCriteria criteria, final int fetchSize) {
+        log.debug("Got request to stream SAML reports");
+        try {
+            if (isUnfilteredSearch(criteria)) {
+                return null;
+            }
             
+            final ReportSearchParameters parameters = new ReportSearchParameters(criteria);
+            final boolean latest = criteria.fromDate == null && criteria.toDate == null && parameters.latestPerHost;
+            final int limit = criteria.limit;
+            return My.jpa().queryReplica(new MyJpa.ReplicaQuery<MwReportJpaController.SamlCursor>() {
+                @Override
+                public MwReportJpaController.SamlCursor run(MyJpa jpa) throws IOException {
+                    if (latest) {
+                        return jpa.mwReport().openLatestMwReportSaml(
+                                parameters.reportId,
+                                parameters.hostId,
+                                parameters.hostName,
+                                parameters.hostHardwareUuid,
+                                parameters.hostStatus,
+                                limit,
+                                fetchSize);
+                    }
+                    return jpa.mwReport().openMwReportSaml(
+                            parameters.hostId,
+                            parameters.hostName,
+                            parameters.hostHardwareUuid,
+                            parameters.hostStatus,
+                            parameters.fromDate,
+                            parameters.toDate,
+                            parameters.latestPerHost,
+                            limit,
+                            fetchSize);
+                }
+            });
+        } catch (IOException | ParseException ex) {
+            log.error("Error during search for SAML reports", ex);
+            throw new RepositorySearchException(ex, criteria);
+        }
+    }
+    
+    private boolean isUnfilteredSearch(ReportFilterCriteria criteria) {
+        return criteria.filter
+                && criteria.id == null
+                && (criteria.hostId == null || criteria.hostId.isEmpty())
+                && (criteria.hostName == null || criteria.hostName.isEmpty())
+                && (criteria.hostHardwareId == null || criteria.hostHardwareId.isEmpty())
+                && (criteria.hostStatus == null || criteria.hostStatus.isEmpty())
+                && (criteria.numberOfDays == 0)
+                && (criteria.toDate == null || criteria.toDate.isEmpty())
+                && (criteria.fromDate == null || criteria.fromDate.isEmpty())
+                && (criteria.latestPerHost == null || criteria.latestPerHost.isEmpty())
+                && (criteria.limit == 10000);
+    }
+    
+    /**
+     * Report search criteria converted to the values expected by the JPA controller.
+     */
+    private static class ReportSearchParameters {
+        private String reportId = null;
+        private String hostId = null;
+        private String hostName = null;
+        private String hostHardwareUuid = null;
+        private String hostStatus = null;
+        private Boolean latestPerHost = true;
+        private Date fromDate = null;
+        private Date toDate = null;
+        
+        private ReportSearchParameters(ReportFilterCriteria criteria) throws ParseException {
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
             Calendar cal = Calendar.getInstance();
             Iso8601Date toIso8601Date;
-            Date toDate = null;
-            Date fromDate = null;
 
             if (criteria.toDate != null && !criteria.toDate.isEmpty()) {
                 toIso8601Date = Iso8601Date.valueOf(criteria.toDate);
@@ -77,13 +230,6 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
                 fromDate = dateFormat.parse(dateFormat.format(cal.getTime()));
             }
 
-            String reportId = null;
-            String hostId = null;
-            String hostName = null;
-            String hostHardwareUuid = null;
-            String hostStatus = null;
-            Boolean latestPerHost = true;
-
             if (criteria.id != null) {
                 reportId = criteria.id.toString();
             }
@@ -114,42 +260,7 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
                 fromDate = dateFormat.parse(dateFormat.format(cal.getTime()));
                 log.debug("Reports between {} to {} will be retrieved", dateFormat.format(fromDate), dateFormat.format(toDate));
             }
-
-            List<MwReport> reportList;
-            if (criteria.fromDate == null && criteria.toDate == null && latestPerHost) {
-                reportList = jpaController.findLatestMwReport(
-                        reportId,
-                        hostId,
-                        hostName,
-                        hostHardwareUuid,
-                        hostStatus,
-                        criteria.limit);
-            } else {
-                reportList = jpaController.findMwReport(
-                        reportId,
-                        hostId,
-                        hostName,
-                        hostHardwareUuid,
-                        hostStatus,
-                        fromDate,
-                        toDate,
-                        latestPerHost,
-                        criteria.limit);
-            }
-
-            // Now that we have the final list, let us return it back.
-            if (reportList != null && !reportList.isEmpty()) {
-                for (MwReport objReport : reportList) {
-                    objCollection.getReports().add(convert(objReport));
-                }
-            }
-
-        } catch (IOException | ParseException ex) {
-            log.error("Error during search for reports", ex);
-            throw new RepositorySearchException(ex, criteria);
         }
-        log.debug("Returning back {} of results", objCollection.getReports().size());
-        return objCollection;
     }
 
     @Override
@@ -208,6 +319,7 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
             ReportLocator locator = convert(item);
             MwReport mwReport = retrieveMwReport(locator);
             if (mwReport == null) {
+                // updates the report instead if another verification of the host created it first
                 return createReport(item);
             }
 
@@ -271,7 +383,7 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
             mwReport.setTrustReport(item.getTrustReport());
             mwReport.setSaml(item.getSaml());
 
-            mwReportJpaController.create(mwReport);
+            mwReportJpaController.storeMwReportByHostId(mwReport);
             log.debug("Report created for host with ID {}", item.getHostId().toString());
             return item;
         } catch (IOException ex) {
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.dcsg.cpg.tls.policy.TlsPolicy;
+import com.intel.mtwilson.tls.policy.model.HostTlsPolicy;
+
+/**
+ * A TLS policy record together with the {@link TlsPolicy} built from its
+ * descriptor, as cached by {@link ReferenceDataCache}. Both are shared
+ * between callers and must not be modified.
+ */
+public class ResolvedTlsPolicy {
+    private final HostTlsPolicy hostTlsPolicy;
+    private final TlsPolicy tlsPolicy;
+
+    ResolvedTlsPolicy(HostTlsPolicy hostTlsPolicy, TlsPolicy tlsPolicy) {
+        this.hostTlsPolicy = hostTlsPolicy;
+        this.tlsPolicy = tlsPolicy;
+    }
+
+    public HostTlsPolicy getHostTlsPolicy() {
+        return hostTlsPolicy;
+    }
+
+    /**
+     * @return the TLS policy built from the descriptor, or null when a new
+     * one must be built for every connection, as for trust first certificate
+     * policies which learn the host key on first use
+     */
+    public TlsPolicy getTlsPolicy() {
+        return tlsPolicy;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.repository;
+
+import com.intel.mtwilson.flavor.rest.v2.model.ContinuationToken;
+import com.intel.mtwilson.repository.RepositoryInvalidInputException;
+
+/**
+ * Converts between the continuation tokens of the paged searches and the
+ * ID the JPA controllers continue after. Every paged search is ordered by
+ * ID, so the ID of the last entry of a full page is where the next page
+ * starts.
+ */
+class SearchPages {
+
+    private SearchPages() {
+    }
+
+    /**
+     * @return the ID to continue after, or null for the first page
+     * @throws RepositoryInvalidInputException if the token is not a valid token for the collection
+     */
+    static String getAfterId(String collection, String continuationToken) {
+        if (continuationToken == null || continuationToken.isEmpty()) {
+            return null;
+        }
+        try {
+            return ContinuationToken.decode(collection, continuationToken).getLastId();
+        } catch (IllegalArgumentException e) {
+            throw new RepositoryInvalidInputException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the token for the page after the one ending with lastId, or
+     * null if the page was not full and so is the last one
+     */
+    static String getContinuationToken(String collection, int pageSize, int limit, String lastId) {
+        if (limit <= 0 || pageSize < limit || lastId == null) {
+            return null;
+        }
+        return new ContinuationToken(collection, lastId).encode();
+    }
+}
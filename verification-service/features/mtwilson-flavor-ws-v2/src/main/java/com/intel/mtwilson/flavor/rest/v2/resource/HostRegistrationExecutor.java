@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.rest.v2.resource;
+
+import com.intel.mtwilson.My;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool shared by all bulk host registrations for connecting to the
+ * hosts being registered. Connecting to a host is mostly waiting on the
+ * network, so the hosts of a request are contacted in parallel while the
+ * pool bounds the number of connections open at once across requests.
+ *
+ * The pool size is set by mtwilson.host.bulk.create.threads.
+ */
+class HostRegistrationExecutor {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostRegistrationExecutor.class);
+    private static final int DEFAULT_HOST_BULK_CREATE_THREADS = 16;
+    private static final int threads = Math.max(1, My.configuration().getConfiguration().getInt("mtwilson.host.bulk.create.threads", DEFAULT_HOST_BULK_CREATE_THREADS));
+    private static ExecutorService executor = null;
+
+    private HostRegistrationExecutor() {
+    }
+
+    static <T> Future<T> submit(Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            log.debug("Creating host registration pool with {} threads", threads);
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "host-registration-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
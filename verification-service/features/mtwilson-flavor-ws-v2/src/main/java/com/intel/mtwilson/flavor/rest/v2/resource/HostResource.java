@@ -23,6 +23,9 @@ import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupHostLinkLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.HostCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostCreateCriteria;
+import com.intel.mtwilson.flavor.rest.v2.model.HostCreateCriteriaCollection;
+import com.intel.mtwilson.flavor.rest.v2.model.HostCreateResult;
+import com.intel.mtwilson.flavor.rest.v2.model.HostCreateResultCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatus;
@@ -68,11 +71,13 @@ import com.intel.mtwilson.core.common.datatypes.ConnectionString;
 import static com.intel.mtwilson.features.queue.model.QueueState.NEW;
 import com.intel.mtwilson.flavor.controller.MwHostStatusJpaController;
 import com.intel.mtwilson.flavor.controller.MwQueueJpaController;
+import com.intel.mtwilson.flavor.controller.UnitOfWork;
 import com.intel.mtwilson.flavor.data.MwHostStatus;
 import com.intel.mtwilson.flavor.data.MwQueue;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportLocator;
 import com.intel.mtwilson.flavor.rest.v2.repository.HostTlsPolicyRepository;
 import com.intel.mtwilson.flavor.rest.v2.repository.ReportRepository;
+import com.intel.mtwilson.flavor.rest.v2.repository.ResolvedTlsPolicy;
 import com.intel.mtwilson.tls.policy.exception.TlsPolicyAllowedException;
 import com.intel.mtwilson.tls.policy.factory.TlsPolicyFactoryUtil;
 import com.intel.mtwilson.tls.policy.filter.HostTlsPolicyFilter;
@@ -84,8 +89,13 @@ import com.intel.mtwilson.core.common.model.HostComponents;
 import java.net.MalformedURLException;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
@@ -103,6 +113,8 @@ public class HostResource {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostResource.class);
     private static final String INSECURE = "INSECURE";
     private static final String TRUST_FIRST_CERTIFICATE = "TRUST_FIRST_CERTIFICATE";
+    private static final int DEFAULT_HOST_BULK_CREATE_MAX = 1000;
+    private static final int DEFAULT_HOST_BULK_CREATE_BATCH_SIZE = 50;
     private final HostRepository repository;
 
     public HostResource() {
@@ -123,102 +135,304 @@ public class HostResource {
     @RequiresPermissions("hosts:create")
     public Host createHost(HostCreateCriteria hostCreateCriteria) throws Exception {
         ValidationUtil.validate(hostCreateCriteria);
+
+        try {
+            HostRegistration registration = prepareHost(hostCreateCriteria);
+            Host host = registration.host;
+            log.debug("Creating a new host");
+            host = repository.create(host);
+
+            // for user specified TRUST_FIRST_CERTIFICATE or INSECURE, create the TLS policy
+            createPrivateTlsPolicy(registration);
+
+            linkFlavorgroupsToHost(host.getFlavorgroupNames(), host.getId());
+            
+            log.debug("Adding host to flavor-verify queue");
+            // Since we are adding a new host, the forceUpdate flag should be set to true so that
+            // we connect to the host and get the latest host manifest to verify against.
+            addHostToFlavorVerifyQueue(host.getId(), true);
+            host.setConnectionString(HostRepository.getConnectionStringWithoutCredentials(registration.connectionString.getConnectionString()));
+            return host;
+
+        } catch (RepositoryInvalidInputException e) {
+            throw new WebApplicationException(String.format("Invalid input: %s", e.getMessage()), e, 400);
+        } catch (MalformedURLException e) {
+            throw new WebApplicationException("Connection string is incorrectly formatted", e, 400);
+        }
+    }
+
+    /**
+     * Registers many hosts at once. The hosts are contacted in parallel on
+     * the {@link HostRegistrationExecutor} pool, then created together with
+     * their credentials, TLS policies and flavorgroup links in transactions of
+     * mtwilson.host.bulk.create.batch.size hosts, and finally added to the
+     * flavor-verify queue together. A host that cannot be registered does not
+     * stop the others, the result for each requested host reports either the
+     * created host or the error.
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @RequiresPermissions("hosts:create")
+    public HostCreateResultCollection createHosts(HostCreateCriteriaCollection hostCreateCriteriaCollection) {
+        if (hostCreateCriteriaCollection == null || hostCreateCriteriaCollection.getHosts().isEmpty()) {
+            throw new WebApplicationException("At least one host must be specified", 400);
+        }
+        int maxHosts = My.configuration().getConfiguration().getInt("mtwilson.host.bulk.create.max", DEFAULT_HOST_BULK_CREATE_MAX);
+        if (hostCreateCriteriaCollection.getHosts().size() > maxHosts) {
+            throw new WebApplicationException(String.format("At most %d hosts can be registered in one request", maxHosts), 400);
+        }
+
+        HostCreateResultCollection results = new HostCreateResultCollection();
+        List<HostRegistration> registrations = prepareHosts(hostCreateCriteriaCollection.getHosts(), results);
+        storeHosts(registrations);
+
+        List<String> hostIds = new ArrayList<>();
+        for (HostRegistration registration : registrations) {
+            if (registration.result.getError() == null) {
+                hostIds.add(registration.host.getId().toString());
+            }
+        }
+        if (!hostIds.isEmpty()) {
+            log.debug("Adding {} hosts to flavor-verify queue", hostIds.size());
+            // new hosts cannot be in the queue yet, so they are added without checking
+            updateHostStatusList(hostIds, QUEUE, null);
+            addHostsToFlavorVerifyQueue(hostIds, true);
+        }
+        return results;
+    }
+
+    /**
+     * Checks the host, connects to it to get its hardware UUID and installed
+     * components and determines its flavorgroups. Nothing is stored except a
+     * public key learned through an existing TRUST_FIRST_CERTIFICATE policy.
+     */
+    private HostRegistration prepareHost(HostCreateCriteria hostCreateCriteria) throws IOException {
         UUID hostId = new UUID();
         UUID hardwareUuid = null;
         HostInfo hostInfo = null;
-        TlsPolicyDescriptor tlsPolicyDescriptor;
 
+        if (hostCreateCriteria == null
+                || (hostCreateCriteria.getConnectionString() == null || hostCreateCriteria.getConnectionString().trim().isEmpty())
+                || (hostCreateCriteria.getHostName() == null || hostCreateCriteria.getHostName().trim().isEmpty())) {
+            throw new WebApplicationException("Host connection string and host name must be specified", 400);
+        }
+        HostLocator locator = new HostLocator();
+        locator.name = hostCreateCriteria.getHostName();
+        Host existingHost = repository.retrieve(locator);
+        if (existingHost != null) {
+            throw new WebApplicationException("Host with this name already exists", Response.Status.BAD_REQUEST);
+        }
+        // set the tls policy id to default if it is not specified
+        if (hostCreateCriteria.getTlsPolicyId() == null || hostCreateCriteria.getTlsPolicyId().isEmpty()) {
+            hostCreateCriteria.setTlsPolicyId(HostTlsPolicyFilter.getDefaultTlsPolicyType());
+        }
+
+        HostRegistration registration = new HostRegistration();
+        registration.connectionString = HostRepository.generateConnectionString(hostCreateCriteria.getConnectionString());
+
+        // determine TLS policy
+        registration.tlsPolicyDescriptor = getTlsPolicy(hostCreateCriteria.getTlsPolicyId(), registration.connectionString, false);
+        // get the host manifest, if host is connected
         try {
-            if (hostCreateCriteria == null
-                    || (hostCreateCriteria.getConnectionString() == null || hostCreateCriteria.getConnectionString().trim().isEmpty())
-                    || (hostCreateCriteria.getHostName() == null || hostCreateCriteria.getHostName().trim().isEmpty())) {
-                throw new WebApplicationException("Host connection string and host name must be specified", 400);
-            }
-            HostLocator locator = new HostLocator();
-            locator.name = hostCreateCriteria.getHostName();
-            Host existingHost = repository.retrieve(locator);
-            if (existingHost != null) {
-                throw new WebApplicationException("Host with this name already exists", Response.Status.BAD_REQUEST);
+            log.debug("Connecting to host to get the host manifest and the hardware UUID of the host : {}",
+                    hostCreateCriteria.getHostName());
+            // connect to the host and retrieve the host manifest
+            hostInfo = getHostInfo(registration.tlsPolicyDescriptor, registration.connectionString, null);
+            if (hostInfo != null
+                    && hostInfo.getHardwareUuid() != null
+                    && !hostInfo.getHardwareUuid().isEmpty()
+                    && UUID.isValid(hostInfo.getHardwareUuid())) {
+                hardwareUuid = UUID.valueOf(hostInfo.getHardwareUuid());
             }
-            // set the tls policy id to default if it is not specified
-            if (hostCreateCriteria.getTlsPolicyId() == null || hostCreateCriteria.getTlsPolicyId().isEmpty()) {
-                hostCreateCriteria.setTlsPolicyId(HostTlsPolicyFilter.getDefaultTlsPolicyType());
+        } catch (TlsPolicyAllowedException e) {
+            throw new WebApplicationException("TLS policy type is not allowed", e, 400);
+        } catch (Exception e) {
+            HostState hostState = new HostStatusResource().determineHostState(e);
+            log.warn("Could not connect to host, hardware UUID and host manifest will not be set: {}", hostState.getHostStateText());
+        }
+
+        List<String> flavorgroupNames = new ArrayList<>();
+
+        if ((hostCreateCriteria.getFlavorgroupName() == null || hostCreateCriteria.getFlavorgroupName().isEmpty())) {
+            flavorgroupNames.add(Flavorgroup.AUTOMATIC_FLAVORGROUP);
+        } else {
+            if(hostCreateCriteria.getFlavorgroupName() != null && !hostCreateCriteria.getFlavorgroupName().isEmpty()) {
+                flavorgroupNames.add(hostCreateCriteria.getFlavorgroupName());
             }
+        }
 
-            ConnectionString connectionString = HostRepository.generateConnectionString(hostCreateCriteria.getConnectionString());
+        // Link to default software and workload groups if host is linux
+        if (hostInfo != null && validateIseclSoftwareFlavor(hostInfo)){
+            if(hostInfo.getInstalledComponents().contains(HostComponents.TAGENT.getValue()))
+                flavorgroupNames.add(Flavorgroup.PLATFORM_SOFTWARE_FLAVORGROUP);
+            if(hostInfo.getInstalledComponents().contains(HostComponents.WLAGENT.getValue()))
+                flavorgroupNames.add(Flavorgroup.WORKLOAD_SOFTWARE_FLAVORGROUP);
+        }          
+
+        // set all host parameters
+        log.debug("Setting all the host obj parameters");
+        Host host = new Host();
+        host.setConnectionString(hostCreateCriteria.getConnectionString());
+        host.setDescription(hostCreateCriteria.getDescription());
+        host.setFlavorgroupNames(flavorgroupNames);
+        host.setHostName(hostCreateCriteria.getHostName());
+        host.setTlsPolicyId(hostCreateCriteria.getTlsPolicyId());
+        host.setHardwareUuid(hardwareUuid);
+        host.setId(hostId);
+        registration.host = host;
+        return registration;
+    }
+
+    /**
+     * Prepares the requested hosts in parallel. Each requested host gets a
+     * result in request order; the hosts that could not be prepared get their
+     * error and are not returned.
+     */
+    private List<HostRegistration> prepareHosts(List<HostCreateCriteria> hostCreateCriteriaList, HostCreateResultCollection results) {
+        List<Future<HostRegistration>> futures = new ArrayList<>();
+        Set<String> hostNames = new HashSet<>();
+        for (final HostCreateCriteria hostCreateCriteria : hostCreateCriteriaList) {
+            HostCreateResult result = new HostCreateResult();
+            results.getResults().add(result);
+            if (hostCreateCriteria != null) {
+                result.setHostName(hostCreateCriteria.getHostName());
+                if (hostCreateCriteria.getHostName() != null && !hostNames.add(hostCreateCriteria.getHostName())) {
+                    result.setError("Host name is specified more than once in the request");
+                    futures.add(null);
+                    continue;
+                }
+            }
+            futures.add(HostRegistrationExecutor.submit(new Callable<HostRegistration>() {
+                @Override
+                public HostRegistration call() throws Exception {
+                    if (hostCreateCriteria != null) {
+                        ValidationUtil.validate(hostCreateCriteria);
+                    }
+                    return prepareHost(hostCreateCriteria);
+                }
+            }));
+        }
 
-            // determine TLS policy
-            tlsPolicyDescriptor = getTlsPolicy(hostCreateCriteria.getTlsPolicyId(), connectionString, false);
-            // get the host manifest, if host is connected
+        List<HostRegistration> registrations = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Future<HostRegistration> future = futures.get(i);
+            HostCreateResult result = results.getResults().get(i);
+            if (future == null) {
+                continue;
+            }
             try {
-                log.debug("Connecting to host to get the host manifest and the hardware UUID of the host : {}",
-                        hostCreateCriteria.getHostName());
-                // connect to the host and retrieve the host manifest
-                hostInfo = getHostInfo(tlsPolicyDescriptor, connectionString, null);
-                if (hostInfo != null
-                        && hostInfo.getHardwareUuid() != null
-                        && !hostInfo.getHardwareUuid().isEmpty()
-                        && UUID.isValid(hostInfo.getHardwareUuid())) {
-                    hardwareUuid = UUID.valueOf(hostInfo.getHardwareUuid());
+                HostRegistration registration = future.get();
+                registration.result = result;
+                registrations.add(registration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                result.setError("Host registration was interrupted");
+            } catch (ExecutionException e) {
+                log.debug("Cannot register host {}", result.getHostName(), e.getCause());
+                result.setError(getCreateErrorMessage(e.getCause()));
+            }
+        }
+        return registrations;
+    }
+
+    /**
+     * Creates the prepared hosts in batches, each in one transaction. When a
+     * batch fails its hosts are created one at a time so that only the hosts
+     * at fault are reported as failed.
+     */
+    private void storeHosts(List<HostRegistration> registrations) {
+        // the hosts of a request mostly share a few flavorgroups, resolve each name once
+        Map<String, UUID> flavorgroupIds = new HashMap<>();
+        List<HostRegistration> linkable = new ArrayList<>();
+        for (HostRegistration registration : registrations) {
+            String missingFlavorgroup = null;
+            for (String flavorgroupName : registration.host.getFlavorgroupNames()) {
+                if (!flavorgroupIds.containsKey(flavorgroupName)) {
+                    flavorgroupIds.put(flavorgroupName, resolveFlavorgroupId(flavorgroupName));
+                }
+                if (flavorgroupIds.get(flavorgroupName) == null) {
+                    missingFlavorgroup = flavorgroupName;
                 }
-            } catch (TlsPolicyAllowedException e) {
-                throw new WebApplicationException("TLS policy type is not allowed", e, 400);
-            } catch (Exception e) {
-                HostState hostState = new HostStatusResource().determineHostState(e);
-                log.warn("Could not connect to host, hardware UUID and host manifest will not be set: {}", hostState.getHostStateText());
             }
-
-            List<String> flavorgroupNames = new ArrayList<>();
-
-            if ((hostCreateCriteria.getFlavorgroupName() == null || hostCreateCriteria.getFlavorgroupName().isEmpty())) {
-                flavorgroupNames.add(Flavorgroup.AUTOMATIC_FLAVORGROUP);
+            if (missingFlavorgroup != null) {
+                registration.result.setError(String.format("Flavorgroup %s could not be created", missingFlavorgroup));
             } else {
-                if(hostCreateCriteria.getFlavorgroupName() != null && !hostCreateCriteria.getFlavorgroupName().isEmpty()) {
-                    flavorgroupNames.add(hostCreateCriteria.getFlavorgroupName());
+                linkable.add(registration);
+            }
+        }
+
+        int batchSize = Math.max(1, My.configuration().getConfiguration().getInt("mtwilson.host.bulk.create.batch.size", DEFAULT_HOST_BULK_CREATE_BATCH_SIZE));
+        for (int start = 0; start < linkable.size(); start += batchSize) {
+            List<HostRegistration> batch = linkable.subList(start, Math.min(start + batchSize, linkable.size()));
+            try {
+                storeHostBatch(batch, flavorgroupIds);
+            } catch (Exception e) {
+                log.warn("Cannot create batch of {} hosts, creating them one at a time: {}", batch.size(), e.getMessage());
+                for (HostRegistration registration : batch) {
+                    try {
+                        storeHostBatch(Collections.singletonList(registration), flavorgroupIds);
+                    } catch (Exception ex) {
+                        log.error("Cannot create host {}", registration.host.getHostName(), ex);
+                        registration.result.setError(getCreateErrorMessage(ex));
+                    }
                 }
             }
+        }
 
-            // Link to default software and workload groups if host is linux
-            if (hostInfo != null && validateIseclSoftwareFlavor(hostInfo)){
-                if(hostInfo.getInstalledComponents().contains(HostComponents.TAGENT.getValue()))
-                    flavorgroupNames.add(Flavorgroup.PLATFORM_SOFTWARE_FLAVORGROUP);
-                if(hostInfo.getInstalledComponents().contains(HostComponents.WLAGENT.getValue()))
-                    flavorgroupNames.add(Flavorgroup.WORKLOAD_SOFTWARE_FLAVORGROUP);
-            }          
+        for (HostRegistration registration : linkable) {
+            if (registration.result.getError() == null) {
+                registration.host.setConnectionString(HostRepository.getConnectionStringWithoutCredentials(registration.connectionString.getConnectionString()));
+                registration.result.setHost(registration.host);
+            }
+        }
+    }
 
-            // set all host parameters and create the host
-            log.debug("Setting all the host obj parameters");
-            Host host = new Host();
-            host.setConnectionString(hostCreateCriteria.getConnectionString());
-            host.setDescription(hostCreateCriteria.getDescription());
-            host.setFlavorgroupNames(flavorgroupNames);
-            host.setHostName(hostCreateCriteria.getHostName());
-            host.setTlsPolicyId(hostCreateCriteria.getTlsPolicyId());
-            host.setHardwareUuid(hardwareUuid);
-            host.setId(hostId);
-            log.debug("Creating a new host");
-            host = repository.create(host);
+    private void storeHostBatch(List<HostRegistration> batch, Map<String, UUID> flavorgroupIds) {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            for (HostRegistration registration : batch) {
+                repository.create(registration.host);
+                createPrivateTlsPolicy(registration);
+                // the host is new, so it has no flavorgroup links yet
+                for (String flavorgroupName : registration.host.getFlavorgroupNames()) {
+                    linkFlavorGroupToHost(flavorgroupIds.get(flavorgroupName), registration.host.getId());
+                }
+            }
+            unitOfWork.commit();
+        }
+    }
 
-            // for user specified TRUST_FIRST_CERTIFICATE or INSECURE, create the TLS policy
-            if (tlsPolicyDescriptor.getPolicyType().equalsIgnoreCase(TRUST_FIRST_CERTIFICATE)
-                    || tlsPolicyDescriptor.getPolicyType().equalsIgnoreCase(INSECURE)) {
-                createTlsPolicy(tlsPolicyDescriptor.getPolicyType(), hostId);
+    private UUID resolveFlavorgroupId(String flavorgroupName) {
+        try {
+            Flavorgroup flavorgroup = FlavorGroupUtils.getFlavorGroupByName(flavorgroupName);
+            if (flavorgroup == null) {
+                flavorgroup = createNewFlavorGroup(flavorgroupName);
             }
+            return flavorgroup.getId();
+        } catch (Exception e) {
+            log.error("Cannot create flavorgroup {}", flavorgroupName, e);
+            return null;
+        }
+    }
 
-            linkFlavorgroupsToHost(flavorgroupNames, host.getId());
-            
-            log.debug("Adding host to flavor-verify queue");
-            // Since we are adding a new host, the forceUpdate flag should be set to true so that
-            // we connect to the host and get the latest host manifest to verify against.
-            addHostToFlavorVerifyQueue(host.getId(), true);
-            host.setConnectionString(HostRepository.getConnectionStringWithoutCredentials(connectionString.getConnectionString()));
-            return host;
+    private void createPrivateTlsPolicy(HostRegistration registration) {
+        String policyType = registration.tlsPolicyDescriptor.getPolicyType();
+        if (policyType.equalsIgnoreCase(TRUST_FIRST_CERTIFICATE) || policyType.equalsIgnoreCase(INSECURE)) {
+            createTlsPolicy(policyType, registration.host.getId());
+        }
+    }
 
-        } catch (RepositoryInvalidInputException e) {
-            throw new WebApplicationException(String.format("Invalid input: %s", e.getMessage()), e, 400);
-        } catch (MalformedURLException e) {
-            throw new WebApplicationException("Connection string is incorrectly formatted", e, 400);
+    private String getCreateErrorMessage(Throwable e) {
+        if (e instanceof RepositoryInvalidInputException) {
+            return String.format("Invalid input: %s", e.getMessage());
+        } else if (e instanceof MalformedURLException) {
+            return "Connection string is incorrectly formatted";
+        } else if (e instanceof WebApplicationException || e instanceof IllegalArgumentException) {
+            return e.getMessage();
         }
+        return "Error while creating host";
     }
 
     @POST
@@ -596,12 +810,12 @@ public class HostResource {
             // retrieve the TLS policy from the database
             HostTlsPolicyLocator hostTlsPolicyLocator = new HostTlsPolicyLocator();
             hostTlsPolicyLocator.id = UUID.valueOf(tlsPolicyIdentifier);
-            HostTlsPolicy hostTlsPolicy = new HostTlsPolicyRepository().retrieve(hostTlsPolicyLocator);
+            ResolvedTlsPolicy resolvedTlsPolicy = new HostTlsPolicyRepository().resolve(hostTlsPolicyLocator);
 
-            if (hostTlsPolicy == null) {
+            if (resolvedTlsPolicy == null) {
                 throw new IllegalArgumentException("TLS policy specified does not exist");
             } else {
-                return hostTlsPolicy.getDescriptor();
+                return resolvedTlsPolicy.getHostTlsPolicy().getDescriptor();
             }
         } else {
             return createTlsPolicy(tlsPolicyIdentifier, hostId);
@@ -617,10 +831,10 @@ public class HostResource {
                 // of connection issues with the host, we need to retrive the actual ID from the TLS Policy table.
                 HostTlsPolicyLocator hostTlsPolicyLocator = new HostTlsPolicyLocator();
                 hostTlsPolicyLocator.name = host.getId().toString();
-                HostTlsPolicy hostTlsPolicy = new HostTlsPolicyRepository().retrieve(hostTlsPolicyLocator);
-                if (hostTlsPolicy != null) {
-                    log.debug("FlavorVerify: Retrieved the TLS policy for the host {}", hostTlsPolicy.getId().toHexString());
-                    tlsPolicyId = hostTlsPolicy.getId();
+                ResolvedTlsPolicy resolvedTlsPolicy = new HostTlsPolicyRepository().resolve(hostTlsPolicyLocator);
+                if (resolvedTlsPolicy != null) {
+                    log.debug("FlavorVerify: Retrieved the TLS policy for the host {}", resolvedTlsPolicy.getHostTlsPolicy().getId().toHexString());
+                    tlsPolicyId = resolvedTlsPolicy.getHostTlsPolicy().getId();
                 }
             } else {
                 tlsPolicyId = UUID.valueOf(host.getTlsPolicyId());
@@ -634,13 +848,17 @@ public class HostResource {
     }
 
     public HostManifest getHostManifest(TlsPolicyDescriptor tlsPolicyDescriptor, ConnectionString connectionString, UUID tlsPolicyId) throws IOException {
-        HostTlsPolicy hostTlsPolicy = getHostTlsPolicy(tlsPolicyId);
+        ResolvedTlsPolicy resolvedTlsPolicy = getHostTlsPolicy(tlsPolicyId);
+        HostTlsPolicy hostTlsPolicy = resolvedTlsPolicy == null ? null : resolvedTlsPolicy.getHostTlsPolicy();
+        TlsPolicy tlsPolicy = getConnectionTlsPolicy(tlsPolicyDescriptor, resolvedTlsPolicy);
         tlsPolicyDescriptor = getTlsPolicyDescriptor(tlsPolicyDescriptor, hostTlsPolicy);
         // check if the tlsPolicyDescriptor is allowed. Throw error if not allowed.
         validateTlsPolicyDescriptor(tlsPolicyDescriptor);
 
         // get the host manifest
-        TlsPolicy tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
+        if (tlsPolicy == null) {
+            tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
+        }
         HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, tlsPolicy);
         HostManifest hostManifest = hostConnector.getHostManifest();
 
@@ -674,14 +892,18 @@ public class HostResource {
     }
 
     private HostInfo getHostInfo(TlsPolicyDescriptor tlsPolicyDescriptor, ConnectionString connectionString, UUID tlsPolicyId) throws IOException {
-        HostTlsPolicy hostTlsPolicy = getHostTlsPolicy(tlsPolicyId);
+        ResolvedTlsPolicy resolvedTlsPolicy = getHostTlsPolicy(tlsPolicyId);
+        HostTlsPolicy hostTlsPolicy = resolvedTlsPolicy == null ? null : resolvedTlsPolicy.getHostTlsPolicy();
+        TlsPolicy tlsPolicy = getConnectionTlsPolicy(tlsPolicyDescriptor, resolvedTlsPolicy);
         tlsPolicyDescriptor = getTlsPolicyDescriptor(tlsPolicyDescriptor, hostTlsPolicy);
 
         // check if the tlsPolicyDescriptor is allowed. Throw error if not allowed.
         validateTlsPolicyDescriptor(tlsPolicyDescriptor);
 
         // get the host info
-        TlsPolicy tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
+        if (tlsPolicy == null) {
+            tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
+        }
         HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, tlsPolicy);
         HostInfo hostInfo = hostConnector.getHostDetails();
 
@@ -696,15 +918,24 @@ public class HostResource {
         }
     }
 
-    private HostTlsPolicy getHostTlsPolicy(UUID tlsPolicyId) {
-        HostTlsPolicy hostTlsPolicy = null;
+    private ResolvedTlsPolicy getHostTlsPolicy(UUID tlsPolicyId) {
+        ResolvedTlsPolicy resolvedTlsPolicy = null;
         if (tlsPolicyId != null) {
-            // get the TLS policy record from the database and assign the descriptor
+            // get the TLS policy record from the cache or the database
             HostTlsPolicyLocator hostTlsPolicyLocator = new HostTlsPolicyLocator();
             hostTlsPolicyLocator.id = tlsPolicyId;
-            hostTlsPolicy = new HostTlsPolicyRepository().retrieve(hostTlsPolicyLocator);
+            resolvedTlsPolicy = new HostTlsPolicyRepository().resolve(hostTlsPolicyLocator);
+        }
+        return resolvedTlsPolicy;
+    }
+
+    // the cached TLS policy is only used for the stored descriptor; it is null
+    // for trust first certificate policies, which are built per connection
+    private TlsPolicy getConnectionTlsPolicy(TlsPolicyDescriptor tlsPolicyDescriptor, ResolvedTlsPolicy resolvedTlsPolicy) {
+        if (tlsPolicyDescriptor != null || resolvedTlsPolicy == null) {
+            return null;
         }
-        return hostTlsPolicy;
+        return resolvedTlsPolicy.getTlsPolicy();
     }
 
     public boolean validateIseclSoftwareFlavor(HostInfo hostInfo) {
@@ -765,4 +996,11 @@ public class HostResource {
         FlavorgroupHostLink link = new FlavorgroupHostLinkRepository().retrieve(locator);
         return link != null;
     }
+
+    private static class HostRegistration {
+        private Host host;
+        private ConnectionString connectionString;
+        private TlsPolicyDescriptor tlsPolicyDescriptor;
+        private HostCreateResult result;
+    }
 }
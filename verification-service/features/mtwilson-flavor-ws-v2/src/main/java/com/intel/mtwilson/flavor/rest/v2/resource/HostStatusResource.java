@@ -6,6 +6,7 @@
 package com.intel.mtwilson.flavor.rest.v2.resource;
 
 import com.intel.dcsg.cpg.validation.ValidationUtil;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusCollection;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusFilterCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusLocator;
@@ -20,12 +21,15 @@ import com.intel.mtwilson.launcher.ws.ext.V2;
 import java.io.IOException;
 import java.net.ConnectException;
 import javax.ws.rs.BeanParam;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 
@@ -64,6 +68,22 @@ public class HostStatusResource {
         return getRepository().search(filterCriteria);
     }
     
+    /**
+     * Returns the current status of each of the given hosts, looked up with
+     * a single query. Hosts that do not exist or have no status are left out.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @RequiresPermissions("host_status:search")
+    public HostStatusCollection searchByHosts(HostBatchLookupCriteria criteria) {
+        if (criteria == null) {
+            throw new WebApplicationException("Host IDs, names or hardware UUIDs must be specified", 400);
+        }
+        return getRepository().searchByHosts(criteria);
+    }
+    
     public HostState determineHostState(Exception e) {
         if (e instanceof ProcessingException) {
             log.warn("Failed to generate host manifest due to processing exception. {} - {}", e.getCause().toString(), e.getCause().getMessage());
@@ -205,6 +205,8 @@ public class HostTlsPolicyResource {
         }
         HostFilterCriteria hostFilterCriteria = new HostFilterCriteria();
         hostFilterCriteria.tlsPolicyId = item.getId().toString();
+        // only whether any host uses the policy matters
+        hostFilterCriteria.limit = 1;
         HostCollection hostCollection = new HostRepository().search(hostFilterCriteria);
         
         if (hostCollection != null && hostCollection.getHosts() != null && !hostCollection.getHosts().isEmpty()){
@@ -8,8 +8,11 @@ package com.intel.mtwilson.flavor.rest.v2.resource;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intel.dcsg.cpg.validation.ValidationUtil;
+import com.intel.mtwilson.My;
 import com.intel.mtwilson.flavor.business.FlavorVerify;
+import com.intel.mtwilson.flavor.controller.MwReportJpaController;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
+import com.intel.mtwilson.flavor.rest.v2.model.HostBatchLookupCriteria;
 import com.intel.mtwilson.flavor.rest.v2.model.HostLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.Report;
@@ -34,8 +37,15 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.FutureTask;
 
 /**
@@ -46,6 +56,7 @@ import java.util.concurrent.FutureTask;
 @Path("/reports")
 public class ReportResource {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReportResource.class);
+    private static final int DEFAULT_SAML_FETCH_SIZE = 100;
     private ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper(); // for debugging only
     private ReportRepository repository;
     
@@ -144,24 +155,56 @@ public class ReportResource {
         return getRepository().search(criteria);
     }
     
+    /**
+     * Returns the current report of each of the given hosts, looked up with
+     * a single query. Hosts that do not exist or have no report are left out.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    @RequiresPermissions("reports:search")
+    public ReportCollection searchByHosts(HostBatchLookupCriteria criteria) {
+        if (criteria == null) {
+            throw new WebApplicationException("Host IDs, names or hardware UUIDs must be specified", 400);
+        }
+        return getRepository().searchByHosts(criteria);
+    }
+    
     @GET
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
     @Produces(CryptoMediaType.APPLICATION_SAML) 
     @RequiresPermissions("reports:search")
-    public String searchSamlReports(@BeanParam ReportFilterCriteria criteria) {
+    public StreamingOutput searchSamlReports(@BeanParam final ReportFilterCriteria criteria) {
         ValidationUtil.validate(criteria);
-        ReportCollection objCollection = repository.search(criteria);
-        
-        if (objCollection != null && objCollection.getReports() != null && objCollection.getReports().size() > 0) {
-            StringBuilder samlList = new StringBuilder();
-            log.info("searchSamlReports: SAML Search - Retrieved {} of results.", objCollection.getReports().size());
-            for (Report reportObj : objCollection.getReports()) {
-                log.debug("searchSamlReports: Adding SAML report for host {}", reportObj.getHostId());
-                samlList.append(reportObj.getSaml());
+        final int fetchSize = My.configuration().getConfiguration().getInt("mtwilson.reports.saml.fetch.size", DEFAULT_SAML_FETCH_SIZE);
+        // no results are answered with 204 No Content, checked with a cursor that is closed
+        // again before returning so nothing is held if the response is never written
+        try (MwReportJpaController.SamlCursor cursor = repository.searchSaml(criteria, 1)) {
+            if (cursor == null || !cursor.hasNext()) {
+                log.info("searchSamlReports: SAML Search - Retrieved 0 of results.");
+                return null;
             }
-            return samlList.toString();
         }
-        return null;
+        // the assertions are written to the response as they are read from the database
+        // so large date range searches do not build the whole result in memory
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                int count = 0;
+                try (MwReportJpaController.SamlCursor cursor = repository.searchSaml(criteria, fetchSize)) {
+                    if (cursor != null) {
+                        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                        while (cursor.hasNext()) {
+                            writer.write(cursor.next());
+                        }
+                        writer.flush();
+                        count = cursor.getCount();
+                    }
+                }
+                log.info("searchSamlReports: SAML Search - Retrieved {} of results.", count);
+            }
+        };
     }
     
     private Report createReport(ReportCreateCriteria item) throws Exception {
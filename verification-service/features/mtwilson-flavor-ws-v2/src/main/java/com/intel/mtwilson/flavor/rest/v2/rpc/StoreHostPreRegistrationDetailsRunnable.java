@@ -8,7 +8,9 @@ package com.intel.mtwilson.flavor.rest.v2.rpc;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.flavor.controller.UnitOfWork;
 import com.intel.mtwilson.flavor.data.MwHostCredential;
+import com.intel.mtwilson.flavor.rest.v2.repository.ReferenceDataCache;
 import com.intel.mtwilson.launcher.ws.ext.RPC;
 import com.intel.mtwilson.repository.RepositoryCreateException;
 import java.util.Calendar;
@@ -62,15 +64,20 @@ public class StoreHostPreRegistrationDetailsRunnable implements Runnable {
 
                 log.debug("About to store the pre-registration data for hosts {}", hostNames.toString());
 
-                for(String hostName : hostNames) {
-                    MwHostCredential credential = new MwHostCredential();
-                    String id = new UUID().toString();
-                    credential.setId(id);
-                    credential.setHostName(hostName);
-                    credential.setCredential(String.format("u=%s;p=%s", userName, password));
-                    credential.setCreatedTs(Calendar.getInstance().getTime());
-                    My.jpa().mwHostCredential().create(credential);
+                // the credentials are stored in one transaction
+                try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+                    for(String hostName : hostNames) {
+                        MwHostCredential credential = new MwHostCredential();
+                        String id = new UUID().toString();
+                        credential.setId(id);
+                        credential.setHostName(hostName);
+                        credential.setCredential(String.format("u=%s;p=%s", userName, password));
+                        credential.setCreatedTs(Calendar.getInstance().getTime());
+                        My.jpa().mwHostCredential().create(credential);
+                    }
+                    unitOfWork.commit();
                 }
+                ReferenceDataCache.invalidateHostCredentials();
             } else {
                 throw new Exception("Invalid input specified or input value missing.");
             }
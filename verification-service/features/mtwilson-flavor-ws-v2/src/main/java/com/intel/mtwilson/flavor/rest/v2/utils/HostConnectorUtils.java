@@ -5,9 +5,7 @@
 package com.intel.mtwilson.flavor.rest.v2.utils;
 
 import com.intel.dcsg.cpg.io.UUID;
-import com.intel.mtwilson.My;
 import com.intel.mtwilson.core.common.datatypes.ConnectionString;
-import com.intel.mtwilson.flavor.data.MwHostCredential;
 import com.intel.mtwilson.flavor.rest.v2.model.Flavorgroup;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
 import com.intel.mtwilson.flavor.rest.v2.model.HostLocator;
@@ -41,8 +39,11 @@ public class HostConnectorUtils {
             return connectionString;
         } else {
             Host host = getHostByIdentifier(hostId);
-            MwHostCredential credential = My.jpa().mwHostCredential().findByHostId(host.getId().toString());
-            return String.format("%s;%s",host.getConnectionString(), credential.getCredential());
+            String credential = new HostRepository().retrieveCredential(host.getId());
+            if (credential == null) {
+                throw new IOException(String.format("No credential stored for host [%s]", host.getId().toString()));
+            }
+            return String.format("%s;%s",host.getConnectionString(), credential);
         }
     }
 
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.saml;
+
+import java.util.Date;
+
+/**
+ * A signed SAML assertion together with its validity period, as produced by
+ * {@link SamlReportGenerator}. Carrying the dates with the assertion means
+ * callers do not have to parse them back out of the XML.
+ */
+public class SamlReport {
+    private final String assertion;
+    private final Date created;
+    private final Date expiration;
+
+    public SamlReport(String assertion, Date created, Date expiration) {
+        this.assertion = assertion;
+        this.created = created;
+        this.expiration = expiration;
+    }
+
+    /**
+     * @return the signed SAML assertion XML
+     */
+    public String getAssertion() {
+        return assertion;
+    }
+
+    /**
+     * @return the time the assertion was issued (NotBefore)
+     */
+    public Date getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the time the assertion expires (NotOnOrAfter)
+     */
+    public Date getExpiration() {
+        return expiration;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.saml;
+
+import com.intel.dcsg.cpg.x509.X509Util;
+import com.intel.mtwilson.core.common.model.HardwareFeature;
+import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
+import com.intel.mtwilson.core.common.model.HostInfo;
+import com.intel.mtwilson.core.verifier.policy.TrustMarker;
+import com.intel.mtwilson.core.verifier.policy.TrustReport;
+import com.intel.mtwilson.supplemental.saml.MapFormatter;
+import com.intel.mtwilson.supplemental.saml.SAML;
+import com.intel.mtwilson.supplemental.saml.SamlAssertion;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import org.apache.commons.lang.WordUtils;
+import org.apache.shiro.util.CollectionUtils;
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.xml.io.MarshallingException;
+
+/**
+ * Generates the signed SAML report for a host trust report.
+ */
+public class SamlReportGenerator {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SamlReportGenerator.class);
+
+    // host info properties that are added as SAML attributes, resolved once
+    // instead of introspecting the host info bean for every report
+    private static final List<HostInfoAttribute> HOST_INFO_ATTRIBUTES = findHostInfoAttributes();
+
+    public SamlReport generateSamlReport(TrustReport trustReport) throws InitializationException, MarshallingException,
+            GeneralSecurityException, XMLSignatureException, MarshalException {
+        SAML saml = new SAML(new IssuerConfigurationFactory().loadIssuerConfiguration());
+        MapFormatter mapAssertion = new MapFormatter(buildSamlAttributes(trustReport));
+        SamlAssertion samlAssertion = saml.generateSamlAssertion(mapAssertion);
+        return new SamlReport(samlAssertion.assertion, samlAssertion.created_ts, samlAssertion.expiry_ts);
+    }
+
+    private Map<String, String> buildSamlAttributes(TrustReport trustReport) {
+        Map<String, String> samlMap = new LinkedHashMap<>();
+        HostInfo hostInfo = trustReport.getHostManifest().getHostInfo();
+        X509Certificate aikCertificate = trustReport.getHostManifest().getAikCertificate();
+        X509Certificate bindingKeyCertificate = trustReport.getHostManifest().getBindingKeyCertificate();
+        for (HostInfoAttribute attribute : HOST_INFO_ATTRIBUTES) {
+            Object value = attribute.getValue(hostInfo);
+            if (value != null) {
+                samlMap.put(attribute.name, value.toString());
+            }
+        }
+        Map<HardwareFeature, HardwareFeatureDetails> hardwareFeatures = hostInfo.getHardwareFeatures();
+        if (!CollectionUtils.isEmpty(hardwareFeatures)) {
+            for (HardwareFeature feature : HardwareFeature.values()) {
+                HardwareFeatureDetails details = hardwareFeatures.get(feature);
+                if (details != null) {
+                    String key = "FEATURE_" + feature.getValue();
+                    String value = String.valueOf(details.getEnabled());
+                    samlMap.put(key, value);
+                    if (HardwareFeature.CBNT.equals(feature)) {
+                        samlMap.put("FEATURE_cbntProfile", details.getMeta().get("profile"));
+                    }
+                    if (HardwareFeature.MKTME.equals(feature)) {
+                        samlMap.put("FEATURE_mktmeAlgorithm", details.getMeta().get("encryption_algorithm"));
+                    }
+                }
+            }
+        }
+
+        for (TrustMarker marker : TrustMarker.values()) {
+            String markerName = marker.name();
+            if (!trustReport.getResultsForMarker(markerName).isEmpty()) {
+                samlMap.put("TRUST_" + WordUtils.capitalize(markerName), String.valueOf(trustReport.isTrustedForMarker(markerName)));
+            } else {
+                samlMap.put("TRUST_" + WordUtils.capitalize(markerName), "NA");
+            }
+        }
+        samlMap.put("TRUST_OVERALL", String.valueOf(trustReport.isTrusted()));
+
+        if (bindingKeyCertificate != null) {
+            samlMap.put("Binding_Key_Certificate", X509Util.encodePemCertificate(bindingKeyCertificate));
+        }
+        if (aikCertificate != null) {
+            samlMap.put("AIK_Certificate", X509Util.encodePemCertificate(aikCertificate));
+        }
+
+        for (Map.Entry<String, String> tag : trustReport.getTags().entrySet()) {
+            samlMap.put("TAG_" + WordUtils.capitalize(tag.getKey()), WordUtils.capitalize(tag.getValue()));
+        }
+        return samlMap;
+    }
+
+    private static List<HostInfoAttribute> findHostInfoAttributes() {
+        List<HostInfoAttribute> attributes = new ArrayList<>();
+        try {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(HostInfo.class).getPropertyDescriptors()) {
+                // hardware features are added separately as FEATURE_ attributes
+                if (property.getReadMethod() == null || property.getName().equals("class")
+                        || property.getName().equals("hardwareFeatures")) {
+                    continue;
+                }
+                attributes.add(new HostInfoAttribute(property.getName(), property.getReadMethod()));
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Cannot determine host info attributes for SAML report", e);
+        }
+        log.debug("Found {} host info attributes for SAML report", attributes.size());
+        return Collections.unmodifiableList(attributes);
+    }
+
+    private static class HostInfoAttribute {
+        private final String name;
+        private final Method readMethod;
+
+        private HostInfoAttribute(String name, Method readMethod) {
+            this.name = name;
+            this.readMethod = readMethod;
+        }
+
+        private Object getValue(HostInfo hostInfo) {
+            try {
+                return readMethod.invoke(hostInfo);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(String.format("Cannot read host info attribute %s", name), e);
+            }
+        }
+    }
+}
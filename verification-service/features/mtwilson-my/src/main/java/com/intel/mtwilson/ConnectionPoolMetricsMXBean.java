@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+/**
+ * Connection pool statistics for a persistence unit, exported over JMX as
+ * {@code com.intel.mtwilson:type=ConnectionPool,name=<persistence unit>}.
+ */
+public interface ConnectionPoolMetricsMXBean {
+    String getPersistenceUnitName();
+
+    /**
+     * @return connections currently checked out of the pool
+     */
+    int getActiveConnections();
+
+    /**
+     * @return idle connections in the pool, or -1 if the pool does not report it
+     */
+    int getIdleConnections();
+
+    /**
+     * @return total number of connections checked out of the pool
+     */
+    long getConnectionCheckouts();
+
+    /**
+     * @return number of checkouts that failed, for example because the pool
+     * was exhausted and the wait timed out
+     */
+    long getConnectionTimeouts();
+
+    double getAverageWaitMillis();
+
+    long getMaxWaitMillis();
+
+    /**
+     * @return number of connections held longer than the leak detection threshold
+     */
+    long getLeakedConnections();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.JNDIConnector;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Installed by {@link MyPersistenceManager} as the EclipseLink session
+ * customizer of each persistence unit. Wraps the unit's pooled DataSource in
+ * an {@link InstrumentedDataSource} before the session logs in, so every
+ * connection EclipseLink uses is measured.
+ */
+public class ConnectionPoolSessionCustomizer implements SessionCustomizer {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ConnectionPoolSessionCustomizer.class);
+    private static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 60000;
+
+    @Override
+    public void customize(Session session) throws Exception {
+        if (!(session.getDatasourceLogin().getConnector() instanceof JNDIConnector)) {
+            log.debug("Session {} does not use a DataSource, connection pool metrics are not available", session.getName());
+            return;
+        }
+        JNDIConnector connector = (JNDIConnector) session.getDatasourceLogin().getConnector();
+        if (connector.getDataSource() == null || connector.getDataSource() instanceof InstrumentedDataSource) {
+            return;
+        }
+        long leakDetectionThreshold = My.configuration().getConfiguration().getLong(
+                "mtwilson.db.pool.leak.detection.threshold.ms", DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS);
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(session.getName(), connector.getDataSource(), leakDetectionThreshold);
+        dataSource.register();
+        connector.setDataSource(dataSource);
+        log.debug("Connection pool metrics enabled for {}", session.getName());
+    }
+}
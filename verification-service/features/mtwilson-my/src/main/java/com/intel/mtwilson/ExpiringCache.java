@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache whose entries expire, for data loaded from the database
+ * or the file system that is invalidated when it changes.
+ *
+ * A value loaded while the cache is invalidated must not be cached, since it
+ * may have been read before the change. Callers therefore take
+ * {@link #getGeneration()} before loading a value and pass it to
+ * {@link #put(Object, Object, long, long)}, which ignores the value if the
+ * cache was invalidated in between.
+ *
+ * Usage:
+ * <pre>
+ * V value = cache.get(key);
+ * if (value == null) {
+ *     long generation = cache.getGeneration();
+ *     value = load(key);
+ *     cache.put(key, value, generation, expirySeconds);
+ * }
+ * </pre>
+ */
+public class ExpiringCache<K, V> {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ExpiringCache.class);
+    private final String name;
+    private final int maxEntries;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    // incremented on every invalidation so values loaded before a change
+    // are not put back into the cache
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param name the name of the cache in log messages
+     */
+    public ExpiringCache(String name) {
+        this(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param name the name of the cache in log messages
+     * @param maxEntries the number of entries above which new values are not
+     * cached, for caches whose keys come from clients
+     */
+    public ExpiringCache(String name, int maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(Object, Object, long, long)},
+     * taken before the value is loaded
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return the cached value, or null if it is not cached or expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires < System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches a value unless the cache was invalidated since the value was
+     * loaded, the value is null, expirySeconds is not positive or the cache
+     * is full.
+     * @param loadedGeneration the generation taken before the value was loaded
+     * @param expirySeconds how long the value is cached
+     */
+    public void put(K key, V value, long loadedGeneration, long expirySeconds) {
+        if (value == null || expirySeconds <= 0 || loadedGeneration != generation.get()) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            removeExpired();
+            if (entries.size() >= maxEntries) {
+                log.debug("{} is full, not caching {}", name, key);
+                return;
+            }
+        }
+        Entry<V> entry = new Entry<>(value, System.currentTimeMillis() + expirySeconds * 1000);
+        entries.put(key, entry);
+        // an invalidation may have cleared the cache between the check above and the put
+        if (loadedGeneration != generation.get()) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * @return the keys of the cached values, which may include expired ones
+     */
+    public Set<K> keys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Discards the value of a key, and prevents values loaded before it from
+     * being cached.
+     */
+    public void invalidate(K key) {
+        invalidate(Collections.singleton(key));
+    }
+
+    /**
+     * Discards the values of some keys, and prevents values loaded before
+     * from being cached even if none of the keys is cached.
+     */
+    public void invalidate(Collection<? extends K> keys) {
+        generation.incrementAndGet();
+        for (K key : keys) {
+            entries.remove(key);
+        }
+        log.debug("{} invalidated for {}", name, keys);
+    }
+
+    /**
+     * Discards all cached values.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        log.debug("{} invalidated", name);
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expires < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expires;
+
+        private Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+/**
+ * Wraps the pooled DataSource of a persistence unit to measure how long
+ * connections take to check out and how long they are held. Connections held
+ * longer than the leak detection threshold are logged when they are returned,
+ * with the stack trace of the checkout when debug logging is enabled.
+ */
+public class InstrumentedDataSource implements DataSource, ConnectionPoolMetricsMXBean {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    private final String persistenceUnitName;
+    private final DataSource delegate;
+    private final long leakDetectionThresholdMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    public InstrumentedDataSource(String persistenceUnitName, DataSource delegate, long leakDetectionThresholdMillis) {
+        this.persistenceUnitName = persistenceUnitName;
+        this.delegate = delegate;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+
+    /**
+     * Registers the pool statistics with the platform MBean server, replacing
+     * any previous registration for the same persistence unit.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = ObjectName.getInstance(String.format("com.intel.mtwilson:type=ConnectionPool,name=%s", ObjectName.quote(persistenceUnitName)));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Cannot register connection pool metrics for {}: {}", persistenceUnitName, e.getMessage());
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = delegate.getConnection();
+        } catch (SQLException e) {
+            timeouts.incrementAndGet();
+            log.warn("Cannot get connection for {} after {} ms with {} active: {}", persistenceUnitName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), active.get(), e.getMessage());
+            throw e;
+        }
+        return checkout(connection, System.nanoTime() - start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = delegate.getConnection(username, password);
+        } catch (SQLException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        }
+        return checkout(connection, System.nanoTime() - start);
+    }
+
+    private Connection checkout(Connection connection, long waitNanos) {
+        checkouts.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+        active.incrementAndGet();
+        Throwable checkoutTrace = (leakDetectionThresholdMillis > 0 && log.isDebugEnabled()) ? new Throwable("Connection checked out here") : null;
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new PooledConnectionHandler(connection, checkoutTrace));
+    }
+
+    private void checkin(long heldNanos, Throwable checkoutTrace) {
+        active.decrementAndGet();
+        long heldMillis = TimeUnit.NANOSECONDS.toMillis(heldNanos);
+        if (leakDetectionThresholdMillis > 0 && heldMillis > leakDetectionThresholdMillis) {
+            leaks.incrementAndGet();
+            if (checkoutTrace != null) {
+                log.warn("Connection for {} was held for {} ms on thread {}", persistenceUnitName, heldMillis, Thread.currentThread().getName(), checkoutTrace);
+            } else {
+                log.warn("Connection for {} was held for {} ms on thread {}", persistenceUnitName, heldMillis, Thread.currentThread().getName());
+            }
+        }
+    }
+
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Throwable checkoutTrace;
+        private final long checkoutTime = System.nanoTime();
+        private boolean closed = false;
+
+        private PooledConnectionHandler(Connection connection, Throwable checkoutTrace) {
+            this.connection = connection;
+            this.checkoutTrace = checkoutTrace;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close")) {
+                synchronized (this) {
+                    if (!closed) {
+                        closed = true;
+                        checkin(System.nanoTime() - checkoutTime, checkoutTrace);
+                    }
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @Override
+    public String getPersistenceUnitName() {
+        return persistenceUnitName;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        // the pool implementation is provided by the persistence manager,
+        // DBCP's BasicDataSource reports its idle connections as getNumIdle
+        try {
+            Method getNumIdle = delegate.getClass().getMethod("getNumIdle");
+            return ((Number) getNumIdle.invoke(delegate)).intValue();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public long getConnectionCheckouts() {
+        return checkouts.get();
+    }
+
+    @Override
+    public long getConnectionTimeouts() {
+        return timeouts.get();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long count = checkouts.get();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / count / 1000;
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    @Override
+    public long getLeakedConnections() {
+        return leaks.get();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+}
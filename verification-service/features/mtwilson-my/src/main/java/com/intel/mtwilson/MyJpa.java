@@ -7,6 +7,8 @@ package com.intel.mtwilson;
 import com.intel.mtwilson.flavor.controller.*;
 import com.intel.mtwilson.telemetry.controller.*;
 import java.io.IOException;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
 
 /**
  * Convenience class to instantiate JPA controllers for the purpose of writing
@@ -33,53 +35,157 @@ import java.io.IOException;
  * @author jbuhacoff
  */
 public class MyJpa {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MyJpa.class);
+    private static final int DEFAULT_REPLICA_MAX_STALENESS_SECONDS = 10;
     private final MyPersistenceManager pm;
+    private final boolean replica;
+    private MyJpa replicaJpa = null;
     
     public MyJpa(MyPersistenceManager pm) {
+        this(pm, false);
+    }
+    
+    private MyJpa(MyPersistenceManager pm, boolean replica) {
         this.pm = pm;
+        this.replica = replica;
+    }
+    
+    /**
+     * Returns controllers for read-only queries that may be served by the
+     * read replica, if one is configured and is no more than
+     * mtwilson.db.replica.max.staleness.seconds behind the primary.
+     * 
+     * My.jpa().replica().mwReport().findLatestMwReport(...)
+     * 
+     * @see #replica(int)
+     */
+    public MyJpa replica() throws IOException {
+        return replica(My.configuration().getConfiguration().getInt("mtwilson.db.replica.max.staleness.seconds",
+                DEFAULT_REPLICA_MAX_STALENESS_SECONDS));
+    }
+    
+    /**
+     * Returns controllers for read-only queries that may be served by the
+     * read replica. The primary is used instead when no replica is
+     * configured, the replica is unreachable or further behind than
+     * maxStalenessSeconds, or a unit of work is active on this thread, so
+     * that a transaction always reads its own writes. Nothing may be written
+     * with the returned controllers. A query that fails on the replica is not
+     * retried on the primary, use {@link #queryReplica(int, ReplicaQuery)}
+     * for that.
+     * 
+     * @param maxStalenessSeconds how far behind the primary the caller accepts the data to be
+     */
+    public MyJpa replica(int maxStalenessSeconds) {
+        if (replica || UnitOfWork.isActive()) {
+            return this;
+        }
+        ReadReplica readReplica = pm.getReadReplica();
+        if (readReplica == null || !readReplica.isAvailable(maxStalenessSeconds)) {
+            return this;
+        }
+        synchronized (this) {
+            if (replicaJpa == null) {
+                replicaJpa = new MyJpa(pm, true);
+            }
+            return replicaJpa;
+        }
+    }
+    
+    /**
+     * Runs a read-only query on the read replica, like {@link #replica()},
+     * and runs it again on the primary if it fails on the replica. The
+     * replica is then not used again until its retry period has passed.
+     * 
+     * @param query the query, which may run twice and must not write
+     * @return the result of the query
+     */
+    public <T> T queryReplica(ReplicaQuery<T> query) throws IOException {
+        return queryReplica(My.configuration().getConfiguration().getInt("mtwilson.db.replica.max.staleness.seconds",
+                DEFAULT_REPLICA_MAX_STALENESS_SECONDS), query);
+    }
+    
+    /**
+     * Runs a read-only query on the read replica, like
+     * {@link #replica(int)}, falling back to the primary if it fails on the
+     * replica.
+     * 
+     * @param maxStalenessSeconds how far behind the primary the caller accepts the data to be
+     * @param query the query, which may run twice and must not write
+     * @return the result of the query
+     */
+    public <T> T queryReplica(int maxStalenessSeconds, ReplicaQuery<T> query) throws IOException {
+        MyJpa replicaJpa = replica(maxStalenessSeconds);
+        if (replicaJpa == this) {
+            return query.run(this);
+        }
+        try {
+            return query.run(replicaJpa);
+        } catch (PersistenceException | IOException e) {
+            // queries on the JDBC connection report database errors as IOException
+            pm.getReadReplica().markUnavailable(e);
+            log.debug("Query failed on the read replica, running it on the primary", e);
+            return query.run(this);
+        }
+    }
+    
+    /**
+     * A read-only query that runs with the controllers of either the read
+     * replica or the primary.
+     */
+    public interface ReplicaQuery<T> {
+        T run(MyJpa jpa) throws IOException;
+    }
+    
+    private EntityManagerFactory flavorData() {
+        return replica ? pm.getFlavorDataReplica() : pm.getFlavorData();
+    }
+    
+    private EntityManagerFactory telemetryData() {
+        return replica ? pm.getTelemetryDataReplica() : pm.getTelemetryData();
     }
     
     public MwFlavorJpaController mwFlavor() throws IOException {
-        return new MwFlavorJpaController(pm.getFlavorData());
+        return new MwFlavorJpaController(flavorData());
     }
     
     public MwFlavorgroupJpaController mwFlavorgroup() throws IOException {
-        return new MwFlavorgroupJpaController(pm.getFlavorData());
+        return new MwFlavorgroupJpaController(flavorData());
     }
     
     public MwLinkFlavorFlavorgroupJpaController mwLinkFlavorFlavorgroup() throws IOException {
-        return new MwLinkFlavorFlavorgroupJpaController(pm.getFlavorData());
+        return new MwLinkFlavorFlavorgroupJpaController(flavorData());
     }
     
     public MwHostJpaController mwHost() throws IOException {
-        return new MwHostJpaController(pm.getFlavorData());
+        return new MwHostJpaController(flavorData());
     }
     
     public MwHostStatusJpaController mwHostStatus() throws IOException {
-        return new MwHostStatusJpaController(pm.getFlavorData());
+        return new MwHostStatusJpaController(flavorData());
     }
     
     public MwLinkFlavorHostJpaController mwLinkFlavorHost() throws IOException {
-        return new MwLinkFlavorHostJpaController(pm.getFlavorData());
+        return new MwLinkFlavorHostJpaController(flavorData());
     }
     
     public MwLinkFlavorgroupHostJpaController mwLinkFlavorgroupHost() throws IOException {
-        return new MwLinkFlavorgroupHostJpaController(pm.getFlavorData());
+        return new MwLinkFlavorgroupHostJpaController(flavorData());
     }
     
     public MwReportJpaController mwReport() throws IOException {
-        return new MwReportJpaController(pm.getFlavorData());
+        return new MwReportJpaController(flavorData());
     }
     
     public MwQueueJpaController mwQueue() throws IOException {
-        return new MwQueueJpaController(pm.getFlavorData());
+        return new MwQueueJpaController(flavorData());
     }
     
     public MwHostCredentialJpaController mwHostCredential() throws IOException {
-        return new MwHostCredentialJpaController(pm.getFlavorData());
+        return new MwHostCredentialJpaController(flavorData());
     }
     
     public MwTelemetryJpaController mwTelemetry() throws IOException {
-        return new MwTelemetryJpaController(pm.getTelemetryData());
+        return new MwTelemetryJpaController(telemetryData());
     }
 }
\ No newline at end of file
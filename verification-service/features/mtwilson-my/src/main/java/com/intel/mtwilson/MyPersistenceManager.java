@@ -31,6 +31,8 @@ public class MyPersistenceManager extends PersistenceManager {
     private static ClassLoader jpaClassLoader = null;
     
     private Properties jdbcProperties;
+    private Configuration replicaConfiguration = null;
+    private ReadReplica replica = null;
     public MyPersistenceManager(Properties jdbcProperties) {
         this.jdbcProperties = jdbcProperties;
     }
@@ -39,8 +41,15 @@ public class MyPersistenceManager extends PersistenceManager {
         log.debug("MyPersistenceManager: Database Host: {}", jdbcProperties.getProperty("mtwilson.db.host"));
         MyConfiguration c = new MyConfiguration(jdbcProperties);
         addPersistenceUnit("FlavorDataPU", getFlavorDataJpaProperties(c));
-        addPersistenceUnit("TelemetryDataPU", getFlavorDataJpaProperties(c));
+        addPersistenceUnit("TelemetryDataPU", getTelemetryDataJpaProperties(c));
         addPersistenceUnit("AuditDataPU", getAuditDataJpaProperties(c));
+        if (isReplicaConfigured(c.getConfiguration())) {
+            log.debug("MyPersistenceManager: Read replica: {}", c.getConfiguration().getString("mtwilson.db.replica.url",
+                    c.getConfiguration().getString("mtwilson.db.replica.host")));
+            addPersistenceUnit("FlavorDataReplicaPU", getReplicaJpaProperties(c.getConfiguration(), getFlavorDataJpaProperties(c), "FlavorDataReplicaPU"));
+            addPersistenceUnit("TelemetryDataReplicaPU", getReplicaJpaProperties(c.getConfiguration(), getTelemetryDataJpaProperties(c), "TelemetryDataReplicaPU"));
+            replicaConfiguration = c.getConfiguration();
+        }
     }
     public EntityManagerFactory getFlavorData() {
         return getEntityManagerFactory("FlavorDataPU");
@@ -48,6 +57,22 @@ public class MyPersistenceManager extends PersistenceManager {
     public EntityManagerFactory getTelemetryData() {
         return getEntityManagerFactory("TelemetryDataPU");
     }
+    public EntityManagerFactory getFlavorDataReplica() {
+        return getEntityManagerFactory("FlavorDataReplicaPU");
+    }
+    public EntityManagerFactory getTelemetryDataReplica() {
+        return getEntityManagerFactory("TelemetryDataReplicaPU");
+    }
+
+    /**
+     * @return the read replica, or null if no replica is configured
+     */
+    public synchronized ReadReplica getReadReplica() {
+        if (replica == null && replicaConfiguration != null) {
+            replica = new ReadReplica(getFlavorDataReplica(), replicaConfiguration);
+        }
+        return replica;
+    }
 
     // mtwilson-launcher calls setJpaClassLoader with the application classloader as parameter so that ASPersistenceManager can pass it o PersistenceManager as the classlaoder to use for loading persistence.xml files (because they are under /opt/mtwilson/java not in the .war)
 
@@ -78,6 +103,43 @@ public class MyPersistenceManager extends PersistenceManager {
         prop.setProperty("dbcp.validation.on.return", String.valueOf(myConfig.getBoolean("dbcp.validation.on.return", false))); 
     }
     
+    /**
+     * Copies the connection pool properties for a persistence unit. Pool sizes
+     * can be set per unit with mtwilson.db.pool.&lt;unit&gt;.max.active,
+     * .max.idle and .min.idle, falling back to the shared dbcp.* settings.
+     * The unit's DataSource is wrapped by {@link ConnectionPoolSessionCustomizer}
+     * to export pool metrics.
+     */
+    public static void copyConnectionPoolProperties(Configuration myConfig, Properties prop, String persistenceUnitName) {
+        copyDbcpProperties(myConfig, prop);
+        String prefix = String.format("mtwilson.db.pool.%s.", persistenceUnitName);
+        prop.setProperty("dbcp.max.active", myConfig.getString(prefix + "max.active", prop.getProperty("dbcp.max.active")));
+        prop.setProperty("dbcp.max.idle", myConfig.getString(prefix + "max.idle", prop.getProperty("dbcp.max.idle")));
+        prop.setProperty("dbcp.min.idle", myConfig.getString(prefix + "min.idle", prop.getProperty("dbcp.min.idle")));
+        prop.setProperty("eclipselink.session-name", persistenceUnitName);
+        if (myConfig.getBoolean("mtwilson.db.pool.metrics.enabled", true)) {
+            prop.setProperty("eclipselink.session.customizer", ConnectionPoolSessionCustomizer.class.getName());
+        } else {
+            prop.remove("eclipselink.session.customizer");
+        }
+    }
+    
+    /**
+     * Adds the PostgreSQL driver's server-side prepared statement settings to
+     * the JDBC URL unless the URL already sets them. A statement is prepared on
+     * the server after it runs mtwilson.db.prepare.threshold times on a
+     * connection, and each connection keeps up to
+     * mtwilson.db.prepared.statement.cache.queries prepared statements.
+     */
+    public static String addStatementCacheParameters(Configuration myConfig, String url) {
+        if (url == null || !url.startsWith("jdbc:postgresql:") || url.contains("prepareThreshold=")) {
+            return url;
+        }
+        return String.format("%s%sprepareThreshold=%d&preparedStatementCacheQueries=%d", url, url.contains("?") ? "&" : "?",
+                myConfig.getInt("mtwilson.db.prepare.threshold", 5),
+                myConfig.getInt("mtwilson.db.prepared.statement.cache.queries", 256));
+    }
+    
     public static Properties getFlavorDataJpaProperties(MyConfiguration config) {
         Properties prop = new Properties();
         Configuration myConfig = config.getConfiguration();
@@ -110,9 +172,51 @@ public class MyPersistenceManager extends PersistenceManager {
                 myConfig.getString("mtwilson.db.user", "root")));
         prop.put("javax.persistence.jdbc.password", myConfig.getString("mountwilson.as.db.password",
                 myConfig.getString("mtwilson.db.password", "password")));
+        prop.put("javax.persistence.jdbc.url", addStatementCacheParameters(myConfig, prop.getProperty("javax.persistence.jdbc.url")));
         prop.put("eclipselink.jdbc.batch-writing", "JDBC");
         log.debug("FlavorData javax.persistence.jdbc.url={}", prop.getProperty("javax.persistence.jdbc.url"));
-        copyDbcpProperties(myConfig, prop);
+        copyConnectionPoolProperties(myConfig, prop, "FlavorDataPU");
+        return prop;
+    }
+    
+    public static Properties getTelemetryDataJpaProperties(MyConfiguration config) {
+        Properties prop = getFlavorDataJpaProperties(config);
+        copyConnectionPoolProperties(config.getConfiguration(), prop, "TelemetryDataPU");
+        return prop;
+    }
+    
+    public static boolean isReplicaConfigured(Configuration myConfig) {
+        return !myConfig.getString("mtwilson.db.replica.url", "").isEmpty()
+                || !myConfig.getString("mtwilson.db.replica.host", "").isEmpty();
+    }
+    
+    /**
+     * Copies the properties of a primary persistence unit, connecting instead
+     * to the read replica at mtwilson.db.replica.url, or at
+     * mtwilson.db.replica.host with the primary's port and schema unless
+     * mtwilson.db.replica.port or .schema are set. The replica uses the
+     * primary's credentials unless mtwilson.db.replica.user and .password are
+     * set.
+     */
+    public static Properties getReplicaJpaProperties(Configuration myConfig, Properties primary, String persistenceUnitName) {
+        Properties prop = new Properties();
+        prop.putAll(primary);
+        prop.put("javax.persistence.jdbc.host", myConfig.getString("mtwilson.db.replica.host", primary.getProperty("javax.persistence.jdbc.host")));
+        String url = myConfig.getString("mtwilson.db.replica.url", "");
+        if (url.isEmpty()) {
+            url = String.format("jdbc:%s://%s:%s/%s?autoReconnect=true",
+                    primary.getProperty("javax.persistence.jdbc.scheme"),
+                    prop.getProperty("javax.persistence.jdbc.host"),
+                    myConfig.getString("mtwilson.db.replica.port", primary.getProperty("javax.persistence.jdbc.port")),
+                    myConfig.getString("mtwilson.db.replica.schema", primary.getProperty("javax.persistence.jdbc.schema")));
+        }
+        prop.put("javax.persistence.jdbc.url", addStatementCacheParameters(myConfig, url));
+        prop.put("javax.persistence.jdbc.user", myConfig.getString("mtwilson.db.replica.user",
+                primary.getProperty("javax.persistence.jdbc.user")));
+        prop.put("javax.persistence.jdbc.password", myConfig.getString("mtwilson.db.replica.password",
+                primary.getProperty("javax.persistence.jdbc.password")));
+        log.debug("{} javax.persistence.jdbc.url={}", persistenceUnitName, prop.getProperty("javax.persistence.jdbc.url"));
+        copyConnectionPoolProperties(myConfig, prop, persistenceUnitName);
         return prop;
     }
     
@@ -155,6 +259,7 @@ public class MyPersistenceManager extends PersistenceManager {
                 prop.get("javax.persistence.jdbc.host"),
                 prop.get("javax.persistence.jdbc.port"),
                 prop.get("javax.persistence.jdbc.schema")));
+        prop.put("javax.persistence.jdbc.url", addStatementCacheParameters(config.getConfiguration(), prop.getProperty("javax.persistence.jdbc.url")));
         
         if (System.getenv("MTWILSON_DB_USER") != null && !System.getenv("MTWILSON_DB_USER").isEmpty()) {
             prop.put("javax.persistence.jdbc.user",
@@ -206,8 +311,9 @@ public class MyPersistenceManager extends PersistenceManager {
                 myConfig.getString("mountwilson.audit.db.password", 
                 myConfig.getString("mtwilson.db.password", 
                 "password")));
+        prop.put("javax.persistence.jdbc.url", addStatementCacheParameters(myConfig, prop.getProperty("javax.persistence.jdbc.url")));
         log.debug("AuditData javax.persistence.jdbc.url={}", prop.getProperty("javax.persistence.jdbc.url"));
-        copyDbcpProperties(myConfig, prop);
+        copyConnectionPoolProperties(myConfig, prop, "AuditDataPU");
         return prop;
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Tracks whether the read replica database can serve a read-only query. The
+ * replica is used only while it answers and its replication lag is within
+ * the staleness the caller accepts; otherwise callers fall back to the
+ * primary.
+ *
+ * The lag is measured with mtwilson.db.replica.lag.query at most once every
+ * mtwilson.db.replica.lag.check.interval.ms. If the replica cannot be
+ * reached it is not used again for mtwilson.db.replica.retry.seconds.
+ */
+public class ReadReplica {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReadReplica.class);
+    // an idle primary does not advance the replay timestamp, so a replica
+    // that has replayed everything it received is treated as current; the
+    // functions are named by the server version, the xlog names were
+    // replaced by the wal names in PostgreSQL 10
+    private static final String DEFAULT_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN pg_last_%s() = pg_last_%s() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+    private static final int WAL_FUNCTIONS_SERVER_VERSION = 100000;
+    private static final long DEFAULT_LAG_CHECK_INTERVAL_MILLIS = 5000;
+    private static final long DEFAULT_RETRY_SECONDS = 30;
+
+    private final EntityManagerFactory emf;
+    private volatile String lagQuery;
+    private final long lagCheckIntervalMillis;
+    private final long retryMillis;
+    private final AtomicBoolean checking = new AtomicBoolean(false);
+    private volatile long checkedAt = 0;
+    private volatile double lagSeconds = Double.MAX_VALUE;
+    private volatile long unavailableUntil = 0;
+
+    public ReadReplica(EntityManagerFactory emf, Configuration config) {
+        this.emf = emf;
+        this.lagQuery = config.getString("mtwilson.db.replica.lag.query", null);
+        this.lagCheckIntervalMillis = config.getLong("mtwilson.db.replica.lag.check.interval.ms", DEFAULT_LAG_CHECK_INTERVAL_MILLIS);
+        this.retryMillis = TimeUnit.SECONDS.toMillis(config.getLong("mtwilson.db.replica.retry.seconds", DEFAULT_RETRY_SECONDS));
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return emf;
+    }
+
+    /**
+     * @param maxStalenessSeconds how far behind the primary the caller accepts the data to be
+     * @return true if the replica can serve the query
+     */
+    public boolean isAvailable(int maxStalenessSeconds) {
+        long now = System.currentTimeMillis();
+        if (now < unavailableUntil) {
+            return false;
+        }
+        // one caller refreshes the lag, the others use the last measurement
+        if (now - checkedAt >= lagCheckIntervalMillis && checking.compareAndSet(false, true)) {
+            try {
+                lagSeconds = queryLagSeconds();
+                checkedAt = now;
+            } catch (RuntimeException e) {
+                markUnavailable(e);
+                return false;
+            } finally {
+                checking.set(false);
+            }
+        }
+        if (lagSeconds > maxStalenessSeconds) {
+            log.debug("Replica is {} seconds behind, more than the {} seconds allowed", lagSeconds, maxStalenessSeconds);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops using the replica for the retry period, for example after a
+     * query sent to it failed.
+     */
+    public void markUnavailable(Throwable cause) {
+        unavailableUntil = System.currentTimeMillis() + retryMillis;
+        lagSeconds = Double.MAX_VALUE;
+        checkedAt = 0;
+        log.warn("Read replica is unavailable, using the primary database for {} ms: {}", retryMillis, cause.getMessage());
+    }
+
+    private double queryLagSeconds() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            if (lagQuery == null) {
+                lagQuery = getDefaultLagQuery(em);
+            }
+            Object lag = em.createNativeQuery(lagQuery).getSingleResult();
+            return lag == null ? 0 : ((Number) lag).doubleValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String getDefaultLagQuery(EntityManager em) {
+        Object version = em.createNativeQuery("SELECT current_setting('server_version_num')").getSingleResult();
+        if (Integer.parseInt(version.toString()) >= WAL_FUNCTIONS_SERVER_VERSION) {
+            return String.format(DEFAULT_LAG_QUERY, "wal_receive_lsn", "wal_replay_lsn");
+        }
+        return String.format(DEFAULT_LAG_QUERY, "xlog_receive_location", "xlog_replay_location");
+    }
+}
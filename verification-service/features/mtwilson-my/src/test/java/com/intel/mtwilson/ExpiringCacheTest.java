@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void testValueIsCachedUntilInvalidated() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test cache");
+        cache.put("a", "1", cache.getGeneration(), 60);
+        cache.put("b", "2", cache.getGeneration(), 60);
+        assertEquals("1", cache.get("a"));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.invalidateAll();
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testValueLoadedBeforeInvalidationIsNotCached() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test cache");
+        long generation = cache.getGeneration();
+        // the key was not cached, the invalidation still counts
+        cache.invalidate("a");
+        cache.put("a", "1", generation, 60);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testValueIsNotCachedWithoutExpiry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test cache");
+        cache.put("a", "1", cache.getGeneration(), 0);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testFullCacheDoesNotCacheNewValues() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test cache", 1);
+        cache.put("a", "1", cache.getGeneration(), 60);
+        cache.put("b", "2", cache.getGeneration(), 60);
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+}
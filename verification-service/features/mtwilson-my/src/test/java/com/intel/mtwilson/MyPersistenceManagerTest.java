@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson;
+
+import java.util.HashMap;
+import java.util.Properties;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.MapConfiguration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class MyPersistenceManagerTest {
+
+    @Test
+    public void testStatementCacheParameters() {
+        Configuration config = new MapConfiguration(new HashMap<String, Object>());
+        assertEquals("jdbc:postgresql://localhost:5432/mw_as?autoReconnect=true&prepareThreshold=5&preparedStatementCacheQueries=256",
+                MyPersistenceManager.addStatementCacheParameters(config, "jdbc:postgresql://localhost:5432/mw_as?autoReconnect=true"));
+        assertEquals("jdbc:postgresql://localhost:5432/mw_as?prepareThreshold=1",
+                MyPersistenceManager.addStatementCacheParameters(config, "jdbc:postgresql://localhost:5432/mw_as?prepareThreshold=1"));
+        assertEquals("jdbc:mysql://localhost:3306/mw_as",
+                MyPersistenceManager.addStatementCacheParameters(config, "jdbc:mysql://localhost:3306/mw_as"));
+    }
+
+    @Test
+    public void testConnectionPoolPropertiesPerUnit() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("dbcp.max.active", "100");
+        map.put("mtwilson.db.pool.AuditDataPU.max.active", "20");
+        Configuration config = new MapConfiguration(map);
+        Properties flavorData = new Properties();
+        MyPersistenceManager.copyConnectionPoolProperties(config, flavorData, "FlavorDataPU");
+        assertEquals("100", flavorData.getProperty("dbcp.max.active"));
+        Properties auditData = new Properties();
+        MyPersistenceManager.copyConnectionPoolProperties(config, auditData, "AuditDataPU");
+        assertEquals("20", auditData.getProperty("dbcp.max.active"));
+        assertEquals("AuditDataPU", auditData.getProperty("eclipselink.session-name"));
+    }
+
+    @Test
+    public void testReplicaProperties() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("mtwilson.db.replica.host", "replica.example.com");
+        map.put("mtwilson.db.replica.user", "reader");
+        Configuration config = new MapConfiguration(map);
+        Properties primary = new Properties();
+        primary.put("javax.persistence.jdbc.scheme", "postgresql");
+        primary.put("javax.persistence.jdbc.host", "localhost");
+        primary.put("javax.persistence.jdbc.port", "5432");
+        primary.put("javax.persistence.jdbc.schema", "mw_as");
+        primary.put("javax.persistence.jdbc.user", "root");
+        primary.put("javax.persistence.jdbc.password", "password");
+        assertTrue(MyPersistenceManager.isReplicaConfigured(config));
+        Properties replica = MyPersistenceManager.getReplicaJpaProperties(config, primary, "FlavorDataReplicaPU");
+        assertEquals("jdbc:postgresql://replica.example.com:5432/mw_as?autoReconnect=true&prepareThreshold=5&preparedStatementCacheQueries=256",
+                replica.getProperty("javax.persistence.jdbc.url"));
+        assertEquals("reader", replica.getProperty("javax.persistence.jdbc.user"));
+        assertEquals("password", replica.getProperty("javax.persistence.jdbc.password"));
+        assertEquals("FlavorDataReplicaPU", replica.getProperty("eclipselink.session-name"));
+        assertFalse(MyPersistenceManager.isReplicaConfigured(new MapConfiguration(new HashMap<String, Object>())));
+    }
+}
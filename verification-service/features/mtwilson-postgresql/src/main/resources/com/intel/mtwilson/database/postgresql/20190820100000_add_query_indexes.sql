@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 20, 2019
+ */
+
+-- flavor searches filter on the flavor part, and unique flavor lookups compare the lower case hardware UUID
+CREATE INDEX IF NOT EXISTS idx_flavor_flavor_part ON mw_flavor ((content -> 'meta' -> 'description' ->> 'flavor_part'));
+CREATE INDEX IF NOT EXISTS idx_flavor_hardware_uuid_lower ON mw_flavor (LOWER(content -> 'meta' -> 'description' ->> 'hardware_uuid'));
+
+-- the unique link indexes lead with the flavor, lookups by flavorgroup or host need their own
+CREATE INDEX IF NOT EXISTS idx_flavor_flavorgroup_flavorgroup_id ON mw_link_flavor_flavorgroup (flavorgroup_id ASC);
+CREATE INDEX IF NOT EXISTS idx_flavor_host_host_id ON mw_link_flavor_host (host_id ASC);
+CREATE INDEX IF NOT EXISTS idx_flavorgroup_host_host_id ON mw_link_flavorgroup_host (host_id ASC);
+
+-- the expiring report scan used by the trust cache refresh and report searches by date,
+-- the latest report per host is found through the existing host index
+CREATE INDEX IF NOT EXISTS idx_report_expiration ON mw_report (expiration);
+CREATE INDEX IF NOT EXISTS idx_report_created ON mw_report (created);
+
+-- queue polling by state and queue entry lookup by action parameter
+CREATE INDEX IF NOT EXISTS idx_queue_status ON mw_queue (status);
+CREATE INDEX IF NOT EXISTS idx_queue_action_parameters ON mw_queue USING GIN ((action_parameters::jsonb) jsonb_path_ops);
+
+ANALYZE mw_flavor;
+ANALYZE mw_link_flavor_flavorgroup;
+ANALYZE mw_link_flavor_host;
+ANALYZE mw_link_flavorgroup_host;
+ANALYZE mw_report;
+ANALYZE mw_queue;
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190820100000,NOW(),'Added indexes for flavor, link, report and queue queries');
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 21, 2019
+ */
+
+-- store the host report, host status and queue parameters as jsonb so they can be indexed
+ALTER TABLE mw_host_status ALTER COLUMN status TYPE jsonb USING status::jsonb;
+ALTER TABLE mw_host_status ALTER COLUMN host_report TYPE jsonb USING host_report::jsonb;
+DROP INDEX IF EXISTS idx_queue_action_parameters;
+ALTER TABLE mw_queue ALTER COLUMN action_parameters TYPE jsonb USING action_parameters::jsonb;
+
+-- the fields that are searched on are promoted to plain columns, the AIK certificate is
+-- kept as a digest since the certificate itself is too large for a btree index entry
+ALTER TABLE mw_host_status ADD COLUMN hardware_uuid VARCHAR(36);
+ALTER TABLE mw_host_status ADD COLUMN aik_certificate_digest CHAR(32);
+ALTER TABLE mw_queue ADD COLUMN host_id VARCHAR(36);
+
+-- Function which keeps the promoted host status columns in step with the host report
+CREATE OR REPLACE FUNCTION mw_host_status_promote_columns()
+  RETURNS trigger AS
+  '
+    BEGIN
+      NEW.hardware_uuid := LOWER(NEW.host_report -> ''host_info'' ->> ''hardware_uuid'');
+      NEW.aik_certificate_digest := MD5(NEW.host_report ->> ''aik_certificate'');
+      RETURN NEW;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Function which keeps the promoted queue columns in step with the action parameters
+CREATE OR REPLACE FUNCTION mw_queue_promote_columns()
+  RETURNS trigger AS
+  '
+    BEGIN
+      NEW.host_id := NEW.action_parameters ->> ''host_id'';
+      RETURN NEW;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+DROP TRIGGER IF EXISTS mw_host_status_promote_columns_trigger ON mw_host_status;
+CREATE TRIGGER mw_host_status_promote_columns_trigger
+BEFORE INSERT OR UPDATE OF host_report ON mw_host_status
+FOR EACH ROW EXECUTE PROCEDURE mw_host_status_promote_columns();
+
+DROP TRIGGER IF EXISTS mw_queue_promote_columns_trigger ON mw_queue;
+CREATE TRIGGER mw_queue_promote_columns_trigger
+BEFORE INSERT OR UPDATE OF action_parameters ON mw_queue
+FOR EACH ROW EXECUTE PROCEDURE mw_queue_promote_columns();
+
+-- populate the promoted columns for existing rows
+UPDATE mw_host_status SET hardware_uuid = LOWER(host_report -> 'host_info' ->> 'hardware_uuid'),
+    aik_certificate_digest = MD5(host_report ->> 'aik_certificate');
+UPDATE mw_queue SET host_id = action_parameters ->> 'host_id';
+
+CREATE INDEX IF NOT EXISTS idx_host_status_hardware_uuid ON mw_host_status (hardware_uuid);
+CREATE INDEX IF NOT EXISTS idx_host_status_aik_certificate_digest ON mw_host_status (aik_certificate_digest);
+-- host searches by any other host info key compare the text value of the key, which matches
+-- boolean and numeric fields as well, and are not indexed
+
+CREATE INDEX IF NOT EXISTS idx_queue_action_host_id ON mw_queue (queue_action, host_id);
+CREATE INDEX IF NOT EXISTS idx_queue_action_parameters ON mw_queue USING GIN (action_parameters jsonb_path_ops);
+
+ANALYZE mw_host_status;
+ANALYZE mw_queue;
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190821100000,NOW(),'Converted host status and queue json columns to jsonb with promoted lookup columns');
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 22, 2019
+ */
+
+-- Function which tells listening nodes that a cached reference table changed,
+-- the payload is the name of the table
+CREATE OR REPLACE FUNCTION mw_notify_reference_data()
+  RETURNS trigger AS
+  '
+    BEGIN
+      PERFORM pg_notify(''mtwilson_reference_data'', TG_TABLE_NAME);
+      RETURN NULL;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+DROP TRIGGER IF EXISTS mw_flavorgroup_notify_trigger ON mw_flavorgroup;
+CREATE TRIGGER mw_flavorgroup_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_flavorgroup
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+DROP TRIGGER IF EXISTS mw_link_flavorgroup_host_notify_trigger ON mw_link_flavorgroup_host;
+CREATE TRIGGER mw_link_flavorgroup_host_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_link_flavorgroup_host
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+DROP TRIGGER IF EXISTS mw_host_credential_notify_trigger ON mw_host_credential;
+CREATE TRIGGER mw_host_credential_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_host_credential
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190822100000,NOW(),'Added notifications for changes to cached reference tables');
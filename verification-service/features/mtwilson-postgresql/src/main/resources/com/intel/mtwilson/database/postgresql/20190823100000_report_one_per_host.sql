@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 23, 2019
+ */
+
+-- mw_report holds the current report of each host, which is updated in place on every
+-- refresh, and the report history is kept in the rotated audit log. Concurrent first
+-- verifications of a host could insert a second report, and reports of deleted hosts
+-- could be left behind, so remove both and let the database enforce one report per host.
+-- The number of reports removed is reported in the migration output and the server log.
+DO
+  '
+    DECLARE
+      superseded_count integer;
+      orphaned_count integer;
+    BEGIN
+      DELETE FROM mw_report r USING mw_report newer
+          WHERE r.host_id = newer.host_id
+          AND (r.created < newer.created OR (r.created = newer.created AND r.id < newer.id));
+      GET DIAGNOSTICS superseded_count = ROW_COUNT;
+      DELETE FROM mw_report r WHERE NOT EXISTS (SELECT 1 FROM mw_host h WHERE h.id = r.host_id);
+      GET DIAGNOSTICS orphaned_count = ROW_COUNT;
+      IF superseded_count > 0 OR orphaned_count > 0 THEN
+        RAISE WARNING ''Removed % superseded reports and % reports of deleted hosts from mw_report'',
+            superseded_count, orphaned_count;
+      END IF;
+    END;
+  ';
+
+-- the unique host index also serves the latest report lookups
+DROP INDEX IF EXISTS idx_report_host_id;
+CREATE UNIQUE INDEX idx_report_host_id ON mw_report (host_id ASC);
+
+-- every row is rewritten on each refresh, vacuum the table and its large SAML and trust
+-- report values long before the default 20% of them are dead
+ALTER TABLE mw_report SET (autovacuum_vacuum_scale_factor = 0.02, autovacuum_analyze_scale_factor = 0.05,
+    toast.autovacuum_vacuum_scale_factor = 0.02);
+
+ANALYZE mw_report;
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190823100000,NOW(),'Limited mw_report to one report per host');
@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 24, 2019
+ */
+
+-- host searches by TLS policy, the other host search criteria already have indexes
+CREATE INDEX IF NOT EXISTS idx_host_tls_policy_id ON mw_host (tls_policy_id);
+
+ANALYZE mw_host;
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190824100000,NOW(),'Added index for host searches by TLS policy');
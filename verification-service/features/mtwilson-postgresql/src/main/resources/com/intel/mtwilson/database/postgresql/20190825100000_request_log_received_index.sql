@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 25, 2019
+ */
+
+-- nodes sharing the anti-replay window read each other's recent requests, and old requests are archived, by received time
+CREATE INDEX IF NOT EXISTS idx_request_log_received ON mw_request_log (received);
+
+ANALYZE mw_request_log;
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190825100000,NOW(),'Added received time index to mw_request_log');
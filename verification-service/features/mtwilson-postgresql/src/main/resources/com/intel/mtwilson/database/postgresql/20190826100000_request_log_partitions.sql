@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 26, 2019
+ */
+
+-- mw_request_log is partitioned by the hour the request was received, so
+-- that old requests are archived by dropping whole partitions instead of
+-- deleting rows. Partitions are child tables named mw_request_log_pYYYYMMDDHH,
+-- created ahead of time by the request log archival job. A unique index only
+-- covers its own table, so the routing trigger checks that a digest is unique
+-- across mw_request_log and all of its partitions.
+
+-- Creates the partition holding the requests received during the hour of
+-- the given time, if it does not exist yet, and returns its name
+CREATE OR REPLACE FUNCTION mw_request_log_create_partition(start timestamp)
+  RETURNS text AS
+  '
+    DECLARE
+      hour_start timestamp := date_trunc(''hour'', start);
+      partition_name text := ''mw_request_log_p'' || to_char(hour_start, ''YYYYMMDDHH24'');
+    BEGIN
+      IF NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = partition_name) THEN
+        EXECUTE format(''CREATE TABLE IF NOT EXISTS %I (CHECK (received >= %L AND received < %L)) INHERITS (mw_request_log)'', partition_name, hour_start, hour_start + interval ''1 hour'');
+        EXECUTE format(''CREATE UNIQUE INDEX IF NOT EXISTS %I ON %I (LOWER(digest))'', partition_name || ''_unique_constraint'', partition_name);
+        EXECUTE format(''CREATE INDEX IF NOT EXISTS %I ON %I (received)'', partition_name || ''_received'', partition_name);
+      END IF;
+      RETURN partition_name;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Routes requests inserted into mw_request_log to their partition. Requests
+-- without a partition stay in mw_request_log and are deleted by the archival
+-- job. A digest that is already logged, in any partition, is rejected with a
+-- unique violation like the unique index of a single table would.
+CREATE OR REPLACE FUNCTION mw_request_log_insert_partition()
+  RETURNS trigger AS
+  '
+    DECLARE
+      partition_name text := ''mw_request_log_p'' || to_char(NEW.received, ''YYYYMMDDHH24'');
+    BEGIN
+      -- concurrent inserts of the same digest wait for each other until commit,
+      -- so the second one sees the first when it checks
+      PERFORM pg_advisory_xact_lock(hashtext(''mw_request_log''), hashtext(LOWER(NEW.digest)));
+      IF EXISTS (SELECT 1 FROM mw_request_log WHERE LOWER(digest) = LOWER(NEW.digest)) THEN
+        RAISE EXCEPTION ''Request with digest % is already logged'', NEW.digest USING ERRCODE = ''unique_violation'';
+      END IF;
+      IF NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = partition_name) THEN
+        RETURN NEW;
+      END IF;
+      EXECUTE format(''INSERT INTO %I SELECT ($1).*'', partition_name) USING NEW;
+      RETURN NULL;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+DROP TRIGGER IF EXISTS mw_request_log_partition_trigger ON mw_request_log;
+CREATE TRIGGER mw_request_log_partition_trigger
+BEFORE INSERT ON mw_request_log
+FOR EACH ROW EXECUTE PROCEDURE mw_request_log_insert_partition();
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190826100000,NOW(),'Partitioned mw_request_log by hour');
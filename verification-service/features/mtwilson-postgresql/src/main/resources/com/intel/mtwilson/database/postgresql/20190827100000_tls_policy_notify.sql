@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 27, 2019
+ */
+
+DROP TRIGGER IF EXISTS mw_tls_policy_notify_trigger ON mw_tls_policy;
+CREATE TRIGGER mw_tls_policy_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_tls_policy
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190827100000,NOW(),'Added notifications for changes to TLS policies');
@@ -0,0 +1,19 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Aug 28, 2019
+ */
+
+DROP TRIGGER IF EXISTS mw_flavor_notify_trigger ON mw_flavor;
+CREATE TRIGGER mw_flavor_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_flavor
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+DROP TRIGGER IF EXISTS mw_link_flavor_flavorgroup_notify_trigger ON mw_link_flavor_flavorgroup;
+CREATE TRIGGER mw_link_flavor_flavorgroup_notify_trigger
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mw_link_flavor_flavorgroup
+FOR EACH STATEMENT EXECUTE PROCEDURE mw_notify_reference_data();
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190828100000,NOW(),'Added notifications for changes to flavors and their flavorgroup links');
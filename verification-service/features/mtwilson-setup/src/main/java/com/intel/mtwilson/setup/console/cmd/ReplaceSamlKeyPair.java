@@ -124,22 +124,20 @@ public class ReplaceSamlKeyPair extends InteractiveCommand {
         configuration.set(SAML_ISSUER, issuer);
         provider.save(configuration);
         
-        // get list of current hosts
+        // add all current hosts to the flavor-verify queue, one page at a time
+        HostResource hosts = new HostResource();
         HostFilterCriteria criteria = new HostFilterCriteria();
         criteria.filter = false;
-        HostCollection hostCollection = new HostRepository().search(criteria);
-        
-        // return if no hosts exist
-        if (hostCollection == null || hostCollection.getHosts() == null
-                || hostCollection.getHosts().isEmpty()) {
-            return;
-        }
-        
-        // add all hosts to the flavor-verify queue
-        HostResource hosts = new HostResource();
-        for (Host host : hostCollection.getHosts()) {
-            hosts.addHostToFlavorVerifyQueue(host.getId(), true);
-        }
+        do {
+            HostCollection hostCollection = new HostRepository().search(criteria);
+            if (hostCollection == null || hostCollection.getHosts() == null) {
+                return;
+            }
+            for (Host host : hostCollection.getHosts()) {
+                hosts.addHostToFlavorVerifyQueue(host.getId(), true);
+            }
+            criteria.continuationToken = hostCollection.getContinuationToken();
+        } while (criteria.continuationToken != null);
     }
     
     public void validateInput() throws Exception {
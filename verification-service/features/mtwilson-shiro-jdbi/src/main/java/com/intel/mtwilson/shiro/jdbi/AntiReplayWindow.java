@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.shiro.RequestLogEntry;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Anti-replay protection for signed requests: remembers the digest of every
+ * request received during the anti-replay window so a request received a
+ * second time can be rejected. Requests dated before the start of the window
+ * must be rejected by the caller, since their digests may have been
+ * forgotten already.
+ *
+ * The digests are kept in memory, grouped in time buckets so that a whole
+ * bucket is forgotten at once when it leaves the window. At most
+ * mtwilson.anti.replay.max.entries digests are kept; when the window is full
+ * the oldest buckets are forgotten early and the start of the window moves
+ * past them, so that requests dated before the new start are rejected as
+ * stale instead of every new request being rejected. The bucket of the
+ * request being recorded is never forgotten early, so it may exceed the
+ * limit until it leaves the window.
+ *
+ * When several nodes serve the same clients,
+ * mtwilson.anti.replay.multi.node.enabled makes each node write the digests it
+ * accepts to mw_request_log in the background, every
+ * mtwilson.anti.replay.sync.interval.ms, and read the digests written by the
+ * other nodes. A request replayed to another node before both have synced is
+ * not rejected, so the interval bounds the exposure to cross-node replays;
+ * it is logged as a warning when the second node writes the digest.
+ */
+class AntiReplayWindow {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AntiReplayWindow.class);
+    private static final int BUCKETS = 16;
+    private static final int DEFAULT_MAX_ENTRIES = 1000000;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    // entries of other nodes are written up to one sync interval late, re-read
+    // a margin before the last read so they are not missed
+    private static final long SYNC_MARGIN_MILLIS = 10000;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    enum Result { ACCEPTED, REPLAYED, STALE }
+
+    private final String instance;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final int maxEntries;
+    private final long startedAt;
+    // digests received before this time were forgotten early because the window was full
+    private volatile long evictedBefore;
+    // digest to the time it was received
+    private final ConcurrentHashMap<String, Long> digests = new ConcurrentHashMap<>();
+    // bucket start time to the digests received during the bucket
+    private final ConcurrentSkipListMap<Long, Queue<String>> buckets = new ConcurrentSkipListMap<>();
+    // accepted requests not yet written to mw_request_log, only used by multiple nodes
+    private final Queue<RequestLogEntry> unsynced;
+
+    AntiReplayWindow(String instance, long windowMillis, int maxEntries, boolean multiNode) {
+        this.instance = instance;
+        this.windowMillis = windowMillis;
+        this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+        this.maxEntries = maxEntries;
+        this.startedAt = System.currentTimeMillis();
+        this.unsynced = multiNode ? new ConcurrentLinkedQueue<RequestLogEntry>() : null;
+    }
+
+    static AntiReplayWindow fromConfiguration(String instance) throws IOException {
+        Configuration config = My.configuration().getConfiguration();
+        boolean multiNode = config.getBoolean("mtwilson.anti.replay.multi.node.enabled", false);
+        AntiReplayWindow window = new AntiReplayWindow(instance, My.configuration().getAntiReplayProtectionWindowMilliseconds(),
+                config.getInt("mtwilson.anti.replay.max.entries", DEFAULT_MAX_ENTRIES), multiNode);
+        if (multiNode) {
+            window.startSync(config.getLong("mtwilson.anti.replay.sync.interval.ms", DEFAULT_SYNC_INTERVAL_MILLIS));
+        }
+        return window;
+    }
+
+    /**
+     * @return the earliest request date that is protected, requests dated
+     * before it must be rejected
+     */
+    Date getWindowStart() {
+        return new Date(Math.max(Math.max(startedAt, evictedBefore), System.currentTimeMillis() - windowMillis));
+    }
+
+    /**
+     * Remembers the digest of a request.
+     * @param requestLogEntry the request with its digest and received time
+     * @param requestDate the date of the request, covered by its signature
+     * @return ACCEPTED if the digest was not seen during the window, REPLAYED
+     * if it was, or STALE if the request is dated before the start of the
+     * window
+     */
+    Result record(RequestLogEntry requestLogEntry, Date requestDate) {
+        long received = requestLogEntry.getReceived().getTime();
+        expire(received);
+        if (requestDate.before(getWindowStart())) {
+            return Result.STALE;
+        }
+        if (digests.size() >= maxEntries) {
+            evict(received);
+            // evicting moves the start of the window
+            if (requestDate.before(getWindowStart())) {
+                return Result.STALE;
+            }
+        }
+        if (!remember(requestLogEntry.getDigest(), received)) {
+            return Result.REPLAYED;
+        }
+        if (unsynced != null) {
+            unsynced.add(requestLogEntry);
+        }
+        return Result.ACCEPTED;
+    }
+
+    int size() {
+        return digests.size();
+    }
+
+    private boolean remember(String digest, long received) {
+        // compared case insensitively like the unique index of mw_request_log
+        String key = digest.toLowerCase();
+        Long previous = digests.putIfAbsent(key, received);
+        if (previous != null) {
+            // an entry that left the window but was not expired yet does not count
+            if (previous >= received - windowMillis || !digests.replace(key, previous, received)) {
+                return false;
+            }
+        }
+        Long bucket = received - (received % bucketMillis);
+        Queue<String> bucketDigests = buckets.get(bucket);
+        if (bucketDigests == null) {
+            Queue<String> created = new ConcurrentLinkedQueue<>();
+            bucketDigests = buckets.putIfAbsent(bucket, created);
+            if (bucketDigests == null) {
+                bucketDigests = created;
+            }
+        }
+        bucketDigests.add(key);
+        return true;
+    }
+
+    private void expire(long now) {
+        long expiresBefore = now - windowMillis;
+        Map.Entry<Long, Queue<String>> oldest = buckets.firstEntry();
+        while (oldest != null && oldest.getKey() + bucketMillis <= expiresBefore) {
+            forget(oldest, expiresBefore);
+            oldest = buckets.firstEntry();
+        }
+    }
+
+    /**
+     * Forgets the oldest buckets, except the bucket of the request being
+     * recorded, until the window holds less than the maximum number of
+     * digests, and moves the start of the window past them.
+     */
+    private synchronized void evict(long now) {
+        long currentBucket = now - (now % bucketMillis);
+        Map.Entry<Long, Queue<String>> oldest = buckets.firstEntry();
+        while (digests.size() >= maxEntries && oldest != null && oldest.getKey() < currentBucket) {
+            long forgottenBefore = oldest.getKey() + bucketMillis;
+            // the window start moves first so the forgotten digests cannot be replayed meanwhile
+            evictedBefore = Math.max(evictedBefore, forgottenBefore);
+            forget(oldest, forgottenBefore);
+            oldest = buckets.firstEntry();
+        }
+        log.warn("Anti-replay window is full, holds {} digests and rejects requests dated before {}", digests.size(), getWindowStart());
+    }
+
+    private void forget(Map.Entry<Long, Queue<String>> bucket, long forgottenBefore) {
+        if (buckets.remove(bucket.getKey(), bucket.getValue())) {
+            for (String key : bucket.getValue()) {
+                Long received = digests.get(key);
+                if (received != null && received < forgottenBefore) {
+                    digests.remove(key, received);
+                }
+            }
+        }
+    }
+
+    private void startSync(final long intervalMillis) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long readSince = startedAt - windowMillis;
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(intervalMillis);
+                        readSince = sync(readSince);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.warn("Cannot sync the anti-replay window with mw_request_log: {}", e.getMessage());
+                        log.debug("Cannot sync the anti-replay window with mw_request_log", e);
+                    }
+                }
+            }
+        }, "anti-replay-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes the digests accepted by this node since the last sync and
+     * remembers the ones written by the other nodes.
+     * @return the time to read the next entries of the other nodes from
+     */
+    private long sync(long readSince) throws Exception {
+        List<RequestLogEntry> accepted = new ArrayList<>();
+        RequestLogEntry requestLogEntry;
+        while ((requestLogEntry = unsynced.poll()) != null) {
+            accepted.add(requestLogEntry);
+        }
+        long readAt = System.currentTimeMillis();
+        try (LoginDAO dao = MyJdbi.authz()) {
+            if (!accepted.isEmpty()) {
+                write(dao, accepted);
+            }
+            // entries read again because of the margin are already remembered and skipped
+            for (RequestLogEntry other : dao.findRequestLogEntriesReceivedAfter(new Date(readSince), instance)) {
+                remember(other.getDigest(), other.getReceived().getTime());
+            }
+        } catch (Exception e) {
+            // keep the digests for the next attempt
+            unsynced.addAll(accepted);
+            throw e;
+        }
+        return readAt - SYNC_MARGIN_MILLIS;
+    }
+
+    /**
+     * Writes the digests accepted by this node, in one batch or, if a digest
+     * is already logged, one at a time. A digest another node has logged as
+     * well means both nodes accepted the same request before they synced,
+     * which is reported as a replay instead of being written again. Entries
+     * are removed from the list once they are handled, so only the ones left
+     * are retried if writing fails.
+     */
+    private void write(LoginDAO dao, List<RequestLogEntry> accepted) {
+        try {
+            dao.insertRequestLogEntries(accepted);
+            accepted.clear();
+            return;
+        } catch (RuntimeException e) {
+            if (!isUniqueViolation(e)) {
+                throw e;
+            }
+            log.debug("Some accepted digests are already logged, writing them one at a time", e);
+        }
+        Iterator<RequestLogEntry> iterator = accepted.iterator();
+        while (iterator.hasNext()) {
+            RequestLogEntry requestLogEntry = iterator.next();
+            try {
+                dao.insertRequestLogEntry(requestLogEntry);
+            } catch (RuntimeException e) {
+                if (!isUniqueViolation(e)) {
+                    throw e;
+                }
+                log.warn("Request from {} with digest {} was accepted by another node as well, it was replayed before the nodes synced",
+                        requestLogEntry.getSource(), requestLogEntry.getDigest());
+            }
+            iterator.remove();
+        }
+    }
+
+    private static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                // batch failures carry the statement error as the next exception
+                for (SQLException sqlException = (SQLException) cause; sqlException != null; sqlException = sqlException.getNextException()) {
+                    if (UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
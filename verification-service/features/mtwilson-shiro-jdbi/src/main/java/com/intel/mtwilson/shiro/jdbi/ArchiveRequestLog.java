@@ -4,13 +4,35 @@
  */
 package com.intel.mtwilson.shiro.jdbi;
 
+import com.intel.mtwilson.Folders;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.launcher.ext.annotations.Background;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.sql.SQLException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.configuration.Configuration;
+import org.postgresql.PGConnection;
 
 /**
+ * Archives the requests received before the anti-replay window.
+ *
+ * mw_request_log is partitioned by hour, so archiving drops the partitions
+ * that ended before the window instead of deleting rows. The partitions for
+ * the next mtwilson.request.log.partitions.ahead hours are created at the same
+ * time. Requests received while their partition did not exist are kept in
+ * mw_request_log itself and deleted row by row.
+ *
+ * When mtwilson.request.log.archive.export.enabled is true, each partition is
+ * exported to a gzipped CSV file in mtwilson.request.log.archive.export.path
+ * before it is dropped, and kept if the export fails.
  *
  * @author jbuhacoff
  */
@@ -18,6 +40,8 @@ import java.util.Calendar;
 public class ArchiveRequestLog implements Runnable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ArchiveRequestLog.class);
+    private static final Pattern PARTITION_NAME = Pattern.compile("mw_request_log_p(\\d{10})");
+    private static final int DEFAULT_PARTITIONS_AHEAD = 24;
 
     @Override
     public void run() {
@@ -26,12 +50,80 @@ public class ArchiveRequestLog implements Runnable {
             int expiresAfter = My.configuration().getAntiReplayProtectionWindowMilliseconds(); 
             Calendar expirationTime = Calendar.getInstance();
             expirationTime.add(Calendar.MILLISECOND, -expiresAfter);
+            try {
+                createPartitions(dao);
+                dropPartitionsEarlierThan(dao, expirationTime.getTime());
+            } catch (Exception e) {
+                log.error("Error while maintaining request log partitions", e);
+            }
             // delete requests older than the expiration time
             dao.deleteRequestLogEntriesEarlierThan(expirationTime.getTime());
-        } catch (IOException | SQLException e) {
+        } catch (Exception e) {
+            // caught so the scheduled runs continue after a failure
             log.error("Error while archiving old requests", e);
         }
     }
-    
-    
+
+    private void createPartitions(LoginDAO dao) {
+        int partitionsAhead = My.configuration().getConfiguration().getInt("mtwilson.request.log.partitions.ahead", DEFAULT_PARTITIONS_AHEAD);
+        Calendar hour = Calendar.getInstance();
+        for (int i = 0; i <= partitionsAhead; i++) {
+            dao.createRequestLogPartition(hour.getTime());
+            hour.add(Calendar.HOUR_OF_DAY, 1);
+        }
+    }
+
+    private void dropPartitionsEarlierThan(LoginDAO dao, Date notBefore) throws Exception {
+        File exportDirectory = getExportDirectory();
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHH");
+        for (String partition : dao.findRequestLogPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            Calendar end = Calendar.getInstance();
+            end.setTime(format.parse(matcher.group(1)));
+            end.add(Calendar.HOUR_OF_DAY, 1);
+            if (end.getTime().after(notBefore)) {
+                continue;
+            }
+            if (exportDirectory != null) {
+                try {
+                    export(partition, exportDirectory);
+                } catch (Exception e) {
+                    log.error("Cannot export request log partition {}, keeping it", partition, e);
+                    continue;
+                }
+            }
+            dao.dropRequestLogPartition(partition);
+            log.debug("Dropped request log partition {}", partition);
+        }
+    }
+
+    private File getExportDirectory() throws IOException {
+        Configuration config = My.configuration().getConfiguration();
+        if (!config.getBoolean("mtwilson.request.log.archive.export.enabled", false)) {
+            return null;
+        }
+        File directory = new File(config.getString("mtwilson.request.log.archive.export.path", Folders.repository() + File.separator + "request-log"));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create request log archive directory " + directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    private void export(String partition, File directory) throws Exception {
+        File file = new File(directory, partition + ".csv.gz");
+        // written under a temporary name so an interrupted export is never mistaken for a complete one
+        File partial = new File(directory, partition + ".csv.gz.part");
+        try (Connection connection = My.jdbc().connection();
+                OutputStream out = new GZIPOutputStream(new FileOutputStream(partial))) {
+            long rows = connection.unwrap(PGConnection.class).getCopyAPI().copyOut(
+                    String.format("COPY (SELECT instance, received, source, digest, content FROM %s) TO STDOUT WITH CSV HEADER", partition), out);
+            log.debug("Exported {} requests of {}", rows, partition);
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot rename " + partial.getAbsolutePath() + " to " + file.getName());
+        }
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.My;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Runs {@link ArchiveRequestLog} every mtwilson.request.log.archive.interval
+ * seconds, so that request log partitions are created before they are
+ * needed and dropped once they leave the anti-replay window.
+ */
+@WebListener
+public class ArchiveRequestLogLoader implements ServletContextListener {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ArchiveRequestLogLoader.class);
+    private static final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    private static final long DEFAULT_REQUEST_LOG_ARCHIVE_INTERVAL = 900; // seconds
+    private ScheduledFuture<?> future = null;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        long interval = My.configuration().getConfiguration().getLong("mtwilson.request.log.archive.interval", DEFAULT_REQUEST_LOG_ARCHIVE_INTERVAL);
+        if (interval <= 0) {
+            log.debug("mtwilson.request.log.archive.interval={}, skipping request log archival", interval);
+        } else {
+            future = executor.scheduleWithFixedDelay(new ArchiveRequestLog(), 0, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        if (future != null) {
+            future.cancel(true);
+        }
+        executor.shutdown();
+    }
+}
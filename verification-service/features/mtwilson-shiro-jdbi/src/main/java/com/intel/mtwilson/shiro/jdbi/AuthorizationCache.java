@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.ExpiringCache;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.user.management.rest.v2.model.Role;
+import com.intel.mtwilson.user.management.rest.v2.model.RolePermission;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Caches the roles and permissions of each user login, so that the
+ * authorization checks of a request are answered without querying the
+ * database.
+ *
+ * The user management repositories invalidate the whole cache whenever
+ * users, logins, roles or permissions change. Changes made by other nodes,
+ * or directly in the database by the setup commands, are picked up when the
+ * entries expire after mtwilson.authorization.cache.expiry.seconds.
+ */
+public class AuthorizationCache {
+
+    private static final long DEFAULT_AUTHORIZATION_CACHE_EXPIRY_SECONDS = 60;
+    private static final ExpiringCache<String, Authorization> authorizations = new ExpiringCache<>("Authorization cache");
+
+    private AuthorizationCache() {
+    }
+
+    /**
+     * Discards all cached roles and permissions.
+     */
+    public static void invalidateAll() {
+        authorizations.invalidateAll();
+    }
+
+    /**
+     * @return the roles and permissions of a certificate login, looked up
+     * in the database only if they are not cached
+     */
+    static Authorization getCertificateAuthorization(UUID loginCertificateId) throws SQLException, IOException {
+        String key = "certificate:" + loginCertificateId.toString();
+        Authorization authorization = authorizations.get(key);
+        if (authorization == null) {
+            long loadedGeneration = authorizations.getGeneration();
+            try (LoginDAO dao = MyJdbi.authz()) {
+                List<Role> roles = dao.findRolesByUserLoginCertificateId(loginCertificateId);
+                Set<String> roleIds = getRoleIds(roles);
+                List<RolePermission> permissions = roleIds.isEmpty() ? Collections.<RolePermission>emptyList() : dao.findRolePermissionsByCertificateRoleIds(roleIds);
+                authorization = new Authorization(roles, permissions);
+            }
+            put(key, authorization, loadedGeneration);
+        }
+        return authorization;
+    }
+
+    /**
+     * @return the roles and permissions of a password login, looked up in
+     * the database only if they are not cached
+     */
+    static Authorization getPasswordAuthorization(UUID loginPasswordId) throws SQLException, IOException {
+        Authorization authorization = authorizations.get("password:" + loginPasswordId.toString());
+        if (authorization == null) {
+            try (LoginDAO dao = MyJdbi.authz()) {
+                authorization = getPasswordAuthorization(dao, loginPasswordId);
+            }
+        }
+        return authorization;
+    }
+
+    /**
+     * @return the roles and permissions of a password login, looked up with
+     * the given DAO if they are not cached
+     */
+    static Authorization getPasswordAuthorization(LoginDAO dao, UUID loginPasswordId) {
+        String key = "password:" + loginPasswordId.toString();
+        Authorization authorization = authorizations.get(key);
+        if (authorization == null) {
+            long loadedGeneration = authorizations.getGeneration();
+            List<Role> roles = dao.findRolesByUserLoginPasswordId(loginPasswordId);
+            Set<String> roleIds = getRoleIds(roles);
+            List<RolePermission> permissions = roleIds.isEmpty() ? Collections.<RolePermission>emptyList() : dao.findRolePermissionsByPasswordRoleIds(roleIds);
+            authorization = new Authorization(roles, permissions);
+            put(key, authorization, loadedGeneration);
+        }
+        return authorization;
+    }
+
+    private static Set<String> getRoleIds(List<Role> roles) {
+        HashSet<String> roleIds = new HashSet<>();
+        for (Role role : roles) {
+            roleIds.add(role.getId().toString());
+        }
+        return roleIds;
+    }
+
+    private static void put(String key, Authorization authorization, long loadedGeneration) {
+        long expirySeconds = My.configuration().getConfiguration().getLong("mtwilson.authorization.cache.expiry.seconds", DEFAULT_AUTHORIZATION_CACHE_EXPIRY_SECONDS);
+        authorizations.put(key, authorization, loadedGeneration, expirySeconds);
+    }
+
+    /**
+     * The role names and permission strings of a user login.
+     */
+    static class Authorization {
+        private final Set<String> roleNames;
+        private final Set<String> permissions;
+
+        private Authorization(List<Role> roles, List<RolePermission> rolePermissions) {
+            HashSet<String> names = new HashSet<>();
+            for (Role role : roles) {
+                names.add(role.getRoleName());
+            }
+            HashSet<String> strings = new HashSet<>();
+            for (RolePermission permission : rolePermissions) {
+                strings.add(String.format("%s:%s:%s", permission.getPermitDomain(), permission.getPermitAction(), permission.getPermitSelection()));
+            }
+            this.roleNames = Collections.unmodifiableSet(names);
+            this.permissions = Collections.unmodifiableSet(strings);
+        }
+
+        Set<String> getRoleNames() {
+            return roleNames;
+        }
+
+        Set<String> getPermissions() {
+            return permissions;
+        }
+    }
+}
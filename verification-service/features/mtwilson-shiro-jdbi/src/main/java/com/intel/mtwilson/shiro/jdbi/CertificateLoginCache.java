@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.dcsg.cpg.crypto.Sha1Digest;
+import com.intel.dcsg.cpg.crypto.Sha256Digest;
+import com.intel.dcsg.cpg.crypto.Sha384Digest;
+import com.intel.dcsg.cpg.x509.X509Util;
+import com.intel.mtwilson.ExpiringCache;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.shiro.authc.x509.Fingerprint;
+import com.intel.mtwilson.user.management.rest.v2.model.User;
+import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificate;
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.sql.SQLException;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Caches the user login certificates presented by clients, keyed by the
+ * fingerprint in the request, together with their user and decoded
+ * certificate. Fingerprints that do not match an enabled login certificate
+ * are cached too, for a shorter time, so unknown clients do not cause a
+ * lookup on every request.
+ *
+ * The user management repositories invalidate the whole cache whenever a
+ * login certificate or a user changes. Changes made by other nodes, or
+ * directly in the database by the setup commands, are picked up when the
+ * entries expire after mtwilson.certificate.login.cache.expiry.seconds, or
+ * mtwilson.certificate.login.cache.negative.expiry.seconds for unknown
+ * fingerprints.
+ */
+public class CertificateLoginCache {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CertificateLoginCache.class);
+    private static final long DEFAULT_CERTIFICATE_LOGIN_CACHE_EXPIRY_SECONDS = 300;
+    private static final long DEFAULT_CERTIFICATE_LOGIN_CACHE_NEGATIVE_EXPIRY_SECONDS = 10;
+    private static final int DEFAULT_CERTIFICATE_LOGIN_CACHE_MAX_ENTRIES = 10000;
+    // cached for fingerprints that do not match an enabled login certificate
+    private static final CertificateLogin NOT_FOUND = new CertificateLogin(null, null, null);
+    // any client can present any fingerprint, so the cache is bounded
+    private static final ExpiringCache<String, CertificateLogin> certificateLogins = new ExpiringCache<>("Certificate login cache",
+            My.configuration().getConfiguration().getInt("mtwilson.certificate.login.cache.max.entries", DEFAULT_CERTIFICATE_LOGIN_CACHE_MAX_ENTRIES));
+
+    private CertificateLoginCache() {
+    }
+
+    /**
+     * Discards all cached login certificates.
+     */
+    public static void invalidateAll() {
+        certificateLogins.invalidateAll();
+    }
+
+    /**
+     * @param fingerprint the SHA-384, SHA-256 or SHA-1 fingerprint presented by the client
+     * @return the enabled login certificate with that fingerprint, or null if there is none
+     * @throws CertificateException if the stored certificate cannot be decoded
+     */
+    static CertificateLogin getCertificateLogin(Fingerprint fingerprint) throws SQLException, IOException, CertificateException {
+        String key = fingerprint.getHex();
+        CertificateLogin certificateLogin = certificateLogins.get(key);
+        if (certificateLogin == null) {
+            long loadedGeneration = certificateLogins.getGeneration();
+            certificateLogin = load(fingerprint);
+            put(key, certificateLogin, loadedGeneration);
+        }
+        return certificateLogin == NOT_FOUND ? null : certificateLogin;
+    }
+
+    private static CertificateLogin load(Fingerprint fingerprint) throws SQLException, IOException, CertificateException {
+        try (LoginDAO dao = MyJdbi.authz()) {
+            UserLoginCertificate userLoginCertificate = null;
+            if (Sha384Digest.isValid(fingerprint.getBytes())) {
+                userLoginCertificate = dao.findUserLoginCertificateBySha384(fingerprint.getBytes());
+            } else if (Sha256Digest.isValid(fingerprint.getBytes())) {
+                userLoginCertificate = dao.findUserLoginCertificateBySha256(fingerprint.getBytes());
+            } else if (Sha1Digest.isValid(fingerprint.getBytes())) {
+                userLoginCertificate = dao.findUserLoginCertificateBySha1(fingerprint.getBytes());
+            } else {
+                log.error("Unsupported digest length {}", fingerprint.getBytes().length);
+            }
+            if (userLoginCertificate == null || !userLoginCertificate.isEnabled()) {
+                return NOT_FOUND;
+            }
+            User user = dao.findUserById(userLoginCertificate.getUserId());
+            if (user == null) {
+                return NOT_FOUND;
+            }
+            X509Certificate certificate = X509Util.decodeDerCertificate(userLoginCertificate.getCertificate());
+            return new CertificateLogin(userLoginCertificate, user, certificate);
+        }
+    }
+
+    private static void put(String key, CertificateLogin certificateLogin, long loadedGeneration) {
+        Configuration config = My.configuration().getConfiguration();
+        long expirySeconds = certificateLogin == NOT_FOUND
+                ? config.getLong("mtwilson.certificate.login.cache.negative.expiry.seconds", DEFAULT_CERTIFICATE_LOGIN_CACHE_NEGATIVE_EXPIRY_SECONDS)
+                : config.getLong("mtwilson.certificate.login.cache.expiry.seconds", DEFAULT_CERTIFICATE_LOGIN_CACHE_EXPIRY_SECONDS);
+        certificateLogins.put(key, certificateLogin, loadedGeneration, expirySeconds);
+    }
+
+    /**
+     * An enabled login certificate with its user and decoded certificate.
+     */
+    static class CertificateLogin {
+        private final UserLoginCertificate userLoginCertificate;
+        private final User user;
+        private final X509Certificate certificate;
+
+        private CertificateLogin(UserLoginCertificate userLoginCertificate, User user, X509Certificate certificate) {
+            this.userLoginCertificate = userLoginCertificate;
+            this.user = user;
+            this.certificate = certificate;
+        }
+
+        UserLoginCertificate getUserLoginCertificate() {
+            return userLoginCertificate;
+        }
+
+        User getUser() {
+            return user;
+        }
+
+        X509Certificate getCertificate() {
+            return certificate;
+        }
+    }
+}
@@ -10,13 +10,10 @@ import com.intel.mtwilson.shiro.UsernameWithPermissions;
 import com.intel.mtwilson.crypto.password.HashedPassword;
 import com.intel.mtwilson.shiro.authc.password.LoginPasswordId;
 import com.intel.mtwilson.shiro.authc.password.PasswordAuthenticationInfo;
-import com.intel.mtwilson.user.management.rest.v2.model.Role;
-import com.intel.mtwilson.user.management.rest.v2.model.RolePermission;
 import com.intel.mtwilson.user.management.rest.v2.model.User;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginPassword;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import org.apache.shiro.authc.AccountException;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
@@ -56,28 +53,19 @@ public class JdbcPasswordRealm extends AuthorizingRealm {
         for (Username username : usernames) {
             log.debug("doGetAuthorizationInfo for username: {}", username.getUsername());
         }
-        try (LoginDAO dao = MyJdbi.authz()) {
+        // the roles and permissions are usually cached, a connection is only taken to look them up
+        try {
             
             Collection<LoginPasswordId> loginPasswordIds = pc.byType(LoginPasswordId.class);
             for (LoginPasswordId loginPasswordId : loginPasswordIds) {
                 log.debug("doGetAuthorizationInfo for login password id: {}", loginPasswordId.getLoginPasswordId());
                 
                 
-                List<Role> roles = dao.findRolesByUserLoginPasswordId(loginPasswordId.getLoginPasswordId());
-                HashSet<String> roleIds = new HashSet<>();
-                for (Role role : roles) {
-                    log.debug("doGetAuthorizationInfo found role: {}", role.getRoleName());
-                    roleIds.add(role.getId().toString());
-                    authzInfo.addRole(role.getRoleName());
-                }
-                if (!roleIds.isEmpty()) {
-                    List<RolePermission> permissions = dao.findRolePermissionsByPasswordRoleIds(roleIds);
-                    for (RolePermission permission : permissions) {
-                        log.debug("doGetAuthorizationInfo found permission: {} {} {}", permission.getPermitDomain(), permission.getPermitAction(), permission.getPermitSelection());
-                        authzInfo.addStringPermission(String.format("%s:%s:%s", permission.getPermitDomain(), permission.getPermitAction(), permission.getPermitSelection()));
-                    }
-                }
-                
+                AuthorizationCache.Authorization authorization = AuthorizationCache.getPasswordAuthorization(loginPasswordId.getLoginPasswordId());
+                log.debug("doGetAuthorizationInfo found roles: {}", authorization.getRoleNames());
+                authzInfo.addRoles(authorization.getRoleNames());
+                log.debug("doGetAuthorizationInfo found permissions: {}", authorization.getPermissions());
+                authzInfo.addStringPermissions(authorization.getPermissions());
             }
         } catch (Exception e) {
             log.debug("doGetAuthorizationInfo error", e);
@@ -105,19 +93,7 @@ public class JdbcPasswordRealm extends AuthorizingRealm {
                 user = dao.findUserById(userLoginPassword.getUserId());
                 
                 // now get the permissions and associate with the username
-                HashSet<String> stringPermissions = new HashSet<>();
-                List<Role> roles = dao.findRolesByUserLoginPasswordId(userLoginPassword.getId());
-                if (!roles.isEmpty()) {
-                    HashSet<String> roleIds = new HashSet<>();
-                    for(Role role : roles) {
-                        roleIds.add(role.getId().toString());
-                    }
-                    List<RolePermission> permissions = dao.findRolePermissionsByPasswordRoleIds(roleIds);
-                    for (RolePermission permission : permissions) {
-                        log.debug("doGetAuthorizationInfo found permission: {} {} {}", permission.getPermitDomain(), permission.getPermitAction(), permission.getPermitSelection());
-                        stringPermissions.add(String.format("%s:%s:%s", permission.getPermitDomain(), permission.getPermitAction(), permission.getPermitSelection()));
-                    }
-                }
+                HashSet<String> stringPermissions = new HashSet<>(AuthorizationCache.getPasswordAuthorization(dao, userLoginPassword.getId()).getPermissions());
                 
                 usernameWithPermissions = new UsernameWithPermissions(user.getUsername(), stringPermissions);
                 
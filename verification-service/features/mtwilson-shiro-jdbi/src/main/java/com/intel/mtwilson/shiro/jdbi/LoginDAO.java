@@ -17,8 +17,10 @@ import java.io.Closeable;
 import java.util.Date;
 import java.util.List;
 import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.Define;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterArgumentFactory;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
 import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
@@ -275,9 +277,21 @@ public interface LoginDAO extends Closeable {
     void insertRequestLogEntry(@BindBean RequestLogEntry requestLogEntry);
     @SqlQuery("select instance, received, source, digest from mw_request_log where digest=:digest")
     List<RequestLogEntry> findRequestLogEntryByDigest(@Bind("digest") String digestBase64);
+    // fails as a whole if any digest is already logged, see AntiReplayWindow
+    @SqlBatch("insert into mw_request_log (instance,received,source,digest,content) values (:instance,:received,:source,:digest,:content)")
+    void insertRequestLogEntries(@BindBean List<RequestLogEntry> requestLogEntries);
+    @SqlQuery("select instance, received, source, digest from mw_request_log where received > :since and instance != :instance")
+    List<RequestLogEntry> findRequestLogEntriesReceivedAfter(@Bind("since") Date since, @Bind("instance") String instance);
     @SqlQuery("select instance, received, source, digest from mw_request_log where received is not null order by received asc limit 1")
     RequestLogEntry findRequestLogEntryByEarliestDate();
-    @SqlUpdate("delete from mw_request_log where received < :notBefore")
+    // only deletes the requests received while their partition did not exist, partitions are dropped instead
+    @SqlUpdate("delete from only mw_request_log where received < :notBefore")
     void deleteRequestLogEntriesEarlierThan(@Bind("notBefore") Date notBefore);
+    @SqlQuery("select mw_request_log_create_partition(:start)")
+    String createRequestLogPartition(@Bind("start") Date start);
+    @SqlQuery("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid where i.inhparent = cast('mw_request_log' as regclass) order by c.relname")
+    List<String> findRequestLogPartitions();
+    @SqlUpdate("drop table if exists <partition>")
+    void dropRequestLogPartition(@Define("partition") String partition);
     
 }
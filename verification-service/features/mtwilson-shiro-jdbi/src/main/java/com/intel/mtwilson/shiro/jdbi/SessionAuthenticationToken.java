@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import org.apache.shiro.authc.HostAuthenticationToken;
+
+/**
+ * A session token presented in the {@code Authorization: Bearer} header of a
+ * request.
+ */
+public class SessionAuthenticationToken implements HostAuthenticationToken {
+
+    private final String token;
+    private final String host;
+
+    public SessionAuthenticationToken(String token, String host) {
+        this.token = token;
+        this.host = host;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return token;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return token;
+    }
+
+    @Override
+    public String getHost() {
+        return host;
+    }
+}
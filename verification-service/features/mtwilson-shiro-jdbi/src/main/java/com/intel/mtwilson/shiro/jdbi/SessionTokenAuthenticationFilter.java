@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.web.filter.authc.AuthenticatingFilter;
+import org.apache.shiro.web.util.WebUtils;
+
+/**
+ * Logs in requests that carry a session token in an
+ * {@code Authorization: Bearer} header, for {@link SessionTokenRealm}.
+ * Requests without a bearer token are passed to the next filter, so it can
+ * be chained with the X509 and password filters.
+ */
+public class SessionTokenAuthenticationFilter extends AuthenticatingFilter {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SessionTokenAuthenticationFilter.class);
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String AUTHENTICATION_SCHEME = "Bearer";
+    private String applicationName = "application";
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    @Override
+    protected boolean isAccessAllowed(ServletRequest request, ServletResponse response, Object mappedValue) {
+        return getSubject(request, response).isAuthenticated() || getBearerToken(request) == null;
+    }
+
+    @Override
+    protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
+        if (executeLogin(request, response)) {
+            return true;
+        }
+        log.debug("Session token authentication failed");
+        HttpServletResponse httpResponse = WebUtils.toHttp(response);
+        httpResponse.setHeader("WWW-Authenticate", String.format("%s realm=\"%s\"", AUTHENTICATION_SCHEME, applicationName));
+        httpResponse.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        return false;
+    }
+
+    @Override
+    protected AuthenticationToken createToken(ServletRequest request, ServletResponse response) {
+        return new SessionAuthenticationToken(getBearerToken(request), request.getRemoteAddr());
+    }
+
+    private String getBearerToken(ServletRequest request) {
+        HttpServletRequest httpRequest = WebUtils.toHttp(request);
+        String authorization = httpRequest.getHeader(AUTHORIZATION_HEADER);
+        if (authorization == null || !authorization.regionMatches(true, 0, AUTHENTICATION_SCHEME + " ", 0, AUTHENTICATION_SCHEME.length() + 1)) {
+            return null;
+        }
+        String token = authorization.substring(AUTHENTICATION_SCHEME.length() + 1).trim();
+        return token.isEmpty() ? null : token;
+    }
+}
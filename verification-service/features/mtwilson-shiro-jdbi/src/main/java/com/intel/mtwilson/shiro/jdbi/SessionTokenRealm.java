@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.shiro.UserId;
+import com.intel.mtwilson.shiro.Username;
+import com.intel.mtwilson.shiro.authc.password.LoginPasswordId;
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
+import org.apache.shiro.realm.AuthenticatingRealm;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+
+/**
+ * Authenticates requests with a session token issued by
+ * {@link SessionTokenSigner}. The token is verified by its signature alone,
+ * without database access.
+ *
+ * The principals include the {@link LoginPasswordId} the token was issued
+ * for, so the roles and permissions of the request are the ones of the
+ * password login, found by {@link JdbcPasswordRealm}.
+ */
+public class SessionTokenRealm extends AuthenticatingRealm {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SessionTokenRealm.class);
+
+    public SessionTokenRealm() {
+        super();
+        // the signature of the token is its credential and is verified below
+        setCredentialsMatcher(new AllowAllCredentialsMatcher());
+    }
+
+    @Override
+    public boolean supports(AuthenticationToken token) {
+        return token instanceof SessionAuthenticationToken;
+    }
+
+    @Override
+    protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+        SessionAuthenticationToken sessionToken = (SessionAuthenticationToken) token;
+        SessionTokenSigner.Claims claims;
+        try {
+            claims = SessionTokenSigner.fromConfiguration().verify((String) sessionToken.getCredentials());
+        } catch (Exception e) {
+            log.debug("doGetAuthenticationInfo error", e);
+            throw new AuthenticationException("Internal server error", e);
+        }
+        if (claims == null) {
+            return null;
+        }
+        log.debug("doGetAuthenticationInfo found {}", claims);
+        SimplePrincipalCollection principals = new SimplePrincipalCollection();
+        principals.add(new UserId(claims.getUserId()), getName());
+        principals.add(new Username(claims.getUsername()), getName());
+        principals.add(new LoginPasswordId(claims.getUsername(), claims.getUserId(), claims.getLoginPasswordId()), getName());
+        principals.add(claims, getName());
+        return new SimpleAuthenticationInfo(principals, sessionToken.getCredentials());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.dcsg.cpg.crypto.RandomUtil;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.My;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Date;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Issues and verifies session tokens: short-lived bearer tokens given to
+ * clients after a successful password login, so that their following
+ * requests are authenticated without looking up and hashing the password.
+ *
+ * A token is {@code v1.<claims>.<signature>} where the claims are the user
+ * id, login password id, username and expiration time, and the signature is
+ * the HMAC-SHA256 of the claims with the key in mtwilson.session.token.key
+ * (base64). Tokens are checked without any database access, so disabling a
+ * login does not revoke the tokens already issued for it; they stay valid
+ * until they expire after mtwilson.session.token.expiry.seconds. Changing the
+ * key revokes all tokens at once.
+ *
+ * When no key is configured a random key is generated, which is only known
+ * to this node and lost on restart.
+ */
+public class SessionTokenSigner {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SessionTokenSigner.class);
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 32;
+    private static final long DEFAULT_SESSION_TOKEN_EXPIRY_SECONDS = 900;
+    private static byte[] generatedKey = null;
+
+    private final byte[] key;
+    private final long expiryMillis;
+
+    public SessionTokenSigner(byte[] key, long expirySeconds) {
+        if (key == null || key.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException(String.format("Session token key must be at least %d bytes", MIN_KEY_LENGTH));
+        }
+        this.key = key.clone();
+        this.expiryMillis = expirySeconds * 1000;
+    }
+
+    /**
+     * The key and lifetime are read on every call, so that a new key takes
+     * effect without a restart.
+     */
+    public static SessionTokenSigner fromConfiguration() {
+        Configuration config = My.configuration().getConfiguration();
+        String encodedKey = config.getString("mtwilson.session.token.key", null);
+        byte[] key = encodedKey == null || encodedKey.isEmpty() ? getGeneratedKey() : Base64.decodeBase64(encodedKey);
+        return new SessionTokenSigner(key, config.getLong("mtwilson.session.token.expiry.seconds", DEFAULT_SESSION_TOKEN_EXPIRY_SECONDS));
+    }
+
+    private static synchronized byte[] getGeneratedKey() {
+        if (generatedKey == null) {
+            log.warn("mtwilson.session.token.key is not set, session tokens are only accepted by this node until it restarts");
+            generatedKey = RandomUtil.randomByteArray(MIN_KEY_LENGTH);
+        }
+        return generatedKey;
+    }
+
+    /**
+     * @return a new token for the login, valid from now until its expiration
+     */
+    public Claims issue(UUID userId, UUID loginPasswordId, String username) {
+        Claims claims = new Claims(userId, loginPasswordId, username, new Date(System.currentTimeMillis() + expiryMillis));
+        String encodedClaims = Base64.encodeBase64URLSafeString(claims.format().getBytes(StandardCharsets.UTF_8));
+        claims.token = String.format("%s.%s.%s", VERSION, encodedClaims, Base64.encodeBase64URLSafeString(sign(encodedClaims)));
+        return claims;
+    }
+
+    /**
+     * @return the claims of the token, or null if the token is malformed,
+     * not signed with the current key, or expired
+     */
+    public Claims verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            log.debug("Session token is malformed");
+            return null;
+        }
+        if (!MessageDigest.isEqual(sign(parts[1]), Base64.decodeBase64(parts[2]))) {
+            log.debug("Session token signature is invalid");
+            return null;
+        }
+        Claims claims = Claims.parse(new String(Base64.decodeBase64(parts[1]), StandardCharsets.UTF_8));
+        if (claims == null) {
+            log.debug("Session token claims are malformed");
+            return null;
+        }
+        if (claims.getExpires().getTime() < System.currentTimeMillis()) {
+            log.debug("Session token expired at {}", claims.getExpires());
+            return null;
+        }
+        claims.token = token;
+        return claims;
+    }
+
+    private byte[] sign(String encodedClaims) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac.doFinal(encodedClaims.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign session token", e);
+        }
+    }
+
+    /**
+     * The login a session token was issued for. Added to the principals of
+     * requests authenticated with a session token.
+     */
+    public static class Claims {
+        private final UUID userId;
+        private final UUID loginPasswordId;
+        private final String username;
+        private final Date expires;
+        private String token;
+
+        private Claims(UUID userId, UUID loginPasswordId, String username, Date expires) {
+            this.userId = userId;
+            this.loginPasswordId = loginPasswordId;
+            this.username = username;
+            this.expires = expires;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public UUID getLoginPasswordId() {
+            return loginPasswordId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Date getExpires() {
+            return expires;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        // the username is last since it may contain the separator
+        private String format() {
+            return String.format("%s:%s:%d:%s", userId.toString(), loginPasswordId.toString(), expires.getTime(), username);
+        }
+
+        private static Claims parse(String text) {
+            String[] fields = text.split(":", 4);
+            if (fields.length != 4 || !UUID.isValid(fields[0]) || !UUID.isValid(fields[1])) {
+                return null;
+            }
+            try {
+                return new Claims(UUID.valueOf(fields[0]), UUID.valueOf(fields[1]), fields[3], new Date(Long.parseLong(fields[2])));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("session token of %s expiring at %s", username, expires);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.shiro.RequestLogEntry;
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class AntiReplayWindowTest {
+
+    private RequestLogEntry request(String digest, long received) {
+        RequestLogEntry requestLogEntry = new RequestLogEntry();
+        requestLogEntry.setDigest(digest);
+        requestLogEntry.setSource("127.0.0.1");
+        requestLogEntry.setInstance("test");
+        requestLogEntry.setReceived(new Date(received));
+        return requestLogEntry;
+    }
+
+    @Test
+    public void testReplayIsRejected() {
+        AntiReplayWindow window = new AntiReplayWindow("test", 60000, 100, false);
+        long now = System.currentTimeMillis();
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("YWJjZA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.REPLAYED, window.record(request("YWJjZA==", now + 1000), new Date(now + 1000)));
+        // digests are compared case insensitively, like the unique index of mw_request_log
+        assertEquals(AntiReplayWindow.Result.REPLAYED, window.record(request("ywjjza==", now + 2000), new Date(now + 2000)));
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("ZWZnaA==", now + 2000), new Date(now + 2000)));
+    }
+
+    @Test
+    public void testDigestsExpireWithWindow() {
+        AntiReplayWindow window = new AntiReplayWindow("test", 60000, 100, false);
+        long now = System.currentTimeMillis();
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("YWJjZA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("ZWZnaA==", now + 120000), new Date(now + 120000)));
+        assertEquals(1, window.size());
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("YWJjZA==", now + 120000), new Date(now + 120000)));
+    }
+
+    @Test
+    public void testFullWindowForgetsOldestBucket() {
+        AntiReplayWindow window = new AntiReplayWindow("test", 60000, 2, false);
+        long now = System.currentTimeMillis();
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("YWJjZA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("ZWZnaA==", now + 10000), new Date(now + 10000)));
+        // the full window forgets the bucket of the first request instead of rejecting new requests
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("aWprbA==", now + 20000), new Date(now + 20000)));
+        assertEquals(2, window.size());
+        assertTrue(window.getWindowStart().after(new Date(now)));
+        // so the forgotten request cannot be replayed either
+        assertEquals(AntiReplayWindow.Result.STALE, window.record(request("YWJjZA==", now + 20000), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.REPLAYED, window.record(request("aWprbA==", now + 20000), new Date(now + 20000)));
+    }
+
+    @Test
+    public void testFullBucketAcceptsRequests() {
+        AntiReplayWindow window = new AntiReplayWindow("test", 60000, 2, false);
+        long now = System.currentTimeMillis();
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("YWJjZA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("ZWZnaA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.ACCEPTED, window.record(request("aWprbA==", now), new Date(now)));
+        assertEquals(AntiReplayWindow.Result.REPLAYED, window.record(request("YWJjZA==", now), new Date(now)));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.dcsg.cpg.crypto.RandomUtil;
+import com.intel.dcsg.cpg.io.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class SessionTokenSignerTest {
+
+    @Test
+    public void testIssuedTokenIsVerified() {
+        SessionTokenSigner signer = new SessionTokenSigner(RandomUtil.randomByteArray(32), 60);
+        UUID userId = new UUID();
+        UUID loginPasswordId = new UUID();
+        SessionTokenSigner.Claims issued = signer.issue(userId, loginPasswordId, "admin:with:colons");
+        SessionTokenSigner.Claims verified = signer.verify(issued.getToken());
+        assertNotNull(verified);
+        assertEquals(userId, verified.getUserId());
+        assertEquals(loginPasswordId, verified.getLoginPasswordId());
+        assertEquals("admin:with:colons", verified.getUsername());
+        assertEquals(issued.getExpires(), verified.getExpires());
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        SessionTokenSigner signer = new SessionTokenSigner(RandomUtil.randomByteArray(32), 60);
+        String token = signer.issue(new UUID(), new UUID(), "admin").getToken();
+        String[] parts = token.split("\\.");
+        String other = signer.issue(new UUID(), new UUID(), "other").getToken().split("\\.")[1];
+        assertNull(signer.verify(parts[0] + "." + other + "." + parts[2]));
+        assertNull(signer.verify(token + "x"));
+        assertNull(signer.verify("not a token"));
+    }
+
+    @Test
+    public void testTokenIsRejectedAfterKeyRotation() {
+        String token = new SessionTokenSigner(RandomUtil.randomByteArray(32), 60).issue(new UUID(), new UUID(), "admin").getToken();
+        assertNull(new SessionTokenSigner(RandomUtil.randomByteArray(32), 60).verify(token));
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        SessionTokenSigner signer = new SessionTokenSigner(RandomUtil.randomByteArray(32), -1);
+        assertNull(signer.verify(signer.issue(new UUID(), new UUID(), "admin").getToken()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortKeyIsRejected() {
+        new SessionTokenSigner(new byte[16], 60);
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Date;
 import java.util.List;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.MyJpa;
 import com.intel.mtwilson.telemetry.rest.v2.model.TelemetryCollection;
 import com.intel.mtwilson.telemetry.rest.v2.model.TelemetryRecord;
 
@@ -33,8 +34,12 @@ public class TelemetryRepository {
         log.debug("telemetry:report - got request to search for records");
         TelemetryCollection teleCollection = new TelemetryCollection();
         try {            
-            MwTelemetryJpaController mwTelemetryJpaController = My.jpa().mwTelemetry();
-            List<MwTelemetry> mwTeleList = mwTelemetryJpaController.findMwTelemetryEntities();
+            List<MwTelemetry> mwTeleList = My.jpa().queryReplica(new MyJpa.ReplicaQuery<List<MwTelemetry>>() {
+                @Override
+                public List<MwTelemetry> run(MyJpa jpa) throws IOException {
+                    return jpa.mwTelemetry().findMwTelemetryEntities();
+                }
+            });
             if (mwTeleList != null && !mwTeleList.isEmpty()) {
                 for (MwTelemetry mwTel : mwTeleList) {
                     teleCollection.getTelmetries().add(convert(mwTel));
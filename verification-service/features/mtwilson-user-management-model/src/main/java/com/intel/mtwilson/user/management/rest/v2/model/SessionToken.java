@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.user.management.rest.v2.model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import java.util.Date;
+
+/**
+ * A session token issued for a password login, to be sent in the
+ * {@code Authorization: Bearer} header of the following requests until it
+ * expires.
+ */
+@JacksonXmlRootElement(localName="session_token")
+public class SessionToken {
+    private String token;
+    private Date expires;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public Date getExpires() {
+        return expires;
+    }
+
+    public void setExpires(Date expires) {
+        this.expires = expires;
+    }
+}
@@ -19,6 +19,7 @@ import com.intel.mtwilson.repository.RepositorySearchException;
 import com.intel.mtwilson.repository.RepositoryStoreConflictException;
 import com.intel.mtwilson.repository.RepositoryStoreException;
 import com.intel.mtwilson.user.management.rest.v2.model.RolePermissionFilterCriteria;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import java.util.List;
@@ -103,6 +104,7 @@ public class RoleRepository implements DocumentRepository<Role, RoleCollection,
                     obj.setDescription(item.getDescription());
                 
                 loginDAO.updateRole(obj.getId(), obj.getRoleName(), obj.getDescription());
+                AuthorizationCache.invalidateAll();
                 log.debug("Role:Store - Updated the role with id {} successfully.", obj.getId());
                 
             } else {
@@ -168,6 +170,7 @@ public class RoleRepository implements DocumentRepository<Role, RoleCollection,
                 rpRepo.delete(rpCriteria);
                 
                 loginDAO.deleteRole(obj.getId());
+                AuthorizationCache.invalidateAll();
                 log.debug("Role:Delete - Deleted the role with id {} successfully.", locator.id);
             } else {
                 log.info("Role:Delete - Role does not exist in the system.");
@@ -27,6 +27,8 @@ import com.intel.mtwilson.user.management.rest.v2.model.Status;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRole;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRoleCollection;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRoleFilterCriteria;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
+import com.intel.mtwilson.shiro.jdbi.CertificateLoginCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import java.util.ArrayList;
@@ -138,6 +140,8 @@ public class UserLoginCertificateRepository implements DocumentRepository<UserLo
                     obj.setStatus(item.getStatus());
                 
                 loginDAO.updateUserLoginCertificateById(obj.getId(), obj.isEnabled(), obj.getStatus(), obj.getComment());
+                AuthorizationCache.invalidateAll();
+                CertificateLoginCache.invalidateAll();
                 log.debug("UserLoginCertificate:Store - Updated the user login certificate with id {} successfully.", obj.getId());
 
                 // Before we add the roles we need to delete the existing ones
@@ -228,6 +232,8 @@ public class UserLoginCertificateRepository implements DocumentRepository<UserLo
                 repo.delete(criteria);
                 
                 loginDAO.deleteUserLoginCertificateById(locator.id);
+                AuthorizationCache.invalidateAll();
+                CertificateLoginCache.invalidateAll();
                 log.debug("UserLoginCertificate:Delete - Deleted the user login certificate with id {} successfully.", locator.id);
             } else {
                 log.info("UserLoginCertificate:Delete - User login certificate does not exist in the system.");
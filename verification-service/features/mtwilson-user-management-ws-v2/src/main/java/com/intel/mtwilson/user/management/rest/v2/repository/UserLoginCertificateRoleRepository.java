@@ -13,6 +13,7 @@ import com.intel.mtwilson.repository.RepositoryCreateException;
 import com.intel.mtwilson.repository.RepositoryDeleteException;
 import com.intel.mtwilson.repository.RepositoryException;
 import com.intel.mtwilson.repository.RepositorySearchException;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import java.util.List;
@@ -91,6 +92,7 @@ public class UserLoginCertificateRoleRepository implements DocumentRepository<Us
                 obj.setLoginCertificateId(item.getLoginCertificateId());
                 obj.setRoleId(item.getRoleId());
                 loginDAO.insertUserLoginCertificateRole(obj.getLoginCertificateId(), obj.getRoleId());
+                AuthorizationCache.invalidateAll();
                 log.debug("UserLoginCertificateRole:Create - Created the user login certificate role successfully.");
             } else {
                 log.info("UserLoginCertificateRole:Create - User login certificate role specified already exists.");
@@ -123,6 +125,7 @@ public class UserLoginCertificateRoleRepository implements DocumentRepository<Us
             for (UserLoginCertificateRole obj : objList.getUserLoginCertificateRoles()) {
                 loginDAO.deleteUserLoginCertificateRole(obj.getLoginCertificateId(), obj.getRoleId());
             }
+            AuthorizationCache.invalidateAll();
         } catch(RepositoryException re) {
             throw re;
         } catch (Exception ex) {
@@ -23,6 +23,7 @@ import com.intel.mtwilson.user.management.rest.v2.model.RoleLocator;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginPasswordRole;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginPasswordRoleCollection;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginPasswordRoleFilterCriteria;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import com.intel.mtwilson.user.management.rest.v2.model.Status;
@@ -127,6 +128,7 @@ public class UserLoginPasswordRepository implements DocumentRepository<UserLogin
                 obj.setComment(item.getComment());
                 loginDAO.updateUserLoginPassword(obj.getPasswordHash(), obj.getSalt(), obj.getIterations(), obj.getAlgorithm(), obj.getExpires(), 
                         obj.isEnabled(), obj.getId(), obj.getStatus(), obj.getComment());
+                AuthorizationCache.invalidateAll();
                 log.debug("UserLoginPassword:Store - Updated the user login password with id {} successfully.", obj.getId());
 
                 // We need not check for the length here since the admin might want to delete all the roles
@@ -222,6 +224,7 @@ public class UserLoginPasswordRepository implements DocumentRepository<UserLogin
                 repo.delete(criteria);
                 
                 loginDAO.deleteUserLoginPasswordById(locator.id);
+                AuthorizationCache.invalidateAll();
                 log.debug("UserLoginPassword:Delete - Deleted the user login password with id {} successfully.", locator.id);
             } else {
                 log.info("UserLoginPassword:Delete - User login password does not exist in the system.");
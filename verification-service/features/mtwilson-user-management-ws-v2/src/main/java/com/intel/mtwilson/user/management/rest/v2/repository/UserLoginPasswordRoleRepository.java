@@ -13,6 +13,7 @@ import com.intel.mtwilson.repository.RepositoryCreateException;
 import com.intel.mtwilson.repository.RepositoryDeleteException;
 import com.intel.mtwilson.repository.RepositoryException;
 import com.intel.mtwilson.repository.RepositorySearchException;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import java.util.List;
@@ -92,6 +93,7 @@ public class UserLoginPasswordRoleRepository implements DocumentRepository<UserL
                 obj.setLoginPasswordId(item.getLoginPasswordId());
                 obj.setRoleId(item.getRoleId());
                 loginDAO.insertUserLoginPasswordRole(obj.getLoginPasswordId(), obj.getRoleId());
+                AuthorizationCache.invalidateAll();
                 log.debug("UserLoginPasswordRole:Create - Created the user login password role successfully.");
             } else {
                 log.info("UserLoginPasswordRole:Create - User login password role specified already exists.");
@@ -125,6 +127,7 @@ public class UserLoginPasswordRoleRepository implements DocumentRepository<UserL
             for (UserLoginPasswordRole obj : objList.getUserLoginPasswordRoles()) {
                 loginDAO.deleteUserLoginPasswordRole(obj.getLoginPasswordId(), obj.getRoleId());
             }
+            AuthorizationCache.invalidateAll();
         } catch(RepositoryException re) {
             throw re;
         } catch (Exception ex) {
@@ -18,6 +18,8 @@ import com.intel.mtwilson.repository.RepositoryRetrieveException;
 import com.intel.mtwilson.repository.RepositorySearchException;
 import com.intel.mtwilson.repository.RepositoryStoreConflictException;
 import com.intel.mtwilson.repository.RepositoryStoreException;
+import com.intel.mtwilson.shiro.jdbi.AuthorizationCache;
+import com.intel.mtwilson.shiro.jdbi.CertificateLoginCache;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateFilterCriteria;
@@ -170,6 +172,8 @@ public class UserRepository implements DocumentRepository<User, UserCollection,
                 log.debug("User:Delete - Deleted the user {} login password entries successfully.", user.getUsername());
                 
                 loginDAO.deleteUser(locator.id);
+                AuthorizationCache.invalidateAll();
+                CertificateLoginCache.invalidateAll();
                 log.debug("User:Delete - Deleted the user {} successfully.", user.getUsername());
             } else {
                 log.info("User:Delete - User does not exist in the system.");
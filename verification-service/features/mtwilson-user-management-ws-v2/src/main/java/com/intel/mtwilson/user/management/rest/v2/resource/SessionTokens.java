@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.user.management.rest.v2.resource;
+
+import com.intel.mtwilson.jaxrs2.mediatype.DataMediaType;
+import com.intel.mtwilson.launcher.ws.ext.V2;
+import com.intel.mtwilson.shiro.authc.password.LoginPasswordId;
+import com.intel.mtwilson.shiro.jdbi.SessionTokenSigner;
+import com.intel.mtwilson.user.management.rest.v2.model.SessionToken;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.subject.PrincipalCollection;
+
+/**
+ * Exchanges a password login for a session token, so that clients sending
+ * many requests do not have their password hashed on every request.
+ */
+@V2
+@Path("/session-tokens")
+public class SessionTokens {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SessionTokens.class);
+
+    @POST
+    @RequiresAuthentication
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
+    public SessionToken createSessionToken() {
+        PrincipalCollection principals = SecurityUtils.getSubject().getPrincipals();
+        // a session token cannot be renewed with itself, otherwise it would never expire
+        LoginPasswordId loginPasswordId = principals.oneByType(LoginPasswordId.class);
+        if (loginPasswordId == null || principals.oneByType(SessionTokenSigner.Claims.class) != null) {
+            log.debug("Session tokens are only issued for password logins");
+            throw new WebApplicationException("Session tokens are only issued for password logins", Response.Status.FORBIDDEN);
+        }
+        SessionTokenSigner.Claims claims = SessionTokenSigner.fromConfiguration().issue(loginPasswordId.getUserId(), loginPasswordId.getLoginPasswordId(), loginPasswordId.getUsername());
+        log.debug("Issued {}", claims);
+        SessionToken sessionToken = new SessionToken();
+        sessionToken.setToken(claims.getToken());
+        sessionToken.setExpires(claims.getExpires());
+        return sessionToken;
+    }
+}
@@ -64,7 +64,7 @@ export MTWILSON_DEFAULT_TLS_POLICY_ID=${MTWILSON_DEFAULT_TLS_POLICY_ID:-"TRUST_F
 export JAVA_REQUIRED_VERSION=${JAVA_REQUIRED_VERSION:-1.8}
 export PRIVACYCA_DOWNLOAD_USERNAME=${PRIVACYCA_DOWNLOAD_USERNAME:-pca-admin}
 export PRIVACYCA_DOWNLOAD_PASSWORD=${PRIVACYCA_DOWNLOAD_PASSWORD:-PrivacyCaPassword}
-export POSTGRES_REQUIRED_VERSION=${POSTGRES_REQUIRED_VERSION:-9.4}
+export POSTGRES_REQUIRED_VERSION=${POSTGRES_REQUIRED_VERSION:-9.5}
 export DATABASE_VENDOR=${DATABASE_VENDOR:-postgres}
 export ADD_POSTGRESQL_REPO=${ADD_POSTGRESQL_REPO:-yes}
 export MTWILSON_API_SSL_VERIFY_HOSTNAME=${MTWILSON_API_SSL_VERIFY_HOSTNAME:-false}
@@ -380,8 +380,8 @@ if [ "$(whoami)" == "root" ]; then
       chmod 755 /etc/apt/trusted.gpg.d
       cp ACCC4CF8.asc "/etc/apt/trusted.gpg.d"
     fi
-    POSTGRES_SERVER_APT_PACKAGES="postgresql-9.4"
-    POSTGRES_SERVER_YUM_PACKAGES="postgresql94"
+    POSTGRES_SERVER_APT_PACKAGES="postgresql-9.5"
+    POSTGRES_SERVER_YUM_PACKAGES="postgresql95"
     if [ "$IS_RPM" != "true" ]; then
       add_postgresql_install_packages "POSTGRES_SERVER"
     fi